@@ -0,0 +1,48 @@
+package news.agoda.com.sample;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.cache.MemoryCacheParams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ImagePipelineSetupTest {
+
+    /**
+     * The application configures the pipeline when the process starts, and later calls (e.g. from a new
+     * activity) do not configure it again.
+     */
+    @Test
+    public void configuredOncePerProcess() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        assertTrue(context.getApplicationContext() instanceof NewsApplication);
+        assertEquals(1, ImagePipelineSetup.getConfigurationCount());
+        assertNotNull(Fresco.getImagePipeline());
+
+        assertFalse(ImagePipelineSetup.initialize(context));
+        assertFalse(ImagePipelineSetup.initialize(context.getApplicationContext()));
+        assertEquals(1, ImagePipelineSetup.getConfigurationCount());
+    }
+
+    /**
+     * The decoded image cache grows with the memory class.
+     */
+    @Test
+    public void bitmapCacheFollowsMemoryClass() {
+        MemoryCacheParams small = ImagePipelineSetup.bitmapCacheParams(64);
+        MemoryCacheParams large = ImagePipelineSetup.bitmapCacheParams(256);
+        assertEquals(64 * 1024 * 1024 / 6, small.maxCacheSize);
+        assertEquals(4 * small.maxCacheSize, large.maxCacheSize, 4);
+        assertTrue(small.maxCacheEntrySize <= small.maxCacheSize);
+    }
+}
@@ -0,0 +1,56 @@
+package news.agoda.com.sample;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import news.agoda.com.sample.view.MainActivity;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls the list of news and dumps the UI performance numbers, so that regressions show up in the test
+ * output.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UiPerfMonitorTest {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + UiPerfMonitorTest.class.getSimpleName();
+
+    @Rule
+    public final ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
+
+    @Test
+    public void scrollingRecordsFrames() throws Exception {
+        final UiPerfMonitor monitor = UiPerfMonitor.getInstance();
+        // wait for the list to be shown.
+        Thread.sleep(3000);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        monitor.reset();
+
+        final RecyclerView list = (RecyclerView) mActivityRule.getActivity().findViewById(R.id.news_list);
+        for (int i = 0; i < 5; i++) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    list.smoothScrollBy(0, list.getHeight());
+                }
+            });
+            Thread.sleep(500);
+        }
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        String dump = monitor.dump();
+        Log.i(TAG, "scroll\n" + dump);
+        assertTrue(dump.contains(UiPerfMonitor.FRAME_TOTAL));
+        if (list.getAdapter().getItemCount() > 0) {
+            assertTrue(monitor.getHistogram(UiPerfMonitor.FRAME_TOTAL).getCount() > 0);
+        }
+    }
+}
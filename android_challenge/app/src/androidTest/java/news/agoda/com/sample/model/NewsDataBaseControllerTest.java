@@ -104,4 +104,19 @@ public class NewsDataBaseControllerTest {
         assertEquals(s7,output);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * A write that was accepted must not be lost when the last user releases the controller (the
+     * activity is destroyed). A new user must see the same controller and read the written value.
+     */
+    @Test
+    public void testWriteSurvivesCleanUp() {
+        String data = "Written right before the activity was destroyed.";
+        mNewsDB.writeToDB(data);
+        mNewsDB.cleanUp();
+
+        NewsDataBaseController newsDB = NewsDataBaseController.getInstance(mContext.getFilesDir().toString());
+        assertSame(mNewsDB, newsDB);
+        assertEquals(data, newsDB.readFromDB());
+    }
+}
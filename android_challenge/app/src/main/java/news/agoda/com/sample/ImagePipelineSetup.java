@@ -0,0 +1,119 @@
+package news.agoda.com.sample;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.facebook.cache.disk.DiskCacheConfig;
+import com.facebook.common.internal.Supplier;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.cache.MemoryCacheParams;
+import com.facebook.imagepipeline.core.ImagePipelineConfig;
+import com.facebook.imagepipeline.listener.RequestListener;
+
+import java.util.Collections;
+
+/**
+ * Configures the image pipeline (Fresco) once per process. It is called from NewsApplication.
+ *
+ * - The decoded image cache is sized from the memory class of the device rather than from the heap limit.
+ * - The thumbnails have their own small disk cache, so that the big images do not evict them.
+ * - Images are decoded as RGB_565. The news images are opaque photos, this halves their memory.
+ * - The requests are counted by ImagePipelineStats.
+ */
+public final class ImagePipelineSetup {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + ImagePipelineSetup.class.getSimpleName();
+
+    private static final int MB = 1024 * 1024;
+
+    // part of the memory class used for decoded images.
+    private static final int BITMAP_CACHE_FRACTION = 6;
+
+    private static final int MAX_BITMAP_CACHE_ENTRIES = 256;
+
+    private static final long MAIN_DISK_CACHE_BYTES = 40L * MB;
+
+    private static final long SMALL_DISK_CACHE_BYTES = 10L * MB;
+
+    private static final ImagePipelineStats sStats = new ImagePipelineStats();
+
+    // number of times the pipeline was configured in this process. Guarded by the class.
+    private static int sConfigurationCount;
+
+    private ImagePipelineSetup() {
+    }
+
+    /**
+     * Configure the image pipeline, unless it is already configured.
+     * @param context    Any context, the application context is used.
+     * @return    true if the pipeline was configured by this call.
+     */
+    public static synchronized boolean initialize(Context context) {
+        if (sConfigurationCount > 0) {
+            return false;
+        }
+        final Context appContext = context.getApplicationContext();
+        ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        final MemoryCacheParams bitmapCacheParams = bitmapCacheParams(activityManager.getMemoryClass());
+        Log.d(TAG, "bitmap cache " + bitmapCacheParams.maxCacheSize / MB + "MB");
+
+        ImagePipelineConfig config = ImagePipelineConfig.newBuilder(appContext)
+                .setBitmapMemoryCacheParamsSupplier(new Supplier<MemoryCacheParams>() {
+                    @Override
+                    public MemoryCacheParams get() {
+                        return bitmapCacheParams;
+                    }
+                })
+                .setMainDiskCacheConfig(DiskCacheConfig.newBuilder()
+                        .setBaseDirectoryPath(appContext.getCacheDir())
+                        .setBaseDirectoryName("images")
+                        .setMaxCacheSize(MAIN_DISK_CACHE_BYTES)
+                        .build())
+                .setSmallImageDiskCacheConfig(DiskCacheConfig.newBuilder()
+                        .setBaseDirectoryPath(appContext.getCacheDir())
+                        .setBaseDirectoryName("thumbnails")
+                        .setMaxCacheSize(SMALL_DISK_CACHE_BYTES)
+                        .build())
+                .setBitmapsConfig(Bitmap.Config.RGB_565)
+                // apply the resize options of the requests to all formats, not only jpeg.
+                .setDownsampleEnabled(true)
+                .setRequestListeners(Collections.<RequestListener>singleton(sStats))
+                .build();
+        Fresco.initialize(appContext, config);
+        sConfigurationCount++;
+        return true;
+    }
+
+    /**
+     * Size of the decoded image cache for a memory class.
+     * @param memoryClassMb    The memory class of the device, in MB.
+     * @return    The parameters of the cache.
+     */
+    static MemoryCacheParams bitmapCacheParams(int memoryClassMb) {
+        int maxCacheSize = memoryClassMb * MB / BITMAP_CACHE_FRACTION;
+        return new MemoryCacheParams(
+                maxCacheSize,
+                MAX_BITMAP_CACHE_ENTRIES,
+                // images which are not shown any more may use the whole cache.
+                maxCacheSize,
+                MAX_BITMAP_CACHE_ENTRIES,
+                // a single image may not take more than a quarter of the cache.
+                maxCacheSize / 4);
+    }
+
+    /**
+     * @return    number of times the pipeline was configured in this process, 1 once initialized.
+     */
+    public static synchronized int getConfigurationCount() {
+        return sConfigurationCount;
+    }
+
+    /**
+     * @return    the request statistics of the image pipeline.
+     */
+    public static ImagePipelineStats getStats() {
+        return sStats;
+    }
+}
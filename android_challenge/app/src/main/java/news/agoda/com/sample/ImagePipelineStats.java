@@ -0,0 +1,108 @@
+package news.agoda.com.sample;
+
+import android.os.SystemClock;
+
+import com.facebook.imagepipeline.listener.BaseRequestListener;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests of the image pipeline and how long they take. It is registered with the pipeline
+ * as a request listener, so it is called on the pipeline threads.
+ */
+public class ImagePipelineStats extends BaseRequestListener {
+
+    private final AtomicLong mRequests = new AtomicLong();
+
+    private final AtomicLong mPrefetches = new AtomicLong();
+
+    private final AtomicLong mSuccesses = new AtomicLong();
+
+    private final AtomicLong mFailures = new AtomicLong();
+
+    private final AtomicLong mCancellations = new AtomicLong();
+
+    // sum of the durations of the successful requests.
+    private final AtomicLong mSuccessMillis = new AtomicLong();
+
+    // start time of the requests in progress, by request id.
+    private final Map<String, Long> mStartTimes = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRequestStart(ImageRequest request, Object callerContext, String requestId, boolean isPrefetch) {
+        if (isPrefetch) {
+            mPrefetches.incrementAndGet();
+        } else {
+            mRequests.incrementAndGet();
+        }
+        mStartTimes.put(requestId, SystemClock.uptimeMillis());
+    }
+
+    @Override
+    public void onRequestSuccess(ImageRequest request, String requestId, boolean isPrefetch) {
+        mSuccesses.incrementAndGet();
+        Long start = mStartTimes.remove(requestId);
+        if (start != null) {
+            mSuccessMillis.addAndGet(SystemClock.uptimeMillis() - start);
+        }
+    }
+
+    @Override
+    public void onRequestFailure(ImageRequest request, String requestId, Throwable throwable, boolean isPrefetch) {
+        mFailures.incrementAndGet();
+        mStartTimes.remove(requestId);
+    }
+
+    @Override
+    public void onRequestCancellation(String requestId) {
+        mCancellations.incrementAndGet();
+        mStartTimes.remove(requestId);
+    }
+
+    /**
+     * @return    number of requests made to show an image.
+     */
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * @return    number of prefetch requests.
+     */
+    public long getPrefetchCount() {
+        return mPrefetches.get();
+    }
+
+    public long getSuccessCount() {
+        return mSuccesses.get();
+    }
+
+    public long getFailureCount() {
+        return mFailures.get();
+    }
+
+    public long getCancellationCount() {
+        return mCancellations.get();
+    }
+
+    /**
+     * @return    average duration of the successful requests in milliseconds, 0 if there is none.
+     */
+    public long getAverageSuccessMillis() {
+        long successes = mSuccesses.get();
+        return successes == 0 ? 0 : mSuccessMillis.get() / successes;
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequestCount() +
+                " prefetches=" + getPrefetchCount() +
+                " successes=" + getSuccessCount() +
+                " failures=" + getFailureCount() +
+                " cancellations=" + getCancellationCount() +
+                " avgMs=" + getAverageSuccessMillis();
+    }
+}
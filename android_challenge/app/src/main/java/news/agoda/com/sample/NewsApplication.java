@@ -0,0 +1,26 @@
+package news.agoda.com.sample;
+
+import android.app.Application;
+import android.os.Trace;
+import android.util.Log;
+
+import news.agoda.com.sample.viewmodel.StartupOrchestrator;
+
+/**
+ * The application. Things which are set up once per process, rather than once per activity, are done
+ * here.
+ */
+public class NewsApplication extends Application {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + NewsApplication.class.getSimpleName();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Log.d(TAG, "onCreate");
+        Trace.beginSection("startup.application");
+        // configures the image pipeline and starts fetching the news while the activity is created.
+        StartupOrchestrator.getInstance().start(this);
+        Trace.endSection();
+    }
+}
@@ -0,0 +1,223 @@
+package news.agoda.com.sample;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.core.ImagePipeline;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import news.agoda.com.sample.viewmodel.NewsRowModel;
+
+/**
+ * Loads the images of the list of news before they are needed, so that scrolling and opening a news
+ * show the images instead of the place holder.
+ *
+ * While the list scrolls, the thumbnails of the next rows in the direction of the scroll are fetched into
+ * the image caches. When the user touches a row, the image of its details view is fetched, as the user is
+ * likely to open it. Nothing is prefetched while the list is flung fast, the rows go by too quickly and
+ * the window is filled again once the scroll slows down. Prefetches for rows that have scrolled away are
+ * cancelled.
+ */
+public class NewsImagePrefetcher extends RecyclerView.OnScrollListener implements RecyclerView.OnItemTouchListener {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + NewsImagePrefetcher.class.getSimpleName();
+
+    /**
+     * Above this speed (in dp per second) the list is considered flung and nothing is prefetched.
+     */
+    private static final int FAST_SCROLL_DP_PER_SECOND = 3000;
+
+    private final ImagePipeline mImagePipeline;
+
+    private final NewsListAdapter mAdapter;
+
+    private final LinearLayoutManager mLayoutManager;
+
+    /**
+     * Number of rows past the visible ones to prefetch.
+     */
+    private final int mRowsAhead;
+
+    private final float mFastScrollPxPerMs;
+
+    /**
+     * The thumbnail prefetches in progress, by image uri. Positions are not used as keys because they
+     * change when a new list of news is shown.
+     */
+    private final Map<Uri, DataSource<Void>> mThumbnailPrefetches = new HashMap<>();
+
+    /**
+     * The prefetch of the details image of the last touched row.
+     */
+    private DataSource<Void> mHeroPrefetch;
+
+    private long mLastScrollTime;
+
+    private RecyclerView mRecyclerView;
+
+    /**
+     * Constructor
+     * @param adapter    The adapter of the list.
+     * @param layoutManager    The layout manager of the list.
+     * @param rowsAhead    Number of rows past the visible ones to prefetch.
+     * @param density    Display density, for converting the fling speed to pixels.
+     */
+    public NewsImagePrefetcher(NewsListAdapter adapter, LinearLayoutManager layoutManager, int rowsAhead,
+                               float density) {
+        mImagePipeline = Fresco.getImagePipeline();
+        mAdapter = adapter;
+        mLayoutManager = layoutManager;
+        mRowsAhead = rowsAhead;
+        mFastScrollPxPerMs = FAST_SCROLL_DP_PER_SECOND * density / 1000f;
+    }
+
+    /**
+     * Start prefetching for the list.
+     * @param recyclerView    The list of news.
+     */
+    public void attach(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(this);
+        recyclerView.addOnItemTouchListener(this);
+    }
+
+    /**
+     * Stop prefetching and cancel all prefetches in progress.
+     */
+    public void detach() {
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(this);
+            mRecyclerView.removeOnItemTouchListener(this);
+            mRecyclerView = null;
+        }
+        for (DataSource<Void> prefetch : mThumbnailPrefetches.values()) {
+            prefetch.close();
+        }
+        mThumbnailPrefetches.clear();
+        if (mHeroPrefetch != null) {
+            mHeroPrefetch.close();
+            mHeroPrefetch = null;
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastScrollTime;
+        mLastScrollTime = now;
+        if (dy == 0) {
+            // layout pass, not a scroll
+            return;
+        }
+        if (elapsed > 0 && Math.abs(dy) / (float) elapsed > mFastScrollPxPerMs) {
+            // flung, the rows would be gone before their images arrive.
+            return;
+        }
+        prefetchAhead(dy > 0);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            // the list stopped, possibly after a fling without prefetches. Prepare the next rows below.
+            prefetchAhead(true);
+        }
+    }
+
+    /**
+     * Prefetch the thumbnails of the rows following the visible ones, and cancel the prefetches of rows
+     * which are no longer visible or ahead.
+     * @param forward    true if the list scrolls towards its end.
+     */
+    private void prefetchAhead(boolean forward) {
+        int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int from = forward ? lastVisible + 1 : Math.max(0, firstVisible - mRowsAhead);
+        int to = forward ? Math.min(mAdapter.getItemCount(), lastVisible + 1 + mRowsAhead) : firstVisible;
+
+        Map<Uri, ImageRequest> wanted = new HashMap<>();
+        for (int position = from; position < to; position++) {
+            NewsRowModel newsRow = mAdapter.getNewsRow(position);
+            if (newsRow == null) {
+                // its page is being loaded, it is prefetched on the next scroll.
+                continue;
+            }
+            ImageRequest thumbnailRequest = newsRow.getThumbnailRequest();
+            if (!Uri.EMPTY.equals(thumbnailRequest.getSourceUri())) {
+                wanted.put(thumbnailRequest.getSourceUri(), thumbnailRequest);
+            }
+        }
+
+        Iterator<Map.Entry<Uri, DataSource<Void>>> iterator = mThumbnailPrefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Uri, DataSource<Void>> entry = iterator.next();
+            if (entry.getValue().isFinished() || !wanted.containsKey(entry.getKey())) {
+                /**
+                 * Closing a prefetch in progress cancels it. If the row is shown by now, the fetch goes on
+                 * for the row's own request.
+                 */
+                entry.getValue().close();
+                iterator.remove();
+            }
+        }
+
+        for (Map.Entry<Uri, ImageRequest> entry : wanted.entrySet()) {
+            if (!mThumbnailPrefetches.containsKey(entry.getKey())
+                    && !mImagePipeline.isInBitmapMemoryCache(entry.getKey())) {
+                mThumbnailPrefetches.put(entry.getKey(),
+                        mImagePipeline.prefetchToBitmapCache(entry.getValue(), this));
+            }
+        }
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            View child = recyclerView.findChildViewUnder(event.getX(), event.getY());
+            int position = child == null ? RecyclerView.NO_POSITION : recyclerView.getChildAdapterPosition(child);
+            NewsRowModel newsRow = position == RecyclerView.NO_POSITION ? null : mAdapter.getNewsRow(position);
+            if (newsRow != null) {
+                prefetchHero(newsRow);
+            }
+        }
+        // only watching, the touch goes on to the row.
+        return false;
+    }
+
+    /**
+     * Prefetch the image of the details view of a news. Only the last touched news is prefetched.
+     */
+    private void prefetchHero(NewsRowModel newsRow) {
+        ImageRequest heroRequest = newsRow.getHeroRequest();
+        if (mHeroPrefetch != null) {
+            mHeroPrefetch.close();
+            mHeroPrefetch = null;
+        }
+        if (heroRequest != null) {
+            Log.d(TAG, "prefetch hero " + heroRequest.getSourceUri());
+            mHeroPrefetch = mImagePipeline.prefetchToBitmapCache(heroRequest, this);
+        }
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+    }
+}
@@ -1,81 +1,287 @@
 package news.agoda.com.sample;
 
-import android.content.Context;
 import android.databinding.DataBindingUtil;
-import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.TextView;
 import android.util.Log;
 
 import com.facebook.drawee.backends.pipeline.Fresco;
 import com.facebook.drawee.interfaces.DraweeController;
-import com.facebook.drawee.view.DraweeView;
-import com.facebook.imagepipeline.request.ImageRequest;
-
-import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import news.agoda.com.sample.databinding.ListItemNewsBinding;
-import news.agoda.com.sample.viewmodel.MediaEntity;
-import news.agoda.com.sample.viewmodel.NewsEntity;
+import news.agoda.com.sample.model.ReadStateStore;
+import news.agoda.com.sample.viewmodel.NewsRowModel;
+import news.agoda.com.sample.viewmodel.PagedNewsList;
 
 /**
  * The list adapter which will be used to show the list of news on the UI. Note, it will use data binding
  * for loading data in the layout.
+ *
+ * A new list is given to the adapter with submitList. The difference between the old and the new list is
+ * computed on a background thread, keyed on the stable id of the news and compared with the content
+ * hashes, so that no page needs to be loaded for it. Only the rows that changed are rebound, and the scroll
+ * position is kept across refreshes.
+ *
+ * The list is paged (PagedNewsList): a row whose page is not in memory yet is shown empty, and is rebound
+ * once its page is loaded.
+ *
+ * The titles of the rows are laid out on a background thread (TitleLayoutCache) as soon as their page is
+ * in memory, which is before the rows are shown.
+ *
+ * The news the user has read are dimmed, and the news not seen before the app started are marked new.
+ * Their state is looked up in memory (ReadStateStore) when a row is bound, and the news bound are
+ * remembered as seen. The rows bound before the state was loaded are bound again once it is.
  */
-public class NewsListAdapter extends ArrayAdapter {
+public class NewsListAdapter extends RecyclerView.Adapter<NewsListAdapter.NewsViewHolder>
+        implements PagedNewsList.PageListener, ReadStateStore.LoadListener {
 
     private static final String TAG = AppConstants.APP_TAG +"."+NewsListAdapter.class.getSimpleName();
 
-    public NewsListAdapter(Context context, int resource, List objects) {
-        super(context, resource, objects);
+    /**
+     * Opacity of the rows of news which were read.
+     */
+    private static final float READ_ROW_ALPHA = 0.5f;
+
+    /**
+     * Callback when the user clicks a news.
+     */
+    public interface OnNewsClickListener {
+        /**
+         * @param newsRow    the news that was clicked.
+         */
+        void onNewsClicked(NewsRowModel newsRow);
+    }
+
+    private final OnNewsClickListener mListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final TitleLayoutCache mTitleLayouts;
+
+    private final ReadStateStore mReadState;
+
+    /**
+     * The list shown.
+     */
+    private PagedNewsList mNewsList = PagedNewsList.empty();
+
+    /**
+     * Incremented for every submitted list, so that the result of an outdated comparison is dropped.
+     */
+    private int mGeneration;
+
+    public NewsListAdapter(TitleLayoutCache titleLayouts, ReadStateStore readState, OnNewsClickListener listener) {
+        mTitleLayouts = titleLayouts;
+        mReadState = readState;
+        mListener = listener;
+        setHasStableIds(true);
+        readState.addLoadListener(this);
+        if (readState.isLoaded()) {
+            // loaded before the listener was added.
+            onReadStateLoaded();
+        }
+    }
+
+    /**
+     * Stop listening to the read state. Call it when the list is destroyed.
+     */
+    public void detach() {
+        mReadState.removeLoadListener(this);
     }
 
-    @NotNull
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        NewsEntity newsEntity = (NewsEntity) getItem(position);
-        List<MediaEntity> mediaEntityList = newsEntity.getMediaEntityList();
+    public void onReadStateLoaded() {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mReadState.removeLoadListener(NewsListAdapter.this);
+                notifyItemRangeChanged(0, getItemCount());
+            }
+        });
+    }
 
-        /**
-         * Get the thumbnail URL if multimedia list is available.
-         */
-        String thumbnailURL = "";
-        MediaEntity mediaEntity;
-        if(mediaEntityList.size() != 0) {
-            mediaEntity = mediaEntityList.get(0);
-            thumbnailURL = mediaEntity.getUrl();
+    /**
+     * Show a new list of news. The adapter does not close the lists, their owner does.
+     * @param newsList    The list of news.
+     */
+    public void submitList(final PagedNewsList newsList) {
+        if (newsList == mNewsList) {
+            // e.g. the activity was recreated, the list is already shown.
+            newsList.setPageListener(this);
+            return;
         }
+        final int generation = ++mGeneration;
+        final PagedNewsList oldList = mNewsList;
+        if (oldList.size() == 0 || newsList.size() == 0) {
+            // nothing to compare.
+            swapList(newsList);
+            notifyDataSetChanged();
+            return;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return oldList.size();
+                    }
 
-        // The data binding instance for the list_item_news layout.
-        ListItemNewsBinding listBinding;
-        /**
-         * View Holder pattern and data binding
-         */
-        if(convertView == null) {
-            // inflate the view with data binding
-            Log.d(TAG,"Inflating news view");
-            convertView = LayoutInflater.from(getContext()).inflate(R.layout.list_item_news, null);
-            listBinding = DataBindingUtil.bind(convertView);
-            convertView.setTag(listBinding);
-        } else {
-            // reuse existing views.
-            Log.d(TAG,"Reusing existing views");
-            listBinding = (ListItemNewsBinding) convertView.getTag();
+                    @Override
+                    public int getNewListSize() {
+                        return newsList.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                        return oldList.getId(oldPosition) == newsList.getId(newPosition);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                        return oldList.getContentHash(oldPosition) == newsList.getContentHash(newPosition);
+                    }
+                });
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            swapList(newsList);
+                            diffResult.dispatchUpdatesTo(NewsListAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void swapList(PagedNewsList newsList) {
+        mNewsList.setPageListener(null);
+        mNewsList = newsList;
+        mNewsList.setPageListener(this);
+        // the first page is in memory already.
+        precomputeTitles(0, Math.min(newsList.size(), PagedNewsList.PAGE_SIZE));
+    }
+
+    /**
+     * Lay out the titles of the rows in memory in a range of positions on a background thread.
+     */
+    private void precomputeTitles(int from, int to) {
+        List<String> titles = new ArrayList<>(to - from);
+        for (int position = from; position < to; position++) {
+            NewsRowModel newsRow = mNewsList.peek(position);
+            if (newsRow != null && newsRow.getTitle() != null) {
+                titles.add(newsRow.getTitle());
+            }
         }
+        mTitleLayouts.precompute(titles);
+    }
 
-        /**
-         * Set the thumbnail.
-         */
-        DraweeController draweeController = Fresco.newDraweeControllerBuilder().setImageRequest(ImageRequest.fromUri
-                (Uri.parse(thumbnailURL))).setOldController(listBinding.newsItemImage.getController()).build();
-        listBinding.setNewsEntity(newsEntity);
-        listBinding.newsItemImage.setController(draweeController);
+    /**
+     * Get the news shown at a position of the list.
+     * @param position    The adapter position.
+     * @return    The row model of the news, or null if its page is being loaded.
+     */
+    @Nullable
+    public NewsRowModel getNewsRow(int position) {
+        return mNewsList.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return mNewsList.size();
+    }
 
-        return listBinding.getRoot();
+    @Override
+    public long getItemId(int position) {
+        return mNewsList.getId(position);
+    }
+
+    @Override
+    public void onPageLoaded(int firstPosition, int count) {
+        // the page is loaded ahead of the rows being shown, there is time to lay out the titles.
+        precomputeTitles(firstPosition, firstPosition + count);
+        notifyItemRangeChanged(firstPosition, count);
+    }
+
+    @Override
+    public NewsViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // inflate the view with data binding
+        Log.d(TAG,"Inflating news view");
+        ListItemNewsBinding listBinding = DataBindingUtil.inflate(LayoutInflater.from(parent.getContext()),
+                R.layout.list_item_news, parent, false);
+        return new NewsViewHolder(listBinding);
+    }
+
+    @Override
+    public void onBindViewHolder(NewsViewHolder holder, int position) {
+        long bindStart = System.nanoTime();
+        NewsRowModel newsRow = mNewsList.get(position);
+        ListItemNewsBinding listBinding = holder.mListBinding;
+
+        if(newsRow == null) {
+            // the page of the row is being loaded, show an empty row until then.
+            listBinding.newsItemImage.setController(null);
+        } else if(holder.mBoundRow == null || !holder.mBoundRow.getThumbnailUri().equals(newsRow.getThumbnailUri())) {
+            /**
+             * Set the thumbnail. The image request is prepared in the row model. A new controller is only
+             * needed when the row shows a different image than before.
+             */
+            long controllerStart = System.nanoTime();
+            DraweeController draweeController = Fresco.newDraweeControllerBuilder()
+                    .setImageRequest(newsRow.getThumbnailRequest())
+                    .setOldController(listBinding.newsItemImage.getController()).build();
+            listBinding.newsItemImage.setController(draweeController);
+            UiPerfMonitor.getInstance().recordSince(UiPerfMonitor.LIST_IMAGE_CONTROLLER, controllerStart);
+        }
+        holder.mBoundRow = newsRow;
+        listBinding.setNewsRow(newsRow);
+        holder.itemView.setAlpha(newsRow != null && mReadState.isRead(newsRow.getId()) ? READ_ROW_ALPHA : 1f);
+        listBinding.newsNew.setVisibility(newsRow != null && mReadState.isNew(newsRow.getId())
+                ? View.VISIBLE : View.GONE);
+        if(newsRow != null) {
+            // a news seen before is not written again.
+            mReadState.markSeen(newsRow.getId());
+        }
+        // bind now, a recycled row must not show the old news until the next frame.
+        listBinding.executePendingBindings();
+        UiPerfMonitor.getInstance().recordSince(UiPerfMonitor.LIST_BIND, bindStart);
+    }
+
+    /**
+     * View Holder pattern and data binding
+     */
+    class NewsViewHolder extends RecyclerView.ViewHolder {
+
+        // The data binding instance for the list_item_news layout.
+        private final ListItemNewsBinding mListBinding;
+
+        // The row model currently shown by this view holder, null while its page is loaded.
+        private NewsRowModel mBoundRow;
+
+        NewsViewHolder(ListItemNewsBinding listBinding) {
+            super(listBinding.getRoot());
+            mListBinding = listBinding;
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    if(mBoundRow != null && mListener != null) {
+                        mReadState.markRead(mBoundRow.getId());
+                        itemView.setAlpha(READ_ROW_ALPHA);
+                        mListener.onNewsClicked(mBoundRow);
+                    }
+                }
+            });
+        }
     }
 }
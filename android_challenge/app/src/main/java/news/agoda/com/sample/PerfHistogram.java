@@ -0,0 +1,129 @@
+package news.agoda.com.sample;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with fixed buckets, cheap enough to record every frame and every row bind.
+ * The buckets are finer around the frame budget (16ms) where the changes matter. Recording is thread safe
+ * and lock free.
+ */
+public class PerfHistogram {
+
+    /**
+     * Upper bounds of the buckets in microseconds. The last bucket has no upper bound.
+     */
+    private static final long[] BUCKET_BOUNDS_US = {
+            250, 500, 1000, 2000, 4000, 8000, 12000, 16700, 25000, 33400, 50000, 100000, 250000, 700000
+    };
+
+    private final String mName;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_BOUNDS_US.length + 1);
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private final AtomicLong mSumUs = new AtomicLong();
+
+    private final AtomicLong mMaxUs = new AtomicLong();
+
+    public PerfHistogram(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Record a duration.
+     * @param durationNanos    the duration in nanoseconds.
+     */
+    public void record(long durationNanos) {
+        long us = Math.max(0, durationNanos / 1000);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_US.length && us > BUCKET_BOUNDS_US[bucket]) {
+            bucket++;
+        }
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mSumUs.addAndGet(us);
+        long max = mMaxUs.get();
+        while (us > max && !mMaxUs.compareAndSet(max, us)) {
+            max = mMaxUs.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return    the mean duration in microseconds, 0 if nothing was recorded.
+     */
+    public long getMeanMicros() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSumUs.get() / count;
+    }
+
+    public long getMaxMicros() {
+        return mMaxUs.get();
+    }
+
+    /**
+     * The number of durations longer than a threshold. The threshold is rounded to a bucket bound.
+     * @param thresholdMicros    the threshold in microseconds.
+     * @return    the number of durations above the first bucket bound at or above the threshold.
+     */
+    public long countAbove(long thresholdMicros) {
+        long count = 0;
+        for (int bucket = 0; bucket <= BUCKET_BOUNDS_US.length; bucket++) {
+            long lowerBound = bucket == 0 ? 0 : BUCKET_BOUNDS_US[bucket - 1];
+            if (lowerBound >= thresholdMicros) {
+                count += mBuckets.get(bucket);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * An estimate of a percentile: the upper bound of the bucket containing it.
+     * @param percentile    between 0 and 100.
+     * @return    the estimate in microseconds, the max for the last bucket, 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_US.length; bucket++) {
+            seen += mBuckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_US[bucket], getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < mBuckets.length(); bucket++) {
+            mBuckets.set(bucket, 0);
+        }
+        mCount.set(0);
+        mSumUs.set(0);
+        mMaxUs.set(0);
+    }
+
+    /**
+     * One line summary, durations in milliseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: n=%d mean=%.2f p50<=%.2f p90<=%.2f p99<=%.2f max=%.2f",
+                mName, getCount(), getMeanMicros() / 1000.0, getPercentileMicros(50) / 1000.0,
+                getPercentileMicros(90) / 1000.0, getPercentileMicros(99) / 1000.0, getMaxMicros() / 1000.0);
+    }
+}
@@ -0,0 +1,148 @@
+package news.agoda.com.sample;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.MainThread;
+import android.support.v4.content.ContextCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lays out the titles of the news list ahead of time. Laying out a long title (line breaking, measuring)
+ * is the most expensive part of binding a row, so the layouts are built on a background thread for the
+ * rows about to be shown, and kept in a cache by title and width. Binding or re-binding a row then only
+ * takes a layout from the cache (see NewsTitleView).
+ *
+ * PrecomputedText would do the measuring part of this, but it needs API 28 and the app compiles against
+ * API 27, so the whole StaticLayout is cached instead.
+ */
+public class TitleLayoutCache {
+
+    /**
+     * Number of layouts kept. A few screens of rows, for each orientation.
+     */
+    private static final int MAX_LAYOUTS = 200;
+
+    /**
+     * Titles longer than this are ellipsized.
+     */
+    private static final int MAX_LINES = 3;
+
+    private static TitleLayoutCache sInstance;
+
+    private static ThreadPoolExecutor sLayoutExecutor;
+
+    /**
+     * The layouts by width and title. The cache is thread safe.
+     */
+    private final LruCache<String, StaticLayout> mLayouts = new LruCache<>(MAX_LAYOUTS);
+
+    /**
+     * The paint of the titles. It is only read after construction, by the layout builds and by drawing.
+     */
+    private final TextPaint mPaint;
+
+    /**
+     * The width the titles are shown at, 0 until a title was measured.
+     */
+    private volatile int mWidth;
+
+    /**
+     * Get the cache of the process.
+     * @param context    Any context, the application context is used.
+     */
+    @MainThread
+    public static TitleLayoutCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TitleLayoutCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TitleLayoutCache(Context context) {
+        Resources resources = context.getResources();
+        mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        mPaint.density = resources.getDisplayMetrics().density;
+        mPaint.setTextSize(resources.getDimension(R.dimen.news_title_text_size));
+        mPaint.setColor(ContextCompat.getColor(context, R.color.news_title));
+    }
+
+    /**
+     * Get the layout of a title, building it now if it is not cached.
+     * @param title    The title.
+     * @param width    The width of the text in pixels.
+     * @return    The layout.
+     */
+    @MainThread
+    public StaticLayout get(CharSequence title, int width) {
+        mWidth = width;
+        StaticLayout layout = mLayouts.get(key(title, width));
+        if (layout == null) {
+            layout = build(title, width);
+            mLayouts.put(key(title, width), layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Build the layouts of titles on a background thread, at the width the titles were last shown at.
+     * Nothing is done until a title has been shown, as the width is not known before.
+     * @param titles    The titles about to be shown.
+     */
+    @MainThread
+    public void precompute(final List<String> titles) {
+        final int width = mWidth;
+        if (width <= 0 || titles.isEmpty()) {
+            return;
+        }
+        getLayoutExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String title : titles) {
+                    String key = key(title, width);
+                    if (mLayouts.get(key) == null) {
+                        mLayouts.put(key, build(title, width));
+                    }
+                }
+            }
+        });
+    }
+
+    private StaticLayout build(CharSequence title, int width) {
+        return StaticLayout.Builder.obtain(title, 0, title.length(), mPaint, width)
+                .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                .setMaxLines(MAX_LINES)
+                .setEllipsize(TextUtils.TruncateAt.END)
+                .build();
+    }
+
+    private static String key(CharSequence title, int width) {
+        return width + ":" + title;
+    }
+
+    private static synchronized ThreadPoolExecutor getLayoutExecutor() {
+        if (sLayoutExecutor == null) {
+            sLayoutExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TitleLayoutThread");
+                    // the layouts are only an optimization, stay behind the UI and the fetches.
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            sLayoutExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sLayoutExecutor;
+    }
+}
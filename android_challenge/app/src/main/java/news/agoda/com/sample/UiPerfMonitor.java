@@ -0,0 +1,239 @@
+package news.agoda.com.sample;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import news.agoda.com.sample.viewmodel.StartupOrchestrator;
+
+/**
+ * Collects UI performance numbers in the process: the duration of the frames of the tracked activities
+ * (total and UI thread part), slow and dropped frames, and the time spent binding list rows and setting up
+ * image controllers. The numbers are kept in histograms (PerfHistogram) and can be dumped as text, from
+ * the debug menu of the main activity or from tests.
+ *
+ * The frame durations come from the frame metrics of the window (API 24). On older versions only the
+ * interval between frames is known, and it is only tracked in debug builds as it needs a callback every
+ * frame.
+ */
+public class UiPerfMonitor {
+
+    public static final String FRAME_TOTAL = "frame.total";
+    public static final String FRAME_UI_THREAD = "frame.uiThread";
+    public static final String LIST_BIND = "list.bind";
+    public static final String LIST_IMAGE_CONTROLLER = "list.imageController";
+    public static final String DETAIL_UPDATE = "detail.update";
+    public static final String DETAIL_IMAGE_CONTROLLER = "detail.imageController";
+
+    /**
+     * A frame longer than this missed the frame budget of a 60Hz display.
+     */
+    private static final long SLOW_FRAME_NANOS = 16700000;
+
+    private static final UiPerfMonitor sInstance = new UiPerfMonitor();
+
+    private final Map<String, PerfHistogram> mHistograms = new LinkedHashMap<>();
+
+    private final AtomicLong mSlowFrames = new AtomicLong();
+
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+
+    /**
+     * Frame metrics reports the system dropped because the listener lagged behind. The frames themselves
+     * may have been drawn in time, so they are counted apart from the dropped frames.
+     */
+    private final AtomicLong mMissedReports = new AtomicLong();
+
+    /**
+     * The frame metrics are delivered on this thread, off the UI thread.
+     */
+    private Handler mMetricsHandler;
+
+    /**
+     * The listeners of the tracked windows, by activity. Only used on the main thread.
+     */
+    private final Map<Activity, Object> mFrameListeners = new LinkedHashMap<>();
+
+    public static UiPerfMonitor getInstance() {
+        return sInstance;
+    }
+
+    private UiPerfMonitor() {
+        for (String name : new String[] {FRAME_TOTAL, FRAME_UI_THREAD, LIST_BIND, LIST_IMAGE_CONTROLLER,
+                DETAIL_UPDATE, DETAIL_IMAGE_CONTROLLER}) {
+            mHistograms.put(name, new PerfHistogram(name));
+        }
+    }
+
+    /**
+     * Record a duration.
+     * @param name    The name of the histogram, one of the constants.
+     * @param startNanos    The start of the duration, from System.nanoTime. It ends now.
+     */
+    public void recordSince(String name, long startNanos) {
+        mHistograms.get(name).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get a histogram, e.g. for tests.
+     * @param name    The name of the histogram, one of the constants.
+     */
+    public PerfHistogram getHistogram(String name) {
+        return mHistograms.get(name);
+    }
+
+    public long getSlowFrameCount() {
+        return mSlowFrames.get();
+    }
+
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * @return    the number of frames whose metrics were not reported, which the frame counts miss.
+     */
+    public long getMissedReportCount() {
+        return mMissedReports.get();
+    }
+
+    /**
+     * Start tracking the frames of an activity. Called in onResume.
+     */
+    public void startTracking(Activity activity) {
+        if (mFrameListeners.containsKey(activity)) {
+            return;
+        }
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        long frameIntervalNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : 60));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mFrameListeners.put(activity, trackFrameMetrics(activity.getWindow(), frameIntervalNanos));
+        } else if (BuildConfig.DEBUG) {
+            FrameIntervalCallback callback = new FrameIntervalCallback(frameIntervalNanos);
+            Choreographer.getInstance().postFrameCallback(callback);
+            mFrameListeners.put(activity, callback);
+        }
+    }
+
+    /**
+     * Stop tracking the frames of an activity. Called in onPause.
+     */
+    public void stopTracking(Activity activity) {
+        Object listener = mFrameListeners.remove(activity);
+        if (listener instanceof FrameIntervalCallback) {
+            ((FrameIntervalCallback) listener).mIsStopped = true;
+            Choreographer.getInstance().removeFrameCallback((FrameIntervalCallback) listener);
+        } else if (listener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(
+                    (Window.OnFrameMetricsAvailableListener) listener);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private Window.OnFrameMetricsAvailableListener trackFrameMetrics(Window window, final long frameIntervalNanos) {
+        synchronized (this) {
+            if (mMetricsHandler == null) {
+                HandlerThread thread = new HandlerThread("FrameMetricsThread");
+                thread.start();
+                mMetricsHandler = new Handler(thread.getLooper());
+            }
+        }
+        Window.OnFrameMetricsAvailableListener listener = new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+                if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                    // the first frame of a window includes its inflation, it is not a scrolling frame.
+                    return;
+                }
+                long uiThreadNanos = frameMetrics.getMetric(FrameMetrics.UNKNOWN_DELAY_DURATION) +
+                        frameMetrics.getMetric(FrameMetrics.INPUT_HANDLING_DURATION) +
+                        frameMetrics.getMetric(FrameMetrics.ANIMATION_DURATION) +
+                        frameMetrics.getMetric(FrameMetrics.LAYOUT_MEASURE_DURATION) +
+                        frameMetrics.getMetric(FrameMetrics.DRAW_DURATION);
+                recordFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION), frameIntervalNanos);
+                mHistograms.get(FRAME_UI_THREAD).record(uiThreadNanos);
+                // the reports the listener missed, not frames which were not shown.
+                mMissedReports.addAndGet(dropCount);
+            }
+        };
+        window.addOnFrameMetricsAvailableListener(listener, mMetricsHandler);
+        return listener;
+    }
+
+    private void recordFrame(long totalNanos, long frameIntervalNanos) {
+        mHistograms.get(FRAME_TOTAL).record(totalNanos);
+        if (totalNanos > SLOW_FRAME_NANOS) {
+            mSlowFrames.incrementAndGet();
+        }
+        if (totalNanos > frameIntervalNanos) {
+            // the vsyncs this frame overran are frames that were not shown.
+            mDroppedFrames.addAndGet((totalNanos - 1) / frameIntervalNanos);
+        }
+    }
+
+    /**
+     * Measures the interval between frames, before frame metrics exist.
+     */
+    private class FrameIntervalCallback implements Choreographer.FrameCallback {
+
+        private final long mFrameIntervalNanos;
+
+        private long mLastFrameNanos;
+
+        private boolean mIsStopped;
+
+        FrameIntervalCallback(long frameIntervalNanos) {
+            mFrameIntervalNanos = frameIntervalNanos;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mIsStopped) {
+                return;
+            }
+            if (mLastFrameNanos != 0) {
+                recordFrame(frameTimeNanos - mLastFrameNanos, mFrameIntervalNanos);
+            }
+            mLastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Forget everything recorded, e.g. before a test scenario.
+     */
+    public void reset() {
+        for (PerfHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        mSlowFrames.set(0);
+        mDroppedFrames.set(0);
+        mMissedReports.set(0);
+    }
+
+    /**
+     * The numbers as text, one line per histogram, durations in milliseconds.
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append("slow frames: ").append(getSlowFrameCount())
+                .append(", dropped frames: ").append(getDroppedFrameCount())
+                .append(", metrics dropped: ").append(getMissedReportCount()).append('\n');
+        for (PerfHistogram histogram : mHistograms.values()) {
+            dump.append(histogram).append('\n');
+        }
+        dump.append("time to first row ms: ")
+                .append(StartupOrchestrator.getInstance().getTimeToFirstRowMillis()).append('\n');
+        dump.append("images: ").append(ImagePipelineSetup.getStats()).append('\n');
+        return dump.toString();
+    }
+}
@@ -2,9 +2,6 @@ package news.agoda.com.sample.model;
 
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
@@ -53,11 +50,10 @@ class CacheDataSource implements DataSource {
                 // if read failed, let the caller know by sending null
                 return null;
             }
-            // the read is successful. Parse using json using gson library.
+            // the read is successful. Parse the json using the news decoder
+            // (parallel for large caches).
             results = new JSONArray(storedResponse);
-            Gson gson = new Gson();
-            newsList =gson.fromJson(results.toString(),
-                    new TypeToken<ArrayList<NewsEntity>>(){}.getType());
+            newsList = NewsDecoder.decode(results);
         } catch (JSONException e) {
             Log.e(TAG,"JSON parse error "+e.getMessage());
             return null;
@@ -67,7 +63,7 @@ class CacheDataSource implements DataSource {
     }
 
     /**
-     * clean up the cache db controller
+     * release the cache db controller
      */
     @Override
     public void close() {
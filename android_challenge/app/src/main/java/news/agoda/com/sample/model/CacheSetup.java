@@ -0,0 +1,49 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+
+import news.agoda.com.sample.AppConstants;
+
+/**
+ * Wires the cache to the work done on its snapshots once per process. It is called from
+ * StartupOrchestrator, before the first data source is created.
+ *
+ * - Every snapshot the cache stores is indexed for search (NewsSearchIndexer).
+ * - The full stories of its newest news are prefetched for offline reading (StoryPrefetcher).
+ * - The related news of each news are computed for the details view (RelatedNewsEngine).
+ * - The fetch times of the feeds are read on the I/O worker, before the first refresh needs them.
+ */
+public final class CacheSetup {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + CacheSetup.class.getSimpleName();
+
+    // guarded by the class.
+    private static boolean sIsInitialized;
+
+    private CacheSetup() {
+    }
+
+    /**
+     * Wire the cache, unless it is already wired. This does not block, the files are read in the
+     * background.
+     * @param filesDirPath    The path to the files directory.
+     * @return    true if the cache was wired by this call.
+     */
+    public static synchronized boolean initialize(@NotNull String filesDirPath) {
+        if (sIsInitialized) {
+            return false;
+        }
+        sIsInitialized = true;
+        // the controller lives as long as the process, the listeners stay registered after cleanUp.
+        NewsDataBaseController newsDB = NewsDataBaseController.getInstance(filesDirPath);
+        newsDB.addSnapshotListener(NewsSearchIndexer.getInstance(filesDirPath));
+        newsDB.addSnapshotListener(StoryPrefetcher.getInstance(filesDirPath));
+        newsDB.addSnapshotListener(RelatedNewsEngine.getInstance(filesDirPath));
+        newsDB.loadFeedSchedule(DataSourceFactory.getFeedScheduler(filesDirPath));
+        newsDB.cleanUp();
+        Log.d(TAG, "cache wired");
+        return true;
+    }
+}
@@ -1,7 +1,15 @@
 package news.agoda.com.sample.model;
 
+import android.content.res.AssetManager;
+
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This factory creates and returns the data source that the viewmodel (newsviewmodel) has requested.
  * It uses Factory pattern.
@@ -13,17 +21,126 @@ public class DataSourceFactory {
      */
     public enum Sources {
       SERVER,
-      CACHE
+      CACHE,
+      SEED,
+      // the cache, or the seed while the cache has no snapshot. Decided by the fetch.
+      LOCAL
+    }
+
+    /**
+     * The feed that the application shows by default. It is served by two mirrors, the second one is a
+     * backup if the first fails to respond.
+     */
+    private static final FeedEndpoint DEFAULT_FEED = new FeedEndpoint("home",
+            "https://api.myjson.com/bins/nl6jh",
+            "http://www.mocky.io/v2/573c89f31100004a1daa8adb");
+
+    /**
+     * The maximum number of feeds the server data source fetches at the same time.
+     */
+    private static final int MAX_PARALLEL_FEEDS = 4;
+
+    /**
+     * The file in which the feed scheduler keeps the fetch times of the feeds.
+     */
+    private static final String FEED_SCHEDULE_FILE = "feed_schedule.bin";
+
+    /**
+     * The feeds fetched by the server data source.
+     */
+    private static List<FeedSubscription> sSubscriptions =
+            Collections.singletonList(new FeedSubscription(DEFAULT_FEED));
+
+    private static FeedScheduler sFeedScheduler;
+
+    /**
+     * Configure the feeds fetched by the server data source, for example one feed per section. The
+     * feeds are fetched concurrently on every refresh and merged into one list.
+     * @param feeds    The feeds to fetch. Must not be empty.
+     */
+    public static synchronized void setFeeds(@NotNull List<FeedEndpoint> feeds) {
+        List<FeedSubscription> subscriptions = new ArrayList<>(feeds.size());
+        for(FeedEndpoint feed : feeds) {
+            subscriptions.add(new FeedSubscription(feed));
+        }
+        setSubscriptions(subscriptions);
+    }
+
+    /**
+     * Configure the feeds fetched by the server data source, each with its own refresh interval,
+     * priority and byte budget. A refresh only fetches the feeds which are due.
+     * @param subscriptions    The feeds to fetch. Must not be empty.
+     */
+    public static synchronized void setSubscriptions(@NotNull List<FeedSubscription> subscriptions) {
+        if(subscriptions.isEmpty()) {
+            throw new IllegalArgumentException("At least one feed is needed");
+        }
+        sSubscriptions = Collections.unmodifiableList(new ArrayList<>(subscriptions));
+        if(sFeedScheduler != null) {
+            sFeedScheduler.setSubscriptions(sSubscriptions);
+        }
+    }
+
+    /**
+     * Get the feeds fetched by the server data source.
+     * @return    The configured feeds.
+     */
+    public static synchronized List<FeedEndpoint> getFeeds() {
+        List<FeedEndpoint> feeds = new ArrayList<>(sSubscriptions.size());
+        for(FeedSubscription subscription : sSubscriptions) {
+            feeds.add(subscription.getFeed());
+        }
+        return feeds;
+    }
+
+    /**
+     * Get the scheduler of the subscribed feeds, which also tells when the next refresh is due.
+     * @param filesDirPath    The path to the files directory, where the fetch times are kept.
+     * @return    The feed scheduler.
+     */
+    @NotNull
+    public static synchronized FeedScheduler getFeedScheduler(String filesDirPath) {
+        if(sFeedScheduler == null) {
+            sFeedScheduler = new FeedScheduler(new File(filesDirPath, FEED_SCHEDULE_FILE));
+            sFeedScheduler.setSubscriptions(sSubscriptions);
+        }
+        return sFeedScheduler;
+    }
+
+    /**
+     * Indicates if the cache has a snapshot, i.e. a server fetch succeeded once. Until then the local
+     * news are those of the seed. This only checks that the cache file exists, but it is blocking all the
+     * same.
+     * @param filesDirPath    The path to the files directory.
+     * @return    true if the cache data source has news to read.
+     */
+    public static boolean hasCachedSnapshot(String filesDirPath) {
+        return NewsDataBaseController.hasSnapshot(filesDirPath);
     }
 
     /**
      * Create and obtain a data source.
      * @param type    The type of data source needed.
      * @param filesDirPath    The path to the files directory which is needed by the cache db controller.
+     * @param assets    The assets of the application, where the seed snapshot is packaged.
      * @return
      */
     @Nullable
-    public static DataSource getDataSource(Sources type, String filesDirPath) {
+    public static DataSource getDataSource(Sources type, String filesDirPath, AssetManager assets) {
+        if(type == Sources.SEED) {
+            /**
+             * create the seed data source. This reads the news packaged with the application, it does not
+             * need the cache db controller.
+             */
+            return new SeedDataSource(assets);
+        }
+        if(type == Sources.LOCAL) {
+            /**
+             * create the local data source. It creates the cache or the seed data source when it fetches,
+             * so the cache file is not checked by the caller.
+             */
+            return new LocalDataSource(filesDirPath, assets);
+        }
         /**
          * We first need access to the cache db controller.
          */
@@ -33,7 +150,8 @@ public class DataSourceFactory {
                 /**
                  * create the server data source. This fetches data from the server and uses the internet.
                  */
-                return new ServerDataSource(newsDB);
+                return new ServerDataSource(newsDB, getFeedScheduler(filesDirPath), MAX_PARALLEL_FEEDS,
+                        RetryPolicy.DEFAULT);
             case CACHE:
                 /**
                  *  create the cache data source. This fetches data from the cache which is present locally
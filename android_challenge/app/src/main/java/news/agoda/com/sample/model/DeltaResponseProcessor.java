@@ -0,0 +1,104 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Parse the response of a feed fetched with delta sync (see DeltaSync). A delta is applied to the news
+ * the feed sent last, a full response replaces them. Either way the news of the feed are kept by key so
+ * that they can be the base of the next delta sync.
+ */
+class DeltaResponseProcessor implements NetworkProcessor {
+
+    private static final String TAG = AppConstants.APP_TAG + "." +
+            DeltaResponseProcessor.class.getSimpleName();
+
+    /**
+     * The news the feed sent last, by key. Null if there are none.
+     */
+    private final Map<String, NewsEntity> mBase;
+
+    /**
+     * The news of the feed after the response was processed, by key.
+     */
+    private LinkedHashMap<String, NewsEntity> mSynced;
+
+    /**
+     * True if the feed sent a delta which does not apply to the base.
+     */
+    private boolean mIsBaseStale;
+
+    /**
+     * Constructor
+     * @param base    the news the feed sent last, by key. Null if there are none.
+     */
+    DeltaResponseProcessor(@Nullable Map<String, NewsEntity> base) {
+        mBase = base;
+    }
+
+    /**
+     * The response processor is the last stage of the processing pipeline, so the next stage is ignored.
+     */
+    @Override
+    public void setNext(NetworkProcessor next) {
+    }
+
+    /**
+     * Process the response from the server.
+     * @param responseFromServer    json string from the server, a delta or a full response.
+     *
+     * @return    The list of news entity. Null if error.
+     */
+    @Override
+    @Nullable
+    public ArrayList<NewsEntity> execute(String responseFromServer) {
+        Log.d(TAG,"execute, " + responseFromServer.length() + " chars");
+        try {
+            JSONObject serverJson = new JSONObject(responseFromServer);
+            if(! serverJson.getString("status").equals("OK") ) {
+                // server response is an error
+                return null;
+            }
+            if(DeltaSync.isDelta(serverJson)) {
+                mSynced = mBase == null ? null : DeltaSync.apply(mBase, serverJson);
+                if(mSynced == null) {
+                    // the delta is not meant for the news we have, they must be fetched in full.
+                    Log.e(TAG,"Delta does not match the base");
+                    mIsBaseStale = true;
+                    return null;
+                }
+            } else {
+                mSynced = DeltaSync.index(NewsDecoder.decode(serverJson.getJSONArray("results")));
+            }
+        } catch (Exception e) {
+            Log.e(TAG,"JSON parse failed "+e.getMessage());
+            return null;
+        }
+        return new ArrayList<>(mSynced.values());
+    }
+
+    /**
+     * @return    the news of the feed by key, after a successful execute.
+     */
+    @Nullable
+    LinkedHashMap<String, NewsEntity> getSynced() {
+        return mSynced;
+    }
+
+    /**
+     * @return    true if the feed sent a delta for other news than the base. The feed should be fetched
+     *            again without a cursor.
+     */
+    boolean isBaseStale() {
+        return mIsBaseStale;
+    }
+}
@@ -0,0 +1,243 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import news.agoda.com.sample.viewmodel.MediaEntity;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * The delta sync protocol, with which a feed sends only the news that changed since the last fetch
+ * instead of the whole results array.
+ *
+ * The client adds its sync cursor to the url of the feed: "since", the newest published time (epoch
+ * millis) of the news it has, and "digest", a digest of the news it has. The digest is the sum (modulo
+ * 2^64) of the fingerprints of the news, a 64 bit FNV-1a hash of the url and of the content of a news, so
+ * it does not depend on the order of the news and the server can compute it for any of its past states.
+ * If the server knows the state of the client, it answers:
+ *
+ *   {"status": "OK", "sync": "delta", "digest": "...",
+ *    "added": [news...], "changed": [news...], "removed": ["url"...]}
+ *
+ * where digest is the digest of the news after the delta is applied, so that the client can check that
+ * it has the same news as the server. Otherwise (or if it does not speak the protocol) it sends the usual
+ * full response, {"status": "OK", "results": [news...]}.
+ *
+ * News are identified by their url. The few news without a url are identified by their title.
+ */
+final class DeltaSync {
+
+    static final String PARAM_SINCE = "since";
+    static final String PARAM_DIGEST = "digest";
+
+    static final String KEY_SYNC = "sync";
+    static final String SYNC_DELTA = "delta";
+    static final String KEY_DIGEST = "digest";
+    static final String KEY_ADDED = "added";
+    static final String KEY_CHANGED = "changed";
+    static final String KEY_REMOVED = "removed";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private DeltaSync() {
+    }
+
+    /**
+     * The state of the news a client has, sent with a delta request.
+     */
+    static final class Cursor {
+
+        private final long mSince;
+
+        private final long mDigest;
+
+        Cursor(long since, long digest) {
+            mSince = since;
+            mDigest = digest;
+        }
+
+        /**
+         * The cursor of a set of news.
+         * @param news    the news by key, see index.
+         */
+        @NotNull
+        static Cursor of(@NotNull Map<String, NewsEntity> news) {
+            long since = NewsDates.UNKNOWN;
+            for (NewsEntity newsEntity : news.values()) {
+                since = Math.max(since, NewsDates.toEpochMillis(newsEntity.getPublishedDate()));
+            }
+            return new Cursor(since, digest(news.values()));
+        }
+
+        /**
+         * Parse the cursor sent by a client.
+         * @return    the cursor, or null if a parameter is missing or invalid.
+         */
+        @Nullable
+        static Cursor parse(@Nullable String since, @Nullable String digest) {
+            if (since == null || digest == null) {
+                return null;
+            }
+            try {
+                return new Cursor(Long.parseLong(since), parseDigest(digest));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        long getSince() {
+            return mSince;
+        }
+
+        long getDigest() {
+            return mDigest;
+        }
+
+        /**
+         * Add the cursor to the url of a feed.
+         */
+        @NotNull
+        String appendTo(@NotNull String url) {
+            return url + (url.indexOf('?') < 0 ? '?' : '&') + PARAM_SINCE + "=" + mSince + "&"
+                    + PARAM_DIGEST + "=" + formatDigest(mDigest);
+        }
+    }
+
+    /**
+     * @return    the key identifying a news in a delta.
+     */
+    @NotNull
+    static String keyOf(@NotNull NewsEntity newsEntity) {
+        return newsEntity.getUrl() != null ? newsEntity.getUrl() : "title:" + newsEntity.getTitle();
+    }
+
+    /**
+     * Key a list of news. When two news have the same key, the last one is kept.
+     * @return    the news by key, in the order of the list.
+     */
+    @NotNull
+    static LinkedHashMap<String, NewsEntity> index(@NotNull List<NewsEntity> newsList) {
+        LinkedHashMap<String, NewsEntity> news = new LinkedHashMap<>(newsList.size() * 4 / 3 + 1);
+        for (NewsEntity newsEntity : newsList) {
+            news.put(keyOf(newsEntity), newsEntity);
+        }
+        return news;
+    }
+
+    /**
+     * @return    the digest of a set of news, the sum of their fingerprints.
+     */
+    static long digest(@NotNull Collection<NewsEntity> news) {
+        long digest = 0;
+        for (NewsEntity newsEntity : news) {
+            digest += fingerprint(newsEntity);
+        }
+        return digest;
+    }
+
+    /**
+     * A hash of the key and of all the fields of a news. A news is changed if its fingerprint is.
+     */
+    static long fingerprint(@NotNull NewsEntity newsEntity) {
+        long hash = hash(FNV_OFFSET, keyOf(newsEntity));
+        hash = hash(hash, newsEntity.getSection());
+        hash = hash(hash, newsEntity.getSubsection());
+        hash = hash(hash, newsEntity.getTitle());
+        hash = hash(hash, newsEntity.getSummary());
+        hash = hash(hash, newsEntity.getByline());
+        hash = hash(hash, newsEntity.getPublishedDate());
+        List<MediaEntity> mediaList = newsEntity.getMediaEntityList();
+        if (mediaList != null) {
+            for (MediaEntity media : mediaList) {
+                hash = hash(hash, media.getUrl());
+                hash = hash(hash, media.getFormat());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a of the chars of a string followed by a separator, so that ("ab", "c") and ("a", "bc") differ.
+     */
+    private static long hash(long hash, @Nullable String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ (s == null ? 1 : 0xffff)) * FNV_PRIME;
+    }
+
+    @NotNull
+    static String formatDigest(long digest) {
+        return Long.toHexString(digest);
+    }
+
+    /**
+     * @throws NumberFormatException    if the digest is not a 64 bit hex number.
+     */
+    static long parseDigest(@NotNull String digest) {
+        if (digest.isEmpty() || digest.length() > 16) {
+            throw new NumberFormatException("Invalid digest " + digest);
+        }
+        // parsed in two halves, parseLong does not accept the values with the high bit set.
+        int split = Math.max(0, digest.length() - 8);
+        long high = split == 0 ? 0 : Long.parseLong(digest.substring(0, split), 16);
+        return (high << 32) | Long.parseLong(digest.substring(split), 16);
+    }
+
+    /**
+     * @return    true if a response of the feed is a delta.
+     */
+    static boolean isDelta(@NotNull JSONObject response) {
+        return SYNC_DELTA.equals(response.optString(KEY_SYNC));
+    }
+
+    /**
+     * Apply a delta to the news the client has.
+     * @param base    the news the client has, by key. It is not modified.
+     * @param response    the delta sent by the server.
+     * @return    the news the server has, by key, or null if they do not match the digest of the delta.
+     * @throws JSONException    if the delta cannot be decoded.
+     */
+    @Nullable
+    static LinkedHashMap<String, NewsEntity> apply(@NotNull Map<String, NewsEntity> base,
+                                                    @NotNull JSONObject response) throws JSONException {
+        long expectedDigest;
+        try {
+            expectedDigest = parseDigest(response.getString(KEY_DIGEST));
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid digest " + e.getMessage());
+        }
+        LinkedHashMap<String, NewsEntity> news = new LinkedHashMap<>(base);
+        JSONArray removed = response.optJSONArray(KEY_REMOVED);
+        if (removed != null) {
+            for (int i = 0; i < removed.length(); i++) {
+                news.remove(removed.getString(i));
+            }
+        }
+        JSONArray changed = response.optJSONArray(KEY_CHANGED);
+        if (changed != null) {
+            // a changed news keeps its position.
+            for (NewsEntity newsEntity : NewsDecoder.decode(changed)) {
+                news.put(keyOf(newsEntity), newsEntity);
+            }
+        }
+        JSONArray added = response.optJSONArray(KEY_ADDED);
+        if (added != null) {
+            for (NewsEntity newsEntity : NewsDecoder.decode(added)) {
+                news.put(keyOf(newsEntity), newsEntity);
+            }
+        }
+        return digest(news.values()) == expectedDigest ? news : null;
+    }
+}
@@ -0,0 +1,79 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A news feed that the server data source can fetch, for example one per section. A feed may be served
+ * from several mirrors. The mirrors are tried in order until one of them responds.
+ *
+ * A feed whose server speaks the delta sync protocol (see DeltaSync) can be fetched with withDeltaSync, so
+ * that a refresh only downloads the news that changed since the last one.
+ */
+public class FeedEndpoint {
+
+    /**
+     * A readable name of the feed, used for logging.
+     */
+    private final String mName;
+
+    /**
+     * The urls of the feed. All of them serve the same feed.
+     */
+    private final List<String> mMirrorUrls;
+
+    /**
+     * True if the feed is fetched with delta sync.
+     */
+    private final boolean mIsDeltaSync;
+
+    /**
+     * Constructor
+     * @param name    name of the feed.
+     * @param mirrorUrls    urls of the feed, in the order they should be tried.
+     */
+    public FeedEndpoint(@NotNull String name, @NotNull String... mirrorUrls) {
+        if (mirrorUrls.length == 0) {
+            throw new IllegalArgumentException("A feed needs at least one url");
+        }
+        mName = name;
+        mMirrorUrls = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(mirrorUrls)));
+        mIsDeltaSync = false;
+    }
+
+    private FeedEndpoint(FeedEndpoint feed, boolean isDeltaSync) {
+        mName = feed.mName;
+        mMirrorUrls = feed.mMirrorUrls;
+        mIsDeltaSync = isDeltaSync;
+    }
+
+    /**
+     * Get the same feed, fetched with delta sync. All the mirrors must speak the protocol.
+     * @return    the feed with delta sync.
+     */
+    @NotNull
+    public FeedEndpoint withDeltaSync() {
+        return new FeedEndpoint(this, true);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public List<String> getMirrorUrls() {
+        return mMirrorUrls;
+    }
+
+    public boolean isDeltaSync() {
+        return mIsDeltaSync;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
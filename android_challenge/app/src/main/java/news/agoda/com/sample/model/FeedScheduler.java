@@ -0,0 +1,265 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import news.agoda.com.sample.AppConstants;
+
+/**
+ * Decides which of the subscribed feeds a refresh fetches, and when the next refresh is needed.
+ *
+ * A feed is due when its news are older than its refresh interval. To batch the feeds into as few
+ * wakeups as possible, a feed is also due a little early, up to a quarter of its interval and at most
+ * MAX_EARLY_MILLIS, so that the feeds which would be due shortly after the first one are fetched in the
+ * same refresh. A feed which has spent its daily byte budget is not due until its budget is renewed. The
+ * due feeds are fetched by priority, the fresh ones are not fetched at all.
+ *
+ * The time and the bytes of the last fetch of every feed are kept in a small file, so that a restart does
+ * not refresh feeds which are still fresh. The file is read with load, or by the first refresh, and
+ * written with save once per refresh. The scheduler can be used from any thread.
+ */
+public class FeedScheduler {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + FeedScheduler.class.getSimpleName();
+
+    /**
+     * The byte budget of a feed is renewed after this time.
+     */
+    static final long BUDGET_WINDOW_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * The most a feed is fetched before its interval is over, to join a refresh of other feeds.
+     */
+    static final long MAX_EARLY_MILLIS = 5 * 60 * 1000L;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Where the fetch times are kept, null to keep them in memory only.
+     */
+    private final File mStateFile;
+
+    // guarded by this.
+    private List<FeedSubscription> mSubscriptions = Collections.emptyList();
+
+    // the fetch state by feed name. Guarded by this.
+    private final Map<String, FetchState> mFetchStates = new HashMap<>();
+
+    // guarded by this.
+    private boolean mIsLoaded;
+
+    /**
+     * Indicates a fetch was told since the last save. Guarded by this.
+     */
+    private boolean mIsDirty;
+
+    /**
+     * The last fetch of a feed and the bytes it used in the current budget window.
+     */
+    private static final class FetchState {
+        long mLastFetchMillis;
+        long mWindowStartMillis;
+        long mWindowBytes;
+    }
+
+    /**
+     * Constructor. This does not do any I/O.
+     * @param stateFile    where the fetch times are kept, null to keep them in memory only.
+     */
+    FeedScheduler(@Nullable File stateFile) {
+        mStateFile = stateFile;
+        mIsLoaded = stateFile == null;
+    }
+
+    /**
+     * Set the subscribed feeds. The fetch times of the feeds which stay subscribed are kept.
+     */
+    public synchronized void setSubscriptions(@NotNull List<FeedSubscription> subscriptions) {
+        mSubscriptions = Collections.unmodifiableList(new ArrayList<>(subscriptions));
+    }
+
+    @NotNull
+    public synchronized List<FeedSubscription> getSubscriptions() {
+        return mSubscriptions;
+    }
+
+    /**
+     * Get the feeds a refresh should fetch now.
+     * @param nowMillis    the current time.
+     * @return    the due feeds, the highest priority first.
+     */
+    @NotNull
+    public synchronized List<FeedSubscription> getDueFeeds(long nowMillis) {
+        load();
+        List<FeedSubscription> due = new ArrayList<>(mSubscriptions.size());
+        for (FeedSubscription subscription : mSubscriptions) {
+            if (dueAt(subscription) <= nowMillis) {
+                due.add(subscription);
+            }
+        }
+        // the sort is stable, feeds of the same priority keep the order of the subscriptions.
+        Collections.sort(due, new Comparator<FeedSubscription>() {
+            @Override
+            public int compare(FeedSubscription s1, FeedSubscription s2) {
+                return s2.getPriority().ordinal() - s1.getPriority().ordinal();
+            }
+        });
+        return due;
+    }
+
+    /**
+     * Get the time of the next refresh, when the first of the feeds with a refresh interval is due. This
+     * does not do any I/O.
+     * @return    the time, or Long.MAX_VALUE if no feed is refreshed on a schedule or the fetch times are
+     *            not loaded yet.
+     */
+    public synchronized long getNextRefreshMillis() {
+        long next = Long.MAX_VALUE;
+        if (!mIsLoaded) {
+            return next;
+        }
+        for (FeedSubscription subscription : mSubscriptions) {
+            if (subscription.getRefreshIntervalMillis() > 0) {
+                next = Math.min(next, dueAt(subscription));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Remember that a feed was fetched. The fetch times are written by the next save.
+     * @param subscription    the feed.
+     * @param nowMillis    the time of the fetch.
+     * @param bytes    the bytes downloaded, counted against the budget of the feed.
+     */
+    public synchronized void onFeedFetched(@NotNull FeedSubscription subscription, long nowMillis, long bytes) {
+        load();
+        FetchState state = mFetchStates.get(subscription.getFeed().getName());
+        if (state == null) {
+            state = new FetchState();
+            mFetchStates.put(subscription.getFeed().getName(), state);
+        }
+        if (nowMillis < state.mWindowStartMillis
+                || nowMillis >= state.mWindowStartMillis + BUDGET_WINDOW_MILLIS) {
+            state.mWindowStartMillis = nowMillis;
+            state.mWindowBytes = 0;
+        }
+        state.mLastFetchMillis = nowMillis;
+        state.mWindowBytes += bytes;
+        Log.d(TAG, subscription + " fetched, " + state.mWindowBytes + " bytes today");
+        mIsDirty = true;
+    }
+
+    /**
+     * @return    the time from which a feed is due. The time of a feed which was never fetched is 0.
+     */
+    private long dueAt(FeedSubscription subscription) {
+        FetchState state = mFetchStates.get(subscription.getFeed().getName());
+        if (state == null) {
+            return 0;
+        }
+        long interval = subscription.getRefreshIntervalMillis();
+        long dueAt = state.mLastFetchMillis + interval - Math.min(interval / 4, MAX_EARLY_MILLIS);
+        if (state.mWindowBytes >= subscription.getDailyByteBudget()) {
+            // wait for the budget to be renewed.
+            dueAt = Math.max(dueAt, state.mWindowStartMillis + BUDGET_WINDOW_MILLIS);
+        }
+        return dueAt;
+    }
+
+    /**
+     * Read the fetch times, unless this was done already. This call is blocking.
+     */
+    synchronized void load() {
+        if (mIsLoaded) {
+            return;
+        }
+        mIsLoaded = true;
+        if (!mStateFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mStateFile)));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                FetchState state = new FetchState();
+                state.mLastFetchMillis = in.readLong();
+                state.mWindowStartMillis = in.readLong();
+                state.mWindowBytes = in.readLong();
+                mFetchStates.put(name, state);
+            }
+        } catch (IOException e) {
+            // the feeds are fetched as if they never were.
+            Log.e(TAG, "Cannot read feed schedule " + e.getMessage());
+            mFetchStates.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Write the fetch states if a fetch was told since the last save. A few bytes per feed, written once
+     * per refresh by the thread which refreshed. This call is blocking.
+     */
+    public synchronized void save() {
+        if (mStateFile == null || !mIsDirty) {
+            return;
+        }
+        mIsDirty = false;
+        File tmpFile = new File(mStateFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(VERSION);
+            out.writeInt(mFetchStates.size());
+            for (Map.Entry<String, FetchState> entry : mFetchStates.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().mLastFetchMillis);
+                out.writeLong(entry.getValue().mWindowStartMillis);
+                out.writeLong(entry.getValue().mWindowBytes);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(mStateFile)) {
+                Log.e(TAG, "Cannot replace feed schedule");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write feed schedule " + e.getMessage());
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot close feed schedule " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A feed the user follows, with how often it is refreshed (see FeedScheduler). For example "breaking
+ * news" may be refreshed every few minutes with a high priority, while "weekly science" is refreshed once
+ * a day.
+ */
+public class FeedSubscription {
+
+    /**
+     * The order in which the due feeds of a refresh are fetched.
+     */
+    public enum Priority {
+        LOW,
+        NORMAL,
+        HIGH
+    }
+
+    /**
+     * A byte budget without limit.
+     */
+    public static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+
+    private final FeedEndpoint mFeed;
+
+    /**
+     * How long the news of the feed stay fresh. 0 to fetch the feed on every refresh.
+     */
+    private final long mRefreshIntervalMillis;
+
+    private final Priority mPriority;
+
+    /**
+     * The number of bytes the feed may download in a day.
+     */
+    private final long mDailyByteBudget;
+
+    /**
+     * Subscribe to a feed which is fetched on every refresh, without a byte budget.
+     * @param feed    the feed.
+     */
+    public FeedSubscription(@NotNull FeedEndpoint feed) {
+        this(feed, 0, Priority.NORMAL, UNLIMITED_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param feed    the feed.
+     * @param refreshIntervalMillis    how long the news of the feed stay fresh. 0 to fetch the feed on
+     *                                 every refresh.
+     * @param priority    the priority of the feed among the feeds due at the same time.
+     * @param dailyByteBudget    the number of bytes the feed may download in a day. Once spent, the feed
+     *                           is not fetched until the day is over.
+     */
+    public FeedSubscription(@NotNull FeedEndpoint feed, long refreshIntervalMillis, @NotNull Priority priority,
+                            long dailyByteBudget) {
+        if (refreshIntervalMillis < 0 || dailyByteBudget <= 0) {
+            throw new IllegalArgumentException("Invalid refresh interval or byte budget");
+        }
+        mFeed = feed;
+        mRefreshIntervalMillis = refreshIntervalMillis;
+        mPriority = priority;
+        mDailyByteBudget = dailyByteBudget;
+    }
+
+    public FeedEndpoint getFeed() {
+        return mFeed;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return mRefreshIntervalMillis;
+    }
+
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    public long getDailyByteBudget() {
+        return mDailyByteBudget;
+    }
+
+    /**
+     * @return    true if the feed may be left out of a refresh, its news then come from the cache.
+     */
+    boolean isScheduled() {
+        return mRefreshIntervalMillis > 0 || mDailyByteBudget != UNLIMITED_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return mFeed + " every " + mRefreshIntervalMillis + "ms";
+    }
+}
@@ -0,0 +1,84 @@
+package news.agoda.com.sample.model;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * The local data source fetches the news stored on the device: the cache, or the seed packaged with the
+ * app as long as the cache has no snapshot (see SeedDataSource). Which one is decided by the fetch, on the
+ * thread which fetches, so that the main thread does not check the cache file.
+ */
+class LocalDataSource implements DataSource {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + LocalDataSource.class.getSimpleName();
+
+    private final String mFilesDirPath;
+
+    private final AssetManager mAssets;
+
+    /**
+     * The cache or the seed data source, null until the first fetch. Guarded by this.
+     */
+    private DataSource mSource;
+
+    // guarded by this.
+    private boolean mIsClosed;
+
+    LocalDataSource(@NotNull String filesDirPath, @NotNull AssetManager assets) {
+        mFilesDirPath = filesDirPath;
+        mAssets = assets;
+    }
+
+    @Override
+    @Nullable
+    public ArrayList<NewsEntity> fetchNewsList() {
+        DataSource source;
+        synchronized (this) {
+            if (mIsClosed) {
+                return null;
+            }
+            if (mSource == null) {
+                // This call is blocking.
+                DataSourceFactory.Sources type = DataSourceFactory.hasCachedSnapshot(mFilesDirPath) ?
+                        DataSourceFactory.Sources.CACHE : DataSourceFactory.Sources.SEED;
+                mSource = DataSourceFactory.getDataSource(type, mFilesDirPath, mAssets);
+                Log.d(TAG, "fetchNewsList from " + mSource.getType());
+            }
+            source = mSource;
+        }
+        return source.fetchNewsList();
+    }
+
+    /**
+     * Release the cache db controller if the cache was read.
+     */
+    @Override
+    public void close() {
+        DataSource source;
+        synchronized (this) {
+            mIsClosed = true;
+            source = mSource;
+            mSource = null;
+        }
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    /**
+     * Get type of data source
+     * @return    LOCAL
+     */
+    @Override
+    public DataSourceFactory.Sources getType() {
+        return DataSourceFactory.Sources.LOCAL;
+    }
+}
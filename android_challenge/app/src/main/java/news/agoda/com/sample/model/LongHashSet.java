@@ -0,0 +1,88 @@
+package news.agoda.com.sample.model;
+
+/**
+ * A set of longs in one array with open addressing (linear probing), so that a lookup neither boxes nor
+ * allocates. 0 marks an empty slot, the value 0 itself is tracked apart.
+ */
+final class LongHashSet {
+
+    private long[] mSlots;
+
+    private int mSize;
+
+    private boolean mHasZero;
+
+    LongHashSet(int expectedSize) {
+        mSlots = new long[capacityFor(expectedSize)];
+    }
+
+    boolean contains(long value) {
+        if (value == 0) {
+            return mHasZero;
+        }
+        int mask = mSlots.length - 1;
+        for (int slot = slotOf(value, mask); ; slot = (slot + 1) & mask) {
+            long slotValue = mSlots[slot];
+            if (slotValue == value) {
+                return true;
+            }
+            if (slotValue == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return    true if the value was not in the set.
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            boolean isNew = !mHasZero;
+            mHasZero = true;
+            mSize += isNew ? 1 : 0;
+            return isNew;
+        }
+        if (!insert(mSlots, value)) {
+            return false;
+        }
+        mSize++;
+        // keep the table at most half full, the probes stay short.
+        if (mSize * 2 > mSlots.length) {
+            long[] slots = new long[mSlots.length * 2];
+            for (long existing : mSlots) {
+                if (existing != 0) {
+                    insert(slots, existing);
+                }
+            }
+            mSlots = slots;
+        }
+        return true;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private static boolean insert(long[] slots, long value) {
+        int mask = slots.length - 1;
+        for (int slot = slotOf(value, mask); ; slot = (slot + 1) & mask) {
+            if (slots[slot] == value) {
+                return false;
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = value;
+                return true;
+            }
+        }
+    }
+
+    private static int slotOf(long value, int mask) {
+        // the ids are hashes already, fold the high bits in.
+        long hash = value * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Integer.highestOneBit(Math.max(8, expectedSize) * 4 - 1);
+    }
+}
@@ -0,0 +1,234 @@
+package news.agoda.com.sample.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Finds news which are the same story with a slightly different title, summary or url, e.g. a story sent
+ * by two sections.
+ *
+ * Every news gets a MinHash signature of the words and word pairs of its title and summary: the share of
+ * equal values in the signatures of two news estimates the overlap (Jaccard similarity) of their words.
+ * Two news are near duplicates if the estimate is at least MIN_SIMILARITY. To avoid comparing every pair,
+ * the signatures are indexed by locality sensitive hashing: they are cut into BANDS bands of ROWS values,
+ * and only the news which have a whole band in common are compared. Near duplicates share a band with a
+ * high probability, unrelated news almost never do, so adding a news takes constant time on average.
+ *
+ * A detector is used by one thread.
+ */
+final class NearDuplicateDetector {
+
+    /**
+     * News whose words overlap at least this much are near duplicates. Changing a word of a 30 word
+     * summary keeps about 90% of the words and word pairs.
+     */
+    static final float MIN_SIMILARITY = 0.7f;
+
+    /**
+     * A text needs this many words and word pairs for its signature to be meaningful. A short title such as
+     * "Markets" would otherwise match unrelated news.
+     */
+    private static final int MIN_FEATURES = 8;
+
+    private static final int BANDS = 8;
+
+    private static final int ROWS = 4;
+
+    static final int SIGNATURE_LENGTH = BANDS * ROWS;
+
+    // kept with a news whose text is too short for a signature.
+    private static final int[] NO_SIGNATURE = new int[0];
+
+    /**
+     * The hash functions of the signature are h(x) = (a * x + b) >>> 33, with a random odd a: the top 31
+     * bits, so that the values are non-negative ints.
+     */
+    private static final long[] sMultipliers = new long[SIGNATURE_LENGTH];
+    private static final long[] sIncrements = new long[SIGNATURE_LENGTH];
+
+    static {
+        // a fixed seed, the signatures are the same in every process.
+        Random random = new Random(0x5eed);
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            sMultipliers[i] = random.nextLong() | 1;
+            sIncrements[i] = random.nextLong();
+        }
+    }
+
+    // the signatures of the news added, one after the other.
+    private int[] mSignatures;
+
+    // per band, the first entry of each bucket plus one (0 for none), and the next entry of each entry.
+    private int[][] mHeads;
+
+    private int[][] mNext;
+
+    private int mSize;
+
+    private int mCapacity;
+
+    /**
+     * @param expectedSize    number of news expected, the index grows if there are more.
+     */
+    NearDuplicateDetector(int expectedSize) {
+        allocate(Math.max(16, expectedSize));
+    }
+
+    /**
+     * Get the signature of a news. It is computed the first time and kept with the news, so that the news
+     * of a feed are not signed again when the next refreshes merge them.
+     * @return    the signature, or null if the text is too short.
+     */
+    static int[] signatureOf(NewsEntity newsEntity) {
+        int[] signature = newsEntity.getNearDuplicateSignature();
+        if (signature == null) {
+            signature = signature(newsEntity);
+            newsEntity.setNearDuplicateSignature(signature == null ? NO_SIGNATURE : signature);
+        }
+        return signature == NO_SIGNATURE ? null : signature;
+    }
+
+    /**
+     * Compute the MinHash signature of the title and summary of a news.
+     * @return    the signature, or null if the text is too short.
+     */
+    static int[] signature(NewsEntity newsEntity) {
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int features = addFeatures(newsEntity.getTitle(), signature);
+        features += addFeatures(newsEntity.getSummary(), signature);
+        return features < MIN_FEATURES ? null : signature;
+    }
+
+    private static int addFeatures(String text, int[] signature) {
+        List<String> words = SearchTokenizer.tokenize(text, 1);
+        long previous = 0;
+        for (int i = 0; i < words.size(); i++) {
+            long word = hash(words.get(i));
+            addFeature(word, signature);
+            if (i > 0) {
+                // word pairs keep some of the word order.
+                addFeature(previous * 31 + word, signature);
+            }
+            previous = word;
+        }
+        return words.isEmpty() ? 0 : 2 * words.size() - 1;
+    }
+
+    private static void addFeature(long feature, int[] signature) {
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            int value = (int) ((sMultipliers[i] * feature + sIncrements[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of a word.
+     */
+    private static long hash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Find a near duplicate of a news among the ones added before, and add the news if there is none.
+     * @param signature    the signature of the news, may be null.
+     * @return    the position (in the order they were added) of a near duplicate, or -1 if the news was
+     *            added. News without a signature are never added.
+     */
+    int findOrAdd(int[] signature) {
+        if (signature == null) {
+            return -1;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            int bandHash = bandHash(signature, 0, band);
+            int[] heads = mHeads[band];
+            int[] next = mNext[band];
+            for (int entry = heads[bandHash & (heads.length - 1)] - 1; entry >= 0; entry = next[entry]) {
+                if (isSameBand(signature, entry, band) && similarity(signature, entry) >= MIN_SIMILARITY) {
+                    return entry;
+                }
+            }
+        }
+        add(signature);
+        return -1;
+    }
+
+    /**
+     * @return    number of news added.
+     */
+    int size() {
+        return mSize;
+    }
+
+    private boolean isSameBand(int[] signature, int entry, int band) {
+        int offset = entry * SIGNATURE_LENGTH + band * ROWS;
+        for (int row = 0; row < ROWS; row++) {
+            if (mSignatures[offset + row] != signature[band * ROWS + row]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private float similarity(int[] signature, int entry) {
+        int offset = entry * SIGNATURE_LENGTH;
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (mSignatures[offset + i] == signature[i]) {
+                equal++;
+            }
+        }
+        return (float) equal / SIGNATURE_LENGTH;
+    }
+
+    private void add(int[] signature) {
+        if (mSize == mCapacity) {
+            int[] signatures = mSignatures;
+            int size = mSize;
+            allocate(mCapacity * 2);
+            for (int entry = 0; entry < size; entry++) {
+                insert(signatures, entry * SIGNATURE_LENGTH);
+            }
+        }
+        insert(signature, 0);
+    }
+
+    private void insert(int[] signatures, int offset) {
+        int entry = mSize++;
+        System.arraycopy(signatures, offset, mSignatures, entry * SIGNATURE_LENGTH, SIGNATURE_LENGTH);
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = bandHash(signatures, offset, band) & (mHeads[band].length - 1);
+            mNext[band][entry] = mHeads[band][bucket] - 1;
+            mHeads[band][bucket] = entry + 1;
+        }
+    }
+
+    private void allocate(int capacity) {
+        // two buckets per entry keep the chains short.
+        int buckets = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        mCapacity = capacity;
+        mSignatures = new int[capacity * SIGNATURE_LENGTH];
+        mHeads = new int[BANDS][buckets];
+        mNext = new int[BANDS][capacity];
+        mSize = 0;
+    }
+
+    private static int bandHash(int[] signatures, int offset, int band) {
+        int hash = band;
+        for (int row = 0; row < ROWS; row++) {
+            hash = 31 * hash + signatures[offset + band * ROWS + row];
+        }
+        // spread the bits, the bucket is taken from the low bits.
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -17,6 +17,10 @@ import news.agoda.com.sample.viewmodel.NewsEntity;
 
 /**
  * Makes a request to the server and passes the response to the NetworkResponse processor.
+ *
+ * Transient failures (I/O errors, 5xx responses) are retried according to the retry policy of the
+ * refresh budget, as long as the budget has time left. Every attempt is bounded by the connect and read
+ * timeouts of the policy, and never by more than the time left in the budget.
  */
 class NetworkRequestProcessor implements NetworkProcessor{
 
@@ -28,8 +32,23 @@ class NetworkRequestProcessor implements NetworkProcessor{
      */
     private NetworkProcessor mNextNextworkProcessor;
 
-    NetworkRequestProcessor(NewsDataBaseController newsdb) {
-        // stub
+    /**
+     * The time budget of the refresh this request belongs to.
+     */
+    private final RetryPolicy.Budget mBudget;
+
+    /**
+     * The length of the last response, about its size in bytes.
+     */
+    private long mResponseLength;
+
+    /**
+     * Constructor
+     * @param budget    The time budget of the refresh. If null, a new budget of the default retry policy
+     *                  is used.
+     */
+    NetworkRequestProcessor(@Nullable RetryPolicy.Budget budget) {
+        mBudget = budget != null ? budget : RetryPolicy.DEFAULT.newBudget();
     }
 
     @Override
@@ -48,28 +67,93 @@ class NetworkRequestProcessor implements NetworkProcessor{
     public ArrayList<NewsEntity> execute(String url) {
         Log.d(TAG,"execute");
         String responseFromServer = fetchFromURL(url);
+        mResponseLength = responseFromServer == null ? 0 : responseFromServer.length();
         return responseFromServer == null ? null :
                 mNextNextworkProcessor.execute(responseFromServer);
     }
 
+    /**
+     * @return    the length in chars of the response of the last execute, 0 if it failed.
+     */
+    long getResponseLength() {
+        return mResponseLength;
+    }
+
+    /**
+     * Fetch the response of the url, retrying transient failures within the budget.
+     * @param url    URL to fetch data from the server.
+     * @return    The response, or null if it could not be fetched.
+     */
     @Nullable
     public String fetchFromURL(String url) {
-        String responseFromServer;
+        RetryPolicy policy = mBudget.getPolicy();
+        for (int attempt = 0; ; attempt++) {
+            long remaining = mBudget.remainingMillis();
+            if (remaining <= 0) {
+                Log.e(TAG,"Deadline exceeded for "+url);
+                return null;
+            }
+            try {
+                return fetchOnce(url, remaining);
+            } catch (MalformedURLException e) {
+                Log.e(TAG,"MalFormedURL "+e.getMessage());
+                return null;
+            } catch (ClientErrorException e) {
+                // a 4xx response would be the same on a retry
+                Log.e(TAG,"Error "+e.getMessage());
+                return null;
+            } catch (IOException e) {
+                // network error or 5xx response
+                Log.e(TAG,"Error "+e.getMessage()+" on attempt "+(attempt + 1));
+            }
+
+            if (attempt + 1 >= policy.getMaxAttempts()) {
+                return null;
+            }
+            long backoff = policy.backoffMillis(attempt);
+            if (backoff >= mBudget.remainingMillis()) {
+                // the retry would not fit in the budget, fail now
+                Log.e(TAG,"Not enough time left to retry "+url);
+                return null;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Make a single request.
+     * @param url    URL to fetch data from the server.
+     * @param remainingMs    time left in the budget. The timeouts are never longer than this.
+     * @return    The response.
+     * @throws IOException    if the request failed. ClientErrorException for 4xx responses.
+     */
+    private String fetchOnce(String url, long remainingMs) throws IOException {
+        RetryPolicy policy = mBudget.getPolicy();
+        URL urlObj = new URL(url);
+        HttpURLConnection con = (HttpURLConnection) urlObj.openConnection();
         try {
-            URL urlObj = new URL(url);
-            HttpURLConnection con = (HttpURLConnection) urlObj.openConnection();
-            responseFromServer = readStream(con.getInputStream());
-        } catch (MalformedURLException e) {
-            Log.e(TAG,"MalFormedURL "+e.getMessage());
-            return null;
-        } catch (IOException e) {
-            Log.e(TAG,"Error "+e.getMessage());
-            return null;
+            con.setConnectTimeout((int) Math.max(1, Math.min(policy.getConnectTimeoutMs(), remainingMs)));
+            con.setReadTimeout((int) Math.max(1, Math.min(policy.getReadTimeoutMs(), remainingMs)));
+
+            int statusCode = con.getResponseCode();
+            if (statusCode >= 400 && !RetryPolicy.isRetryable(statusCode)) {
+                throw new ClientErrorException("HTTP " + statusCode + " for " + url);
+            }
+            if (RetryPolicy.isRetryable(statusCode)) {
+                throw new IOException("HTTP " + statusCode + " for " + url);
+            }
+            return readStream(con.getInputStream());
+        } finally {
+            con.disconnect();
         }
-        return responseFromServer;
     }
 
-    private String readStream(InputStream in) {
+    private String readStream(InputStream in) throws IOException {
         Log.d(TAG,"readStream");
         StringBuilder sb = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(in));) {
@@ -78,9 +162,16 @@ class NetworkRequestProcessor implements NetworkProcessor{
             while ((nextLine = reader.readLine()) != null) {
                 sb.append(nextLine);
             }
-        } catch (IOException e) {
-            Log.e(TAG,"Error "+e.getMessage());
         }
         return sb.toString();
     }
+
+    /**
+     * A response that must not be retried (4xx).
+     */
+    private static class ClientErrorException extends IOException {
+        ClientErrorException(String message) {
+            super(message);
+        }
+    }
 }
@@ -1,9 +1,9 @@
 package news.agoda.com.sample.model;
 
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.util.Log;
 
+import com.google.gson.Gson;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -11,17 +11,32 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
 
 /**
  * This is a cache controller. It ensures that all the read and write to the database file happen in a
  * serialized manner. Concurrent read and write may fetch incorrect values and/or corrupt the cache.
  *
- * The cache controller uses a handler thread and posts all requests for read and write on the handler thread's
- * message queue. This ensures the requests are processed in a first come first serve manner, and no two requests
- * are run concurrently.
+ * The cache controller posts all requests for read and write on a single I/O worker thread. This ensures
+ * the requests are processed in a first come first serve manner, and no two requests are run concurrently.
+ *
+ * The controller lives as long as the process. Users acquire it with getInstance and release it with
+ * cleanUp (reference counting). While at least one user holds it, the I/O worker is kept alive. Once the
+ * last user releases it, the worker finishes all the pending requests and then stops after it has been
+ * idle for IDLE_TIMEOUT_SECONDS. A later request simply restarts the worker. Since the executor itself is
+ * never shut down, a write that was accepted is never dropped, even if the activity is destroyed right
+ * after it.
  *
  * The class uses Singleton design pattern.
  */
@@ -29,38 +44,57 @@ class NewsDataBaseController {
 
     private static final String TAG = AppConstants.APP_TAG + "." + NewsDataBaseController.class.getSimpleName();
 
+    /**
+     * Told when a snapshot of news has been persisted, e.g. to index it.
+     */
+    interface SnapshotListener {
+        /**
+         * Called on the I/O worker after the snapshot was written, before any later request runs. The
+         * reads of the cache wait for it, so long work is handed over to another thread.
+         * @param newsList    the news of the snapshot, which must not be modified.
+         */
+        void onSnapshotWritten(List<NewsEntity> newsList);
+    }
+
     /**
      * The name of the cache file.
      */
     private static final String FILE_NAME = "news_dump.txt";
 
     /**
-     * Path to the files directory of the application.
+     * The prefix of the files holding the news each feed sent last.
      */
-    private static String sFilesDir;
+    private static final String FEED_STATE_FILE_PREFIX = "feed_state_";
+
+    /**
+     * How long the I/O worker waits for new requests, once nobody holds the controller, before it stops.
+     */
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
 
     /**
-     * The mData is a shared object which will hold the final data read from the cache.
+     * Converts news snapshots to json. Gson is thread safe.
      */
-    private static String mData;
+    private static final Gson sGson = new Gson();
 
     /**
-     * The read complete lock is to ensure the read call blocks until the data read is completed.
-     * Note, a write call, on the other hand, is not a blocking call because the user can view the news
-     * while the write happens in the background. However, a read call must be blocking and the user has
-     * to wait until the data is read from the cache for viewing the news.
+     * Path to the files directory of the application.
      */
-    private static final AtomicBoolean mReadCompleteLock = new AtomicBoolean(true);
+    private static String sFilesDir;
 
     /**
-     * The handler thread is to ensure that read and write operations dont happen concurrently
+     * The single I/O worker. Requests are queued and run one at a time in FIFO order.
      */
-    private HandlerThread mHandlerThread;
+    private final ThreadPoolExecutor mExecutor;
 
     /**
-     * Handler for posting read and write requests on the handler thread.
+     * Listeners of persisted snapshots.
      */
-    private Handler mHandler;
+    private final CopyOnWriteArrayList<SnapshotListener> mSnapshotListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of users currently holding the controller. Guarded by the class lock.
+     */
+    private int mRefCount;
 
     /**
      * Instance of the class (singleton implementation)
@@ -74,13 +108,18 @@ class NewsDataBaseController {
     private NewsDataBaseController(String filesDirPath) {
         Log.d(TAG,"NewsDB object created");
         sFilesDir = filesDirPath;
-        mHandlerThread = new HandlerThread("NewDataBaseThread");
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper());
+        mExecutor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "NewDataBaseThread");
+            }
+        });
     }
 
     /**
-     * Get the static instance of this class (singleton implementation)
+     * Get the static instance of this class (singleton implementation) and hold a reference to it. Every
+     * call must be balanced with a call to cleanUp.
      * @param filesDirPath    path to the files directory
      * @return    static instance of this class
      */
@@ -89,59 +128,162 @@ class NewsDataBaseController {
             if(sInstance == null) {
                 sInstance = new NewsDataBaseController(filesDirPath);
             }
+            sInstance.mRefCount++;
+            // someone is using the controller, keep the worker alive.
+            sInstance.mExecutor.allowCoreThreadTimeOut(false);
         }
         return sInstance;
     }
 
     /**
-     * Stop accepting new requests and release the resources.
+     * Release the reference taken by getInstance. Once nobody holds the controller, the I/O worker
+     * completes the pending requests and stops after being idle for a while. Pending writes are not
+     * dropped.
      */
     void cleanUp() {
-        Log.d(TAG,"Clean up NewsDB object");
-        // if the mHandler  is null , it indicates cleanup is already done.
-        if(mHandler != null) {
-            mHandlerThread.quitSafely();
+        synchronized (NewsDataBaseController.class) {
+            if (mRefCount == 0) {
+                // cleanup is already done.
+                return;
+            }
+            mRefCount--;
+            Log.d(TAG,"Clean up NewsDB object, references left " + mRefCount);
+            if (mRefCount == 0) {
+                mExecutor.allowCoreThreadTimeOut(true);
+            }
         }
-        mHandlerThread = null;
-        mHandler = null;
-        sInstance = null;
     }
 
     /**
-     * Write a json string to the DB (file)
+     * Register a listener of persisted snapshots. The listeners are registered once per process, see
+     * CacheSetup.
+     * @param listener    the listener.
+     */
+    void addSnapshotListener(@NotNull SnapshotListener listener) {
+        mSnapshotListeners.add(listener);
+    }
+
+    /**
+     * Read the fetch times of the feed scheduler on the I/O worker, so that neither the caller nor the
+     * first refresh waits for them. The load is not blocking.
+     * @param scheduler    the feed scheduler.
+     */
+    void loadFeedSchedule(@NotNull final FeedScheduler scheduler) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.load();
+            }
+        });
+    }
+
+    /**
+     * Write a json string to the DB (file). The write is not blocking, it is queued on the I/O worker.
      * @param data    json string
      */
     void writeToDB(final String data) {
         Log.d(TAG,"writeToDB");
-        if(mHandler != null) {
-            /**
-             * Post a write request on the handler thread.
-             */
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-
-                    Log.d(TAG, "Starting write on a new thread");
-                    try {
-                        File file = new File(sFilesDir +
-                                "/" + FILE_NAME);
-
-                        if (!file.exists()) {
-                            file.createNewFile();
-                        }
-
-                        FileWriter writer = new FileWriter(file);
-                        writer.append(data);
-                        writer.flush();
-                        writer.close();
-
-                    } catch (IOException e) {
-                        Log.e(TAG, "Cannot write to file " + e.getMessage());
-                    }
-                }
-            });
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(data);
+            }
+        });
+    }
+
+    /**
+     * Write the data to the db file. Only called on the I/O worker.
+     */
+    private void writeFile(String data) {
+        writeFile(FILE_NAME, data);
+    }
+
+    /**
+     * Write the data to a file of the files directory. Only called on the I/O worker.
+     */
+    private void writeFile(String fileName, String data) {
+        Log.d(TAG, "Starting write of " + fileName + " on the I/O worker");
+        try {
+            File file = new File(sFilesDir +
+                    "/" + fileName);
+
+            if (!file.exists()) {
+                file.createNewFile();
+            }
+
+            FileWriter writer = new FileWriter(file);
+            writer.append(data);
+            writer.flush();
+            writer.close();
+
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write to file " + e.getMessage());
         }
+    }
+
+    /**
+     * Write a list of news to the DB (file) as a json array, the same format the server sends. The
+     * conversion to json also happens on the I/O worker, so this call is not blocking. The list must not
+     * be modified afterwards.
+     * @param newsList    the news to store.
+     */
+    void writeSnapshot(final List<NewsEntity> newsList) {
+        Log.d(TAG,"writeSnapshot");
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(sGson.toJson(newsList));
+                for (SnapshotListener listener : mSnapshotListeners) {
+                    listener.onSnapshotWritten(newsList);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the news a feed sent last, the base of its next delta sync (see DeltaSync). The conversion to
+     * json happens on the I/O worker, so this call is not blocking. The list must not be modified
+     * afterwards.
+     * @param feedName    name of the feed.
+     * @param newsList    the news of the feed.
+     */
+    void writeFeedState(String feedName, final List<NewsEntity> newsList) {
+        Log.d(TAG,"writeFeedState " + feedName);
+        final String fileName = feedStateFileName(feedName);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(fileName, sGson.toJson(newsList));
+            }
+        });
+    }
+
+    /**
+     * Reads the news a feed sent last. This is a blocking call.
+     * @param feedName    name of the feed.
+     * @return    the json array of the news, or null if there are none.
+     */
+    @Nullable
+    String readFeedState(String feedName) {
+        Log.d(TAG,"readFeedState " + feedName);
+        return readFile(feedStateFileName(feedName));
+    }
+
+    /**
+     * One file per feed. The name of the feed is reduced to characters that are valid in a file name.
+     */
+    private static String feedStateFileName(String feedName) {
+        return FEED_STATE_FILE_PREFIX + feedName.replaceAll("[^A-Za-z0-9_-]", "_") + ".txt";
+    }
 
+    /**
+     * Indicates if a snapshot was written to the db file. This checks the file exists, without the I/O
+     * worker.
+     * @param filesDirPath    path to the files directory
+     * @return    true if the db file exists.
+     */
+    static boolean hasSnapshot(@NotNull String filesDirPath) {
+        return new File(filesDirPath, FILE_NAME).exists();
     }
 
     /**
@@ -151,71 +293,67 @@ class NewsDataBaseController {
     @Nullable
     String readFromDB() {
         Log.d(TAG,"readFromDB");
+        return readFile(FILE_NAME);
+    }
+
+    /**
+     * Reads a file of the files directory on the I/O worker and waits for the content.
+     * @return    the content of the file, or null if it cannot be read.
+     */
+    @Nullable
+    private String readFile(final String fileName) {
         /**
-         * The caller first acquires the read lock, posts a read request on the handler thread and then wait
-         * until the handler thread finishes the read request. The handler thread after reading the db file
-         * content places the data in the shared variable (mData). It then notifies the caller who is waiting for
-         * the read request to be complete. The caller can then have the data from the shared variable mData.
-         *
-         * Note, we have used the concurrency design pattern - guarded suspension.
-         * https://en.wikipedia.org/wiki/Guarded_suspension
+         * The read is queued behind all the pending writes, so it always reads the value of the last
+         * accepted write. The caller waits until the I/O worker has finished the read.
          */
-        synchronized (mReadCompleteLock) {
-
-            mReadCompleteLock.set(false);
-            mData = null;
-            // post the read request
-            if(mHandler != null) {
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (mReadCompleteLock) {
-                        /**
-                         * The handler thread acquires the read lock and starts reading from the file.
-                         */
-                        Log.d(TAG, "Starting read on a new thread");
-
-                        File file = new File(sFilesDir +
-                                "/" + FILE_NAME);
-
-                        int length = (int) file.length();
-
-                        byte[] bytes = new byte[length];
-
-                        FileInputStream in = null;
-                        try {
-                            in = new FileInputStream(file);
-                            in.read(bytes);
-                            in.close();
-                            // updates the shared variable
-                            mData = new String(bytes);
-                        } catch (Exception e) {
-                            /**
-                             * if read fails this function will return null
-                             */
-                            Log.e(TAG, "Cannot read from db file " + e.getMessage());
-                        }
-                        // sets read complete to true.
-                        mReadCompleteLock.set(true);
-                        // notisfies the caller's thread who is waiting for the read complete.
-                        mReadCompleteLock.notifyAll();
-                    }
+        Future<String> read = mExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                Log.d(TAG, "Starting read of " + fileName + " on the I/O worker");
+
+                File file = new File(sFilesDir +
+                        "/" + fileName);
+                if (!file.exists()) {
+                    return null;
                 }
-            });
-        }
 
-            // wait until precondition (read complete) is not satisfied
-            while(!mReadCompleteLock.get()) {
-                Log.d(TAG,"Will wait until data is read from disc");
+                int length = (int) file.length();
+
+                byte[] bytes = new byte[length];
+
+                FileInputStream in = null;
+                try {
+                    in = new FileInputStream(file);
+                    in.read(bytes);
+                    in.close();
+                    return new String(bytes);
+                } catch (Exception e) {
+                    /**
+                     * if read fails this function will return null
+                     */
+                    Log.e(TAG, "Cannot read from db file " + e.getMessage());
+                    return null;
+                }
+            }
+        });
+
+        boolean interrupted = false;
+        try {
+            while (true) {
                 try {
-                    // Wait for 3 seconds
-                    mReadCompleteLock.wait(3000);
+                    return read.get();
                 } catch (InterruptedException e) {
+                    // the read is already queued, keep waiting for it and restore the interrupt later.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Cannot read from db file " + e.getMessage());
+                    return null;
                 }
             }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-
-        return mData;
-
     }
 }
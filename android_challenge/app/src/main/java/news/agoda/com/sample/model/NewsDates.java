@@ -0,0 +1,71 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Parses the published dates sent by the server, for example "2015-08-18T04:00:00-5:00".
+ */
+public class NewsDates {
+
+    /**
+     * Returned for dates that are missing or cannot be parsed. Such news are ordered after all others.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    /**
+     * SimpleDateFormat is not thread safe, hence one instance per thread.
+     */
+    private static final ThreadLocal<SimpleDateFormat> sFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.US);
+            format.setLenient(false);
+            return format;
+        }
+    };
+
+    private NewsDates() {
+    }
+
+    /**
+     * Convert a published date into milliseconds since epoch.
+     * @param publishedDate    the date as sent by the server.
+     * @return    epoch millis, or UNKNOWN if the date cannot be parsed.
+     */
+    public static long toEpochMillis(@Nullable String publishedDate) {
+        if (publishedDate == null) {
+            return UNKNOWN;
+        }
+        try {
+            return sFormat.get().parse(normalizeOffset(publishedDate)).getTime();
+        } catch (ParseException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * The server sends offsets such as "-5:00". SimpleDateFormat (on all API levels we support) only
+     * understands the RFC 822 form "-0500", so the offset is rewritten into that form.
+     */
+    private static String normalizeOffset(String date) {
+        int sign = Math.max(date.lastIndexOf('+'), date.lastIndexOf('-'));
+        int time = date.indexOf('T');
+        if (time < 0 || sign < time) {
+            // no offset, e.g. "2015-08-18T04:00:00Z" or "2015-08-18T04:00:00", is handled as UTC
+            return (date.endsWith("Z") ? date.substring(0, date.length() - 1) : date) + "+0000";
+        }
+        String offset = date.substring(sign + 1).replace(":", "");
+        if (offset.length() == 1 || offset.length() == 3) {
+            // "5" or "500" -> "0500"
+            offset = "0" + offset;
+        }
+        if (offset.length() == 2) {
+            offset = offset + "00";
+        }
+        return date.substring(0, sign + 1) + offset;
+    }
+}
@@ -0,0 +1,174 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Converts the json "results" array (from the server or the cache) into a list of news entities.
+ *
+ * Small feeds are decoded serially on the calling thread. Large feeds are split into chunks of array
+ * indices which are decoded in parallel on a work-stealing (fork-join) pool. Each chunk produces its
+ * own list and the lists are joined back in index order, so the final list has the same order as the
+ * json array.
+ */
+class NewsDecoder {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + NewsDecoder.class.getSimpleName();
+
+    /**
+     * Below this many articles the cost of forking tasks is higher than the decoding itself, so we decode
+     * serially. See NewsDecoderTest#benchmarkSerialVsParallel for the measurement behind this value.
+     */
+    static final int SERIAL_THRESHOLD = 256;
+
+    /**
+     * A fork-join task stops splitting once its range of indices is at most this size.
+     */
+    static final int CHUNK_SIZE = 64;
+
+    /**
+     * Gson is thread safe, so a single instance is shared by all the decoding tasks.
+     */
+    private static final Gson sGson = new Gson();
+
+    /**
+     * The work-stealing pool. It is created lazily so that small feeds never start its threads.
+     */
+    private static ForkJoinPool sPool;
+
+    private NewsDecoder() {
+    }
+
+    /**
+     * Decode the results array. Serial below SERIAL_THRESHOLD articles, parallel otherwise.
+     * @param results    The json array of news.
+     * @return    The list of news entities in the same order as the json array.
+     * @throws JSONException    if any of the articles cannot be decoded.
+     */
+    @NotNull
+    static ArrayList<NewsEntity> decode(@NotNull JSONArray results) throws JSONException {
+        return decode(results, SERIAL_THRESHOLD);
+    }
+
+    /**
+     * Decode the results array using the given serial threshold. This is used by the benchmark to
+     * force one or the other strategy.
+     */
+    @NotNull
+    static ArrayList<NewsEntity> decode(@NotNull JSONArray results, int serialThreshold)
+            throws JSONException {
+        int length = results.length();
+        if (length < serialThreshold) {
+            return decodeRange(results, 0, length);
+        }
+        Log.d(TAG, "Decoding " + length + " articles in parallel");
+        try {
+            return getPool().invoke(new DecodeTask(results, 0, length));
+        } catch (DecodeException e) {
+            throw e.getJSONException();
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (sPool == null) {
+            sPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return sPool;
+    }
+
+    /**
+     * Decode the articles in the range [from, to) on the calling thread.
+     */
+    @NotNull
+    private static ArrayList<NewsEntity> decodeRange(JSONArray results, int from, int to)
+            throws JSONException {
+        ArrayList<NewsEntity> newsList = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            JSONObject article = results.getJSONObject(i);
+            fixMultimedia(article);
+            try {
+                newsList.add(sGson.fromJson(article.toString(), NewsEntity.class));
+            } catch (JsonParseException e) {
+                throw new JSONException("Cannot decode article " + i + " " + e.getMessage());
+            }
+        }
+        return newsList;
+    }
+
+    /**
+     * The server JSON response is buggy. A multimedia is sometimes send as list (when it is not empty)
+     * and empty-string when it is empty (instead of an empty list). This will cause gson to throw exception
+     * when we try to convert the data into NewsEntity and MediaEntity objects (inconsistent types).
+     * To fix this, we are going to change the multimedia string value to empty array for consistency.
+     */
+    private static void fixMultimedia(JSONObject article) throws JSONException {
+        if (article.opt("multimedia") instanceof String) {
+            article.put("multimedia", new JSONArray());
+        }
+    }
+
+    /**
+     * Decodes a range of the results array. The range is split in halves until it is small enough to
+     * be decoded directly. The left half is forked so that idle workers can steal it, while the current
+     * thread decodes the right half.
+     */
+    private static class DecodeTask extends RecursiveTask<ArrayList<NewsEntity>> {
+
+        private final JSONArray mResults;
+        private final int mFrom;
+        private final int mTo;
+
+        DecodeTask(JSONArray results, int from, int to) {
+            mResults = results;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected ArrayList<NewsEntity> compute() {
+            if (mTo - mFrom <= CHUNK_SIZE) {
+                try {
+                    return decodeRange(mResults, mFrom, mTo);
+                } catch (JSONException e) {
+                    throw new DecodeException(e);
+                }
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            DecodeTask left = new DecodeTask(mResults, mFrom, middle);
+            left.fork();
+            ArrayList<NewsEntity> right = new DecodeTask(mResults, middle, mTo).compute();
+            ArrayList<NewsEntity> newsList = left.join();
+            // reassemble in index order
+            newsList.addAll(right);
+            return newsList;
+        }
+    }
+
+    /**
+     * Carries a JSONException out of a fork-join task, which can only throw unchecked exceptions.
+     */
+    private static class DecodeException extends RuntimeException {
+
+        DecodeException(JSONException cause) {
+            super(cause);
+        }
+
+        JSONException getJSONException() {
+            return (JSONException) getCause();
+        }
+    }
+}
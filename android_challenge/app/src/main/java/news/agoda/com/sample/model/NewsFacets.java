@@ -0,0 +1,231 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * The sections and subsections of the news of a list, as bitsets over the positions (ordinals) of the
+ * news in the list. The bitsets are built once per list. Filtering by sections and subsections is then a
+ * few bitwise operations over the bitsets, and counting the news of a section is a population count;
+ * none of them looks at the news again.
+ *
+ * A bitset is a long[] of one bit per news, bit i of word i / 64 being the news at position i. The
+ * facets are immutable and can be used from any thread.
+ */
+public final class NewsFacets {
+
+    private static final NewsFacets EMPTY = new NewsFacets(0, new String[0], new long[0][], new String[0],
+            new long[0][]);
+
+    /**
+     * The news are filtered by either of these.
+     */
+    public enum Dimension {
+        SECTION,
+        SUBSECTION
+    }
+
+    private final int mSize;
+
+    // sorted values and their bitsets, by dimension.
+    private final String[][] mValues;
+
+    private final long[][][] mBits;
+
+    // number of news of each value, by dimension.
+    private final int[][] mCounts;
+
+    private NewsFacets(int size, String[] sections, long[][] sectionBits, String[] subsections,
+                       long[][] subsectionBits) {
+        mSize = size;
+        mValues = new String[][] {sections, subsections};
+        mBits = new long[][][] {sectionBits, subsectionBits};
+        mCounts = new int[][] {cardinalities(sectionBits), cardinalities(subsectionBits)};
+    }
+
+    /**
+     * Facets of an empty list.
+     */
+    @NotNull
+    public static NewsFacets empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build the facets of a list of news. News without a section or subsection are only matched by the
+     * filters which do not restrict that dimension.
+     * @param newsList    the news, in the order of the list.
+     */
+    @NotNull
+    public static NewsFacets build(@NotNull List<NewsEntity> newsList) {
+        int words = wordCount(newsList.size());
+        Map<String, long[]> sections = new TreeMap<>();
+        Map<String, long[]> subsections = new TreeMap<>();
+        for (int ordinal = 0; ordinal < newsList.size(); ordinal++) {
+            NewsEntity newsEntity = newsList.get(ordinal);
+            set(sections, newsEntity.getSection(), ordinal, words);
+            set(subsections, newsEntity.getSubsection(), ordinal, words);
+        }
+        return new NewsFacets(newsList.size(),
+                sections.keySet().toArray(new String[sections.size()]),
+                sections.values().toArray(new long[sections.size()][]),
+                subsections.keySet().toArray(new String[subsections.size()]),
+                subsections.values().toArray(new long[subsections.size()][]));
+    }
+
+    private static void set(Map<String, long[]> facet, String value, int ordinal, int words) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        long[] bits = facet.get(value);
+        if (bits == null) {
+            bits = new long[words];
+            facet.put(value, bits);
+        }
+        bits[ordinal >>> 6] |= 1L << ordinal;
+    }
+
+    /**
+     * @return    number of news in the list.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return    the values of a dimension, sorted.
+     */
+    @NotNull
+    public List<String> getValues(@NotNull Dimension dimension) {
+        return Collections.unmodifiableList(Arrays.asList(mValues[dimension.ordinal()]));
+    }
+
+    /**
+     * @return    number of news with a value, 0 for unknown values.
+     */
+    public int getCount(@NotNull Dimension dimension, @NotNull String value) {
+        int index = Arrays.binarySearch(mValues[dimension.ordinal()], value);
+        return index < 0 ? 0 : mCounts[dimension.ordinal()][index];
+    }
+
+    /**
+     * Number of news with a value among the news of a filter result, e.g. to show how many news are left
+     * when the value is added to the filter.
+     * @param dimension    the dimension of the value.
+     * @param value    the value.
+     * @param bits    a filter result, see filter.
+     */
+    public int getCount(@NotNull Dimension dimension, @NotNull String value, @NotNull long[] bits) {
+        int index = Arrays.binarySearch(mValues[dimension.ordinal()], value);
+        if (index < 0) {
+            return 0;
+        }
+        long[] valueBits = mBits[dimension.ordinal()][index];
+        int count = 0;
+        for (int word = 0; word < valueBits.length; word++) {
+            count += Long.bitCount(valueBits[word] & bits[word]);
+        }
+        return count;
+    }
+
+    /**
+     * @return    a bitset for this list, for the results of filter.
+     */
+    @NotNull
+    public long[] newBits() {
+        return new long[wordCount(mSize)];
+    }
+
+    /**
+     * Select the news which have any of the given sections and any of the given subsections. An empty
+     * collection does not restrict its dimension, so with both empty all news are selected.
+     * @param sections    the sections.
+     * @param subsections    the subsections.
+     * @param result    receives the selected news, a bitset from newBits. It is overwritten.
+     * @return    number of news selected.
+     */
+    public int filter(@NotNull Collection<String> sections, @NotNull Collection<String> subsections,
+                      @NotNull long[] result) {
+        Arrays.fill(result, 0, result.length, -1L);
+        // the bits past the last news are never set.
+        if ((mSize & 63) != 0) {
+            result[result.length - 1] = (1L << mSize) - 1;
+        }
+        intersectWithUnion(Dimension.SECTION, sections, result);
+        intersectWithUnion(Dimension.SUBSECTION, subsections, result);
+        return cardinality(result);
+    }
+
+    private void intersectWithUnion(Dimension dimension, Collection<String> values, long[] result) {
+        if (values.isEmpty()) {
+            return;
+        }
+        String[] dimensionValues = mValues[dimension.ordinal()];
+        long[][] selected = new long[values.size()][];
+        int selectedCount = 0;
+        for (String value : values) {
+            int index = Arrays.binarySearch(dimensionValues, value);
+            if (index >= 0) {
+                selected[selectedCount++] = mBits[dimension.ordinal()][index];
+            }
+        }
+        for (int word = 0; word < result.length; word++) {
+            long union = 0;
+            for (int i = 0; i < selectedCount; i++) {
+                union |= selected[i][word];
+            }
+            result[word] &= union;
+        }
+    }
+
+    /**
+     * Get the positions of the news in a bitset.
+     * @param bits    the bitset.
+     * @return    the positions, in ascending order.
+     */
+    @NotNull
+    public static int[] toOrdinals(@NotNull long[] bits) {
+        int[] ordinals = new int[cardinality(bits)];
+        int i = 0;
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                ordinals[i++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                // clear the lowest set bit.
+                remaining &= remaining - 1;
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * @return    number of news in a bitset.
+     */
+    public static int cardinality(@NotNull long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static int[] cardinalities(long[][] bits) {
+        int[] counts = new int[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            counts[i] = cardinality(bits[i]);
+        }
+        return counts;
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+}
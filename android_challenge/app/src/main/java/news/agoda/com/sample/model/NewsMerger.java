@@ -0,0 +1,91 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Merges the news lists of several feeds into one list. A story that is present in more than one feed
+ * (same url) is kept only once, and the merged list is ordered by published date, newest first. A story
+ * sent again with a slightly different title, summary or url (see NearDuplicateDetector) is also kept
+ * only once.
+ */
+class NewsMerger {
+
+    private NewsMerger() {
+    }
+
+    /**
+     * Merge the lists. The dedup is a single pass over all news using a hash map keyed by url. When the
+     * same url is seen twice, the copy with the newer published date is kept. A second pass over the
+     * sorted news drops the near duplicates of newer news.
+     * @param feeds    the news lists of all the feeds that were fetched successfully.
+     * @return    the merged list.
+     */
+    @NotNull
+    static ArrayList<NewsEntity> merge(@NotNull List<? extends List<NewsEntity>> feeds) {
+        int total = 0;
+        for (List<NewsEntity> feed : feeds) {
+            total += feed.size();
+        }
+
+        HashMap<String, Entry> byUrl = new HashMap<>(total * 4 / 3 + 1);
+        ArrayList<Entry> entries = new ArrayList<>(total);
+        for (List<NewsEntity> feed : feeds) {
+            for (NewsEntity news : feed) {
+                Entry entry = new Entry(news, NewsDates.toEpochMillis(news.getPublishedDate()));
+                if (news.getUrl() == null) {
+                    // cannot be deduplicated
+                    entries.add(entry);
+                    continue;
+                }
+                Entry existing = byUrl.get(news.getUrl());
+                if (existing == null) {
+                    byUrl.put(news.getUrl(), entry);
+                    entries.add(entry);
+                } else if (entry.mPublishedAt > existing.mPublishedAt) {
+                    // keep the newer copy, at the position of the first one
+                    existing.mNews = entry.mNews;
+                    existing.mPublishedAt = entry.mPublishedAt;
+                }
+            }
+        }
+
+        // the sort is stable, news with the same date keep their feed order
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return e1.mPublishedAt < e2.mPublishedAt ? 1 : (e1.mPublishedAt == e2.mPublishedAt ? 0 : -1);
+            }
+        });
+
+        // the newest copy of a story comes first and is the one kept.
+        NearDuplicateDetector nearDuplicates = new NearDuplicateDetector(entries.size());
+        ArrayList<NewsEntity> merged = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (nearDuplicates.findOrAdd(NearDuplicateDetector.signatureOf(entry.mNews)) < 0) {
+                merged.add(entry.mNews);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A news with its parsed published date, so that the date is parsed only once per news.
+     */
+    private static class Entry {
+        NewsEntity mNews;
+        long mPublishedAt;
+
+        Entry(NewsEntity news, long publishedAt) {
+            mNews = news;
+            mPublishedAt = publishedAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Stores a list of news on disk in fixed size pages, so that the list can be read back one page at a time
+ * instead of keeping all of it in memory. Each page is a gzipped json array of news, the format of the
+ * cache.
+ *
+ * Every list gets its own directory under the pages directory of the app. The pages of a list are deleted
+ * when it is no longer used, and the pages left by a previous process are deleted when the first list of
+ * this process is written.
+ */
+public class NewsPageStore {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + NewsPageStore.class.getSimpleName();
+
+    private static final String PAGES_DIR = "pages";
+
+    private static final Gson sGson = new Gson();
+
+    /**
+     * Used to name the directory of each list.
+     */
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+
+    /**
+     * Indicates the pages of previous processes were deleted. Guarded by the class.
+     */
+    private static boolean sIsCleared;
+
+    private final File mDir;
+
+    private final int mPageSize;
+
+    private final int mSize;
+
+    private NewsPageStore(File dir, int pageSize, int size) {
+        mDir = dir;
+        mPageSize = pageSize;
+        mSize = size;
+    }
+
+    /**
+     * Write a list of news to pages on disk. This call is blocking.
+     * @param filesDirPath    path to the files directory
+     * @param newsList    the news to store
+     * @param pageSize    number of news per page
+     * @return    the stored list
+     * @throws IOException    if a page could not be written
+     */
+    @NotNull
+    public static NewsPageStore write(@NotNull String filesDirPath, @NotNull List<NewsEntity> newsList,
+                                      int pageSize) throws IOException {
+        File pagesDir = new File(filesDirPath, PAGES_DIR);
+        synchronized (NewsPageStore.class) {
+            if (!sIsCleared) {
+                deleteRecursively(pagesDir);
+                sIsCleared = true;
+            }
+        }
+        File dir = new File(pagesDir, String.valueOf(sGeneration.incrementAndGet()));
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        NewsPageStore store = new NewsPageStore(dir, pageSize, newsList.size());
+        for (int page = 0; page < store.getPageCount(); page++) {
+            int from = page * pageSize;
+            store.writePage(page, newsList.subList(from, Math.min(from + pageSize, newsList.size())));
+        }
+        Log.d(TAG, "wrote " + newsList.size() + " news in " + store.getPageCount() + " pages");
+        return store;
+    }
+
+    private void writePage(int page, List<NewsEntity> news) throws IOException {
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(new BufferedOutputStream(
+                new FileOutputStream(pageFile(page)))), "UTF-8");
+        try {
+            sGson.toJson(news, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read a page of news. This call is blocking.
+     * @param page    index of the page
+     * @return    the news of the page, in order
+     * @throws IOException    if the page could not be read, e.g. the list was deleted
+     */
+    @NotNull
+    public List<NewsEntity> readPage(int page) throws IOException {
+        if (page < 0 || page >= getPageCount()) {
+            throw new IndexOutOfBoundsException("page " + page + " of " + getPageCount());
+        }
+        Reader reader = new InputStreamReader(new GZIPInputStream(new BufferedInputStream(
+                new FileInputStream(pageFile(page)))), "UTF-8");
+        try {
+            NewsEntity[] news = sGson.fromJson(reader, NewsEntity[].class);
+            return news == null ? new ArrayList<NewsEntity>() : Arrays.asList(news);
+        } catch (RuntimeException e) {
+            // gson reports malformed and truncated files with unchecked exceptions.
+            throw new IOException("Corrupt page " + page, e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return    number of news in the list
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getPageCount() {
+        return (mSize + mPageSize - 1) / mPageSize;
+    }
+
+    /**
+     * Delete the pages from disk. The list cannot be read afterwards.
+     */
+    public void delete() {
+        deleteRecursively(mDir);
+    }
+
+    private File pageFile(int page) {
+        return new File(mDir, "page_" + page + ".json.gz");
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "Cannot delete " + file);
+        }
+    }
+}
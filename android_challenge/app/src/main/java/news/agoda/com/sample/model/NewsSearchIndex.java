@@ -0,0 +1,536 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * An inverted index over the title, summary, byline and section of the news of a snapshot. News are
+ * identified by their ordinal, i.e. their position in the snapshot, which is also their position in the
+ * list the cache data source returns.
+ *
+ * The terms are kept sorted, so that the news matching a prefix are found with a binary search. The
+ * postings of all the terms are stored in one byte array: for every news containing the term, the
+ * difference to the previous ordinal as a variable length integer, followed by the weight of the term in
+ * that news. A term counts more in the title than in the section or byline, and more there than in the
+ * summary.
+ *
+ * The index keeps a digest of the snapshot it was built from (see digestOf), so that a list of news is
+ * only searched with the index of the same news in the same order.
+ *
+ * The index is immutable and can be queried from any thread. It is written to disk in the same compact
+ * form, with the terms front coded.
+ */
+public final class NewsSearchIndex {
+
+    private static final int MAGIC = 0x4e534958;
+
+    private static final int VERSION = 2;
+
+    // weight of one occurrence of a term in each field.
+    static final int TITLE_WEIGHT = 8;
+    static final int SECTION_WEIGHT = 4;
+    static final int BYLINE_WEIGHT = 4;
+    static final int SUMMARY_WEIGHT = 2;
+
+    private static final int MAX_TERM_WEIGHT = 255;
+
+    /**
+     * The terms of one news and their weights. They are kept between snapshots, so that only new and
+     * changed news are tokenized again.
+     */
+    static final class DocTerms {
+
+        private final int mContentHash;
+
+        private final String[] mTerms;
+
+        private final int[] mWeights;
+
+        private DocTerms(int contentHash, String[] terms, int[] weights) {
+            mContentHash = contentHash;
+            mTerms = terms;
+            mWeights = weights;
+        }
+
+        static DocTerms of(NewsEntity newsEntity) {
+            Map<String, int[]> weights = new LinkedHashMap<>();
+            addField(weights, newsEntity.getTitle(), TITLE_WEIGHT);
+            addField(weights, newsEntity.getSection(), SECTION_WEIGHT);
+            addField(weights, newsEntity.getSubsection(), SECTION_WEIGHT);
+            addField(weights, newsEntity.getByline(), BYLINE_WEIGHT);
+            addField(weights, newsEntity.getSummary(), SUMMARY_WEIGHT);
+
+            String[] terms = new String[weights.size()];
+            int[] termWeights = new int[weights.size()];
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : weights.entrySet()) {
+                terms[i] = entry.getKey();
+                termWeights[i] = Math.min(entry.getValue()[0], MAX_TERM_WEIGHT);
+                i++;
+            }
+            return new DocTerms(contentHashOf(newsEntity), terms, termWeights);
+        }
+
+        private static void addField(Map<String, int[]> weights, String text, int weight) {
+            for (String term : SearchTokenizer.tokenize(text, SearchTokenizer.MIN_INDEXED_LENGTH)) {
+                int[] termWeight = weights.get(term);
+                if (termWeight == null) {
+                    weights.put(term, new int[] {weight});
+                } else {
+                    termWeight[0] += weight;
+                }
+            }
+        }
+
+        /**
+         * @return    the distinct terms of the news.
+         */
+        String[] getTerms() {
+            return mTerms;
+        }
+
+        /**
+         * @return    the weight of each term, in the order of getTerms.
+         */
+        int[] getWeights() {
+            return mWeights;
+        }
+
+        /**
+         * @return    true if the terms were taken from a news with the same indexed fields.
+         */
+        boolean isUpToDate(NewsEntity newsEntity) {
+            return mContentHash == contentHashOf(newsEntity);
+        }
+
+        private static int contentHashOf(NewsEntity newsEntity) {
+            int hash = hashOf(newsEntity.getTitle());
+            hash = 31 * hash + hashOf(newsEntity.getSection());
+            hash = 31 * hash + hashOf(newsEntity.getSubsection());
+            hash = 31 * hash + hashOf(newsEntity.getByline());
+            return 31 * hash + hashOf(newsEntity.getSummary());
+        }
+
+        private static int hashOf(String s) {
+            return s == null ? 0 : s.hashCode();
+        }
+    }
+
+    private final int mDocCount;
+
+    private final long mSnapshotDigest;
+
+    // sorted.
+    private final String[] mTerms;
+
+    // number of news containing each term.
+    private final int[] mDocFrequencies;
+
+    // start of the postings of each term in mPostings, plus the end of the last one.
+    private final int[] mOffsets;
+
+    private final byte[] mPostings;
+
+    /**
+     * Scratch space of the queries, one entry per news. Guarded by this.
+     */
+    private float[] mScores;
+    private int[] mMatchedTerms;
+
+    private NewsSearchIndex(int docCount, long snapshotDigest, String[] terms, int[] docFrequencies,
+                            int[] offsets, byte[] postings) {
+        mDocCount = docCount;
+        mSnapshotDigest = snapshotDigest;
+        mTerms = terms;
+        mDocFrequencies = docFrequencies;
+        mOffsets = offsets;
+        mPostings = postings;
+    }
+
+    /**
+     * Build the index of a snapshot from the terms of its news.
+     * @param docs    the terms of the news, in the order of the snapshot.
+     * @param snapshotDigest    the digest of the snapshot, see digestOf.
+     */
+    @NotNull
+    static NewsSearchIndex build(@NotNull List<DocTerms> docs, long snapshotDigest) {
+        Map<String, PostingsWriter> writers = new HashMap<>();
+        for (int ordinal = 0; ordinal < docs.size(); ordinal++) {
+            DocTerms doc = docs.get(ordinal);
+            for (int i = 0; i < doc.mTerms.length; i++) {
+                PostingsWriter writer = writers.get(doc.mTerms[i]);
+                if (writer == null) {
+                    writer = new PostingsWriter();
+                    writers.put(doc.mTerms[i], writer);
+                }
+                writer.add(ordinal, doc.mWeights[i]);
+            }
+        }
+
+        String[] terms = writers.keySet().toArray(new String[writers.size()]);
+        Arrays.sort(terms);
+        int[] docFrequencies = new int[terms.length];
+        int[] offsets = new int[terms.length + 1];
+        int length = 0;
+        for (int i = 0; i < terms.length; i++) {
+            PostingsWriter writer = writers.get(terms[i]);
+            docFrequencies[i] = writer.mDocFrequency;
+            offsets[i] = length;
+            length += writer.mLength;
+        }
+        offsets[terms.length] = length;
+        byte[] postings = new byte[length];
+        for (int i = 0; i < terms.length; i++) {
+            PostingsWriter writer = writers.get(terms[i]);
+            System.arraycopy(writer.mBytes, 0, postings, offsets[i], writer.mLength);
+        }
+        return new NewsSearchIndex(docs.size(), snapshotDigest, terms, docFrequencies, offsets, postings);
+    }
+
+    /**
+     * Get the digest of the news of a snapshot: their urls and the indexed fields, in order. Two lists
+     * with the same digest have the same news at the same positions, so the ordinals of an index are
+     * valid for a list if their digests are equal.
+     * @param newsList    the news of the snapshot.
+     * @return    the digest.
+     */
+    public static long digestOf(@NotNull List<NewsEntity> newsList) {
+        long digest = newsList.size();
+        for (NewsEntity newsEntity : newsList) {
+            digest = 1000003 * digest + DocTerms.hashOf(newsEntity.getUrl());
+            digest = 1000003 * digest + DocTerms.contentHashOf(newsEntity);
+        }
+        return digest;
+    }
+
+    /**
+     * @return    number of news in the index.
+     */
+    public int getDocCount() {
+        return mDocCount;
+    }
+
+    /**
+     * @return    the digest of the snapshot the index was built from, see digestOf.
+     */
+    public long getSnapshotDigest() {
+        return mSnapshotDigest;
+    }
+
+    /**
+     * @return    number of distinct terms in the index.
+     */
+    public int getTermCount() {
+        return mTerms.length;
+    }
+
+    /**
+     * Find the news matching a query. A news matches if it contains all the terms of the query. The last
+     * term is a prefix, unless the query ends with a separator, so that results are shown while the user
+     * types. Terms too short to be indexed, such as the "s" of "clinton's", are ignored, except as the
+     * prefix. The news are ranked by the weights of the terms, where rare terms count more than common
+     * ones. News with the same score are in the order of the snapshot.
+     * @param query    the text typed by the user.
+     * @param limit    maximum number of results.
+     * @return    the ordinals of the matching news, best first.
+     */
+    @NotNull
+    public synchronized int[] search(@NotNull String query, int limit) {
+        boolean isLastPrefix = !SearchTokenizer.endsWithSeparator(query);
+        List<String> queryTerms = SearchTokenizer.tokenize(query, 1);
+        // a short term matches no news, unless it is the prefix being typed.
+        for (int q = queryTerms.size() - 1; q >= 0; q--) {
+            boolean isPrefix = q == queryTerms.size() - 1 && isLastPrefix;
+            if (!isPrefix && queryTerms.get(q).length() < SearchTokenizer.MIN_INDEXED_LENGTH) {
+                queryTerms.remove(q);
+            }
+        }
+        if (queryTerms.isEmpty() || limit <= 0 || mDocCount == 0) {
+            return new int[0];
+        }
+        if (mScores == null) {
+            mScores = new float[mDocCount];
+            mMatchedTerms = new int[mDocCount];
+        }
+        Arrays.fill(mScores, 0);
+        Arrays.fill(mMatchedTerms, 0);
+
+        for (int q = 0; q < queryTerms.size(); q++) {
+            String queryTerm = queryTerms.get(q);
+            int first = Arrays.binarySearch(mTerms, queryTerm);
+            if (q == queryTerms.size() - 1 && isLastPrefix) {
+                first = first < 0 ? -first - 1 : first;
+                int end = first;
+                // all the terms of the prefix are used, so the best news are found whatever term they have.
+                while (end < mTerms.length && mTerms[end].startsWith(queryTerm)) {
+                    end++;
+                }
+                for (int term = first; term < end; term++) {
+                    accumulate(term, q);
+                }
+            } else if (first >= 0) {
+                accumulate(first, q);
+            }
+        }
+        return topResults(queryTerms.size(), limit);
+    }
+
+    /**
+     * Add the score of a term to the news which matched all the previous terms of the query.
+     */
+    private void accumulate(int term, int queryTerm) {
+        float idf = (float) Math.log(1 + (double) mDocCount / mDocFrequencies[term]);
+        int position = mOffsets[term];
+        int end = mOffsets[term + 1];
+        int ordinal = 0;
+        while (position < end) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mPostings[position++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            ordinal += delta;
+            int weight = mPostings[position++] & 0xff;
+
+            // several terms of a prefix can match the same news, each adds to its score.
+            int matched = mMatchedTerms[ordinal];
+            if (matched == queryTerm || matched == queryTerm + 1) {
+                mScores[ordinal] += weight * idf;
+                mMatchedTerms[ordinal] = queryTerm + 1;
+            }
+        }
+    }
+
+    /**
+     * Select the best scored news which matched all the terms, with a bounded min heap.
+     */
+    private int[] topResults(int queryTermCount, int limit) {
+        int[] heap = new int[Math.min(limit, mDocCount)];
+        int size = 0;
+        for (int ordinal = 0; ordinal < mDocCount; ordinal++) {
+            if (mMatchedTerms[ordinal] != queryTermCount) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = ordinal;
+                siftUp(heap, size++);
+            } else if (isBetter(ordinal, heap[0])) {
+                heap[0] = ordinal;
+                siftDown(heap, size);
+            }
+        }
+        int[] results = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            results[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return results;
+    }
+
+    private boolean isBetter(int ordinal, int other) {
+        float score = mScores[ordinal];
+        float otherScore = mScores[other];
+        // the snapshot is ordered by date, the newer news wins a tie.
+        return score > otherScore || (score == otherScore && ordinal < other);
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(heap[parent], heap[index])) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && isBetter(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && isBetter(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, worst, index);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    /**
+     * Write the index to a file. The file is replaced atomically, a reader never sees half an index.
+     * This call is blocking.
+     * @param file    the file of the index.
+     * @throws IOException    if the file could not be written.
+     */
+    void write(@NotNull File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mDocCount);
+            out.writeLong(mSnapshotDigest);
+            out.writeInt(mTerms.length);
+            String previous = "";
+            for (int i = 0; i < mTerms.length; i++) {
+                // front coding, sorted terms share long prefixes.
+                int shared = sharedPrefixLength(previous, mTerms[i]);
+                out.writeByte(shared);
+                out.writeUTF(mTerms[i].substring(shared));
+                out.writeInt(mDocFrequencies[i]);
+                out.writeInt(mOffsets[i + 1] - mOffsets[i]);
+                previous = mTerms[i];
+            }
+            out.write(mPostings);
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Read an index written with write. This call is blocking.
+     * @param file    the file of the index.
+     * @return    the index.
+     * @throws IOException    if the file is missing, corrupt or from another version.
+     */
+    @NotNull
+    static NewsSearchIndex read(@NotNull File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a search index of this version " + file);
+            }
+            int docCount = in.readInt();
+            long snapshotDigest = in.readLong();
+            int termCount = in.readInt();
+            if (docCount < 0 || termCount < 0) {
+                throw new IOException("Corrupt search index " + file);
+            }
+            String[] terms = new String[termCount];
+            int[] docFrequencies = new int[termCount];
+            int[] offsets = new int[termCount + 1];
+            String previous = "";
+            for (int i = 0; i < termCount; i++) {
+                int shared = in.readUnsignedByte();
+                if (shared > previous.length()) {
+                    throw new IOException("Corrupt search index " + file);
+                }
+                terms[i] = previous.substring(0, shared) + in.readUTF();
+                docFrequencies[i] = in.readInt();
+                offsets[i + 1] = offsets[i] + in.readInt();
+                previous = terms[i];
+            }
+            byte[] postings = new byte[offsets[termCount]];
+            in.readFully(postings);
+            return new NewsSearchIndex(docCount, snapshotDigest, terms, docFrequencies, offsets, postings);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int sharedPrefixLength(String a, String b) {
+        int max = Math.min(Math.min(a.length(), b.length()), 255);
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Collects the postings of one term while the index is built.
+     */
+    private static final class PostingsWriter {
+
+        private byte[] mBytes = new byte[8];
+
+        private int mLength;
+
+        private int mDocFrequency;
+
+        private int mLastOrdinal;
+
+        void add(int ordinal, int weight) {
+            if (mLength + 6 > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, mBytes.length * 2);
+            }
+            int delta = ordinal - mLastOrdinal;
+            while ((delta & ~0x7f) != 0) {
+                mBytes[mLength++] = (byte) ((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            mBytes[mLength++] = (byte) delta;
+            mBytes[mLength++] = (byte) weight;
+            mLastOrdinal = ordinal;
+            mDocFrequency++;
+        }
+    }
+
+    /**
+     * Get the terms of the news of a snapshot, reusing the terms of news which did not change since the
+     * previous snapshot.
+     * @param newsList    the news of the snapshot.
+     * @param previous    the terms of the previous snapshot by key, the url of the news.
+     * @param current    receives the terms of this snapshot by key.
+     * @return    the terms of the news, in the order of the snapshot.
+     */
+    @NotNull
+    static List<DocTerms> collectTerms(@NotNull List<NewsEntity> newsList, @NotNull Map<String, DocTerms> previous,
+                                       @NotNull Map<String, DocTerms> current) {
+        List<DocTerms> docs = new ArrayList<>(newsList.size());
+        for (NewsEntity newsEntity : newsList) {
+            String key = keyOf(newsEntity);
+            DocTerms doc = key == null ? null : previous.get(key);
+            if (doc == null || !doc.isUpToDate(newsEntity)) {
+                doc = DocTerms.of(newsEntity);
+            }
+            if (key != null) {
+                current.put(key, doc);
+            }
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    private static String keyOf(NewsEntity newsEntity) {
+        return newsEntity.getUrl() == null ? newsEntity.getTitle() : newsEntity.getUrl();
+    }
+}
@@ -0,0 +1,185 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Keeps the search index (NewsSearchIndex) in step with the cache. Every time the cache controller
+ * persists a snapshot, the index of the snapshot is built on the indexer thread and written next to the
+ * cache file, so that the cached news can be searched without a network. The I/O worker of the cache
+ * only hands the snapshot over, so the reads of the cache do not wait for the index. If several
+ * snapshots are written meanwhile, only the last one is indexed.
+ *
+ * The index is built incrementally: the terms of every news are kept in memory until the next snapshot,
+ * and only the news which are new or changed are tokenized again.
+ *
+ * There is one indexer per process (singleton).
+ */
+public class NewsSearchIndexer implements NewsDataBaseController.SnapshotListener {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + NewsSearchIndexer.class.getSimpleName();
+
+    private static final String FILE_NAME = "news_search.idx";
+
+    private static NewsSearchIndexer sInstance;
+
+    private final File mFile;
+
+    /**
+     * Builds the indexes, one snapshot at a time.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * True while an update is queued.
+     */
+    private final AtomicBoolean mIsScheduled = new AtomicBoolean();
+
+    /**
+     * The last snapshot written, null once it was taken by an update. Guarded by this.
+     */
+    private List<NewsEntity> mPendingSnapshot;
+
+    /**
+     * The terms of the news of the last indexed snapshot, by url. Only used on the indexer thread.
+     */
+    private Map<String, NewsSearchIndex.DocTerms> mDocTerms = new HashMap<>();
+
+    /**
+     * The index of the last snapshot, null until it is built or read from disk. Guarded by this.
+     */
+    private NewsSearchIndex mIndex;
+
+    /**
+     * Indicates the index file was read, or there was none. Guarded by this.
+     */
+    private boolean mIsLoaded;
+
+    NewsSearchIndexer(@NotNull File file) {
+        mFile = file;
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "NewsIndexerThread");
+                // the index is not urgent, leave the cpu to the ui.
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the indexer of the process.
+     * @param filesDirPath    path to the files directory, where the index is stored.
+     * @return    the indexer.
+     */
+    @NotNull
+    public static synchronized NewsSearchIndexer getInstance(@NotNull String filesDirPath) {
+        if (sInstance == null) {
+            sInstance = new NewsSearchIndexer(new File(filesDirPath, FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Called on the I/O worker once a snapshot was written to the cache. The index is built on the
+     * indexer thread, only for the last snapshot if several are written meanwhile.
+     */
+    @Override
+    public void onSnapshotWritten(@NotNull List<NewsEntity> newsList) {
+        synchronized (this) {
+            mPendingSnapshot = new ArrayList<>(newsList);
+        }
+        if (mIsScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // a snapshot written from now on schedules the next update.
+                    mIsScheduled.set(false);
+                    List<NewsEntity> snapshot;
+                    synchronized (NewsSearchIndexer.this) {
+                        snapshot = mPendingSnapshot;
+                        mPendingSnapshot = null;
+                    }
+                    if (snapshot != null) {
+                        update(snapshot);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Build the index of a snapshot and write it. Only called on the indexer thread.
+     */
+    private void update(List<NewsEntity> newsList) {
+        long start = System.nanoTime();
+        Map<String, NewsSearchIndex.DocTerms> docTerms = new HashMap<>(newsList.size() * 2);
+        List<NewsSearchIndex.DocTerms> terms = NewsSearchIndex.collectTerms(newsList, mDocTerms, docTerms);
+        NewsSearchIndex index = NewsSearchIndex.build(terms, NewsSearchIndex.digestOf(newsList));
+        // the terms of news which are not in this snapshot any more are dropped.
+        mDocTerms = docTerms;
+        synchronized (this) {
+            mIndex = index;
+            mIsLoaded = true;
+        }
+        try {
+            index.write(mFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write search index " + e.getMessage());
+        }
+        Log.d(TAG, "indexed " + index.getDocCount() + " news, " + index.getTermCount() + " terms in "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    /**
+     * Get the index of the cached news. The first call may read the index from disk, so it must not be
+     * made on the main thread.
+     * @return    the index, null if no snapshot was indexed yet.
+     */
+    @Nullable
+    public synchronized NewsSearchIndex getIndex() {
+        if (!mIsLoaded) {
+            mIsLoaded = true;
+            if (mFile.exists()) {
+                try {
+                    mIndex = NewsSearchIndex.read(mFile);
+                } catch (IOException e) {
+                    // it is rebuilt with the next snapshot.
+                    Log.e(TAG, "Cannot read search index " + e.getMessage());
+                }
+            }
+        }
+        return mIndex;
+    }
+
+    /**
+     * Wait until the scheduled update is done. For tests.
+     */
+    void flush() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,161 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * The published times of the news of a list, parsed once when the list is fetched and kept as a column
+ * of epoch millis by position (ordinal) in the list, together with a sort index of the positions from the
+ * newest to the oldest news. Ordering the news, and finding the news of a time window or the news newer
+ * than a time, is then done on primitive arrays without parsing dates again.
+ *
+ * News whose date is unknown (NewsDates.UNKNOWN) come last in the sort index. The timeline is immutable
+ * and can be used from any thread.
+ */
+public final class NewsTimeline {
+
+    private static final NewsTimeline EMPTY = new NewsTimeline(new long[0]);
+
+    // published time by ordinal.
+    private final long[] mPublishedAt;
+
+    // ordinals from the newest to the oldest news. News with the same time keep their list order.
+    private final int[] mNewestFirst;
+
+    private NewsTimeline(long[] publishedAt) {
+        mPublishedAt = publishedAt;
+        mNewestFirst = new int[publishedAt.length];
+        for (int i = 0; i < mNewestFirst.length; i++) {
+            mNewestFirst[i] = i;
+        }
+        sortNewestFirst(mNewestFirst, new int[mNewestFirst.length], 0, mNewestFirst.length);
+    }
+
+    /**
+     * Timeline of an empty list.
+     */
+    @NotNull
+    public static NewsTimeline empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Parse the published dates of a list of news.
+     * @param newsList    the news, in the order of the list.
+     */
+    @NotNull
+    public static NewsTimeline build(@NotNull List<NewsEntity> newsList) {
+        long[] publishedAt = new long[newsList.size()];
+        for (int ordinal = 0; ordinal < publishedAt.length; ordinal++) {
+            publishedAt[ordinal] = NewsDates.toEpochMillis(newsList.get(ordinal).getPublishedDate());
+        }
+        return new NewsTimeline(publishedAt);
+    }
+
+    /**
+     * @return    number of news.
+     */
+    public int size() {
+        return mPublishedAt.length;
+    }
+
+    /**
+     * @return    the published time of a news in epoch millis, or NewsDates.UNKNOWN.
+     */
+    public long getPublishedAt(int ordinal) {
+        return mPublishedAt[ordinal];
+    }
+
+    /**
+     * Get a news by its rank from the newest.
+     * @param rank    0 for the newest news.
+     * @return    the ordinal of the news.
+     */
+    public int getNewest(int rank) {
+        return mNewestFirst[rank];
+    }
+
+    /**
+     * @return    number of news published after a time. News with an unknown date are not counted.
+     */
+    public int countNewerThan(long millis) {
+        return rankOfFirstNotAfter(millis);
+    }
+
+    /**
+     * Get the news published in a time window, newest first.
+     * @param fromMillis    start of the window, inclusive.
+     * @param toMillis    end of the window, exclusive.
+     * @return    the ordinals of the news.
+     */
+    @NotNull
+    public int[] getPublishedBetween(long fromMillis, long toMillis) {
+        if (toMillis <= fromMillis) {
+            return new int[0];
+        }
+        // the ranks of the window: after toMillis - 1 comes the first news before toMillis.
+        int first = rankOfFirstNotAfter(toMillis - 1);
+        int end = fromMillis == Long.MIN_VALUE ? mNewestFirst.length : rankOfFirstNotAfter(fromMillis - 1);
+        return Arrays.copyOfRange(mNewestFirst, first, Math.max(first, end));
+    }
+
+    /**
+     * Binary search of the rank of the newest news published at or before a time.
+     */
+    private int rankOfFirstNotAfter(long millis) {
+        int low = 0;
+        int high = mNewestFirst.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long publishedAt = mPublishedAt[mNewestFirst[middle]];
+            if (publishedAt != NewsDates.UNKNOWN && publishedAt > millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A stable merge sort of ordinals, newest first, so that the ordinals are not boxed for a comparator.
+     */
+    private void sortNewestFirst(int[] ordinals, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortNewestFirst(ordinals, buffer, from, middle);
+        sortNewestFirst(ordinals, buffer, middle, to);
+        if (!isNewer(ordinals[middle], ordinals[middle - 1])) {
+            // already in order.
+            return;
+        }
+        System.arraycopy(ordinals, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && !isNewer(buffer[right], buffer[left]))) {
+                ordinals[i] = buffer[left++];
+            } else {
+                ordinals[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * @return    true if a news was published strictly after another one. Unknown dates are the oldest.
+     */
+    private boolean isNewer(int ordinal, int other) {
+        long publishedAt = mPublishedAt[ordinal];
+        long otherPublishedAt = mPublishedAt[other];
+        if (publishedAt == NewsDates.UNKNOWN) {
+            return false;
+        }
+        return otherPublishedAt == NewsDates.UNKNOWN || publishedAt > otherPublishedAt;
+    }
+}
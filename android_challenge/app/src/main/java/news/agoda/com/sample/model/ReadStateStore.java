@@ -0,0 +1,348 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import news.agoda.com.sample.AppConstants;
+
+/**
+ * Remembers which news the user has seen in the list and which ones they have read, by the stable id of
+ * the news (a hash of its url). The ids are kept in memory in hash sets of longs, so that a row can look
+ * up its state when it is bound without any I/O. A news not seen before the app started is new.
+ *
+ * The new marks are appended to a log file on a background thread, all the marks made meanwhile in one
+ * write; nothing is ever rewritten while the app runs. When the store is loaded and the log has grown
+ * past MAX_RECORDS, only the most recent half of the marks is kept and the log is rewritten (compaction),
+ * so the state of old news which are not in the feeds anymore is forgotten.
+ *
+ * There is one store per process (singleton). It can be used from any thread.
+ */
+public class ReadStateStore {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + ReadStateStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "read_state.log";
+
+    /**
+     * The log is compacted when it has more marks than this.
+     */
+    static final int MAX_RECORDS = 20000;
+
+    // a mark is its kind and the id of the news.
+    private static final int RECORD_SIZE = 9;
+
+    // the kinds of marks in the log.
+    private static final byte SEEN = 1;
+    private static final byte READ = 2;
+
+    private static ReadStateStore sInstance;
+
+    private final File mFile;
+
+    /**
+     * Writes the log, one mark after the other.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    // guarded by this.
+    private final LongHashSet mSeen = new LongHashSet(256);
+    private final LongHashSet mRead = new LongHashSet(64);
+
+    /**
+     * The news first seen since the app started. They stay new while it runs. Guarded by this.
+     */
+    private final LongHashSet mSeenSinceStart = new LongHashSet(64);
+
+    private boolean mIsLoaded;
+
+    /**
+     * The marks not appended yet. Before the log is loaded they are appended once it is. Guarded by this.
+     */
+    private final List<long[]> mPendingMarks = new ArrayList<>();
+
+    /**
+     * Indicates an append of the pending marks is queued. Guarded by this.
+     */
+    private boolean mIsAppendScheduled;
+
+    private final List<LoadListener> mLoadListeners = new ArrayList<>();
+
+    /**
+     * Callback when the log is loaded, so that the rows bound before show their state.
+     */
+    public interface LoadListener {
+        /**
+         * Called on the log thread.
+         */
+        void onReadStateLoaded();
+    }
+
+    ReadStateStore(@NotNull File file) {
+        mFile = file;
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "ReadStateThread");
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the store of the process. The log is loaded in the background the first time.
+     * @param filesDirPath    path to the files directory, where the log is stored.
+     * @return    the store.
+     */
+    @NotNull
+    public static synchronized ReadStateStore getInstance(@NotNull String filesDirPath) {
+        if (sInstance == null) {
+            sInstance = new ReadStateStore(new File(filesDirPath, FILE_NAME));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Load the log in the background. The marks made until then are kept.
+     */
+    void load() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadLog();
+            }
+        });
+    }
+
+    /**
+     * @return    true if the news was shown in the list before.
+     */
+    public synchronized boolean isSeen(long id) {
+        return mSeen.contains(id);
+    }
+
+    /**
+     * @return    true if the news was not shown in the list before the app started. No news is new until
+     *            the log is loaded, as it is not known yet.
+     */
+    public synchronized boolean isNew(long id) {
+        return mIsLoaded && (!mSeen.contains(id) || mSeenSinceStart.contains(id));
+    }
+
+    /**
+     * @return    true once the log is loaded.
+     */
+    public synchronized boolean isLoaded() {
+        return mIsLoaded;
+    }
+
+    public synchronized void addLoadListener(@NotNull LoadListener listener) {
+        mLoadListeners.add(listener);
+    }
+
+    public synchronized void removeLoadListener(@NotNull LoadListener listener) {
+        mLoadListeners.remove(listener);
+    }
+
+    /**
+     * @return    true if the user has opened the news.
+     */
+    public synchronized boolean isRead(long id) {
+        return mRead.contains(id);
+    }
+
+    /**
+     * Remember that a news was shown in the list. This does not block.
+     */
+    public void markSeen(long id) {
+        mark(SEEN, id);
+    }
+
+    /**
+     * Remember that the user opened a news. A read news is also seen. This does not block.
+     */
+    public void markRead(long id) {
+        mark(SEEN, id);
+        mark(READ, id);
+    }
+
+    private void mark(byte kind, long id) {
+        synchronized (this) {
+            if (!(kind == SEEN ? mSeen : mRead).add(id)) {
+                // marked before, the log has it.
+                return;
+            }
+            if (kind == SEEN && mIsLoaded) {
+                mSeenSinceStart.add(id);
+            }
+            mPendingMarks.add(new long[] {kind, id});
+            if (!mIsLoaded || mIsAppendScheduled) {
+                // appended with the marks before.
+                return;
+            }
+            mIsAppendScheduled = true;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                appendPendingMarks();
+            }
+        });
+    }
+
+    /**
+     * Read the log into the sets, compacting it if it is too long. Only called on the log thread.
+     */
+    private void loadLog() {
+        List<long[]> marks = new ArrayList<>();
+        if (mFile.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+                while (true) {
+                    byte kind = in.readByte();
+                    long id = in.readLong();
+                    marks.add(new long[] {kind, id});
+                }
+            } catch (EOFException e) {
+                // end of the log. A mark cut short by the process dying is dropped.
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot read read state " + e.getMessage());
+            } finally {
+                close(in);
+            }
+        }
+        if (marks.size() > MAX_RECORDS) {
+            marks = new ArrayList<>(marks.subList(marks.size() - MAX_RECORDS / 2, marks.size()));
+            rewrite(marks);
+        } else if (mFile.length() % RECORD_SIZE != 0) {
+            // drop the mark cut short, the next marks would not be aligned.
+            rewrite(marks);
+        }
+
+        LongHashSet loggedSeen = new LongHashSet(marks.size());
+        LongHashSet loggedRead = new LongHashSet(16);
+        for (long[] mark : marks) {
+            (mark[0] == SEEN ? loggedSeen : loggedRead).add(mark[1]);
+        }
+
+        List<LoadListener> loadListeners;
+        synchronized (this) {
+            // the marks made before which the log has already are not appended again.
+            for (int i = mPendingMarks.size() - 1; i >= 0; i--) {
+                long[] mark = mPendingMarks.get(i);
+                if ((mark[0] == SEEN ? loggedSeen : loggedRead).contains(mark[1])) {
+                    mPendingMarks.remove(i);
+                } else if (mark[0] == SEEN) {
+                    mSeenSinceStart.add(mark[1]);
+                }
+            }
+            for (long[] mark : marks) {
+                (mark[0] == SEEN ? mSeen : mRead).add(mark[1]);
+            }
+            mIsLoaded = true;
+            mIsAppendScheduled = true;
+            loadListeners = new ArrayList<>(mLoadListeners);
+        }
+        appendPendingMarks();
+        Log.d(TAG, "loaded " + marks.size() + " marks");
+        for (LoadListener listener : loadListeners) {
+            listener.onReadStateLoaded();
+        }
+    }
+
+    /**
+     * Append the pending marks to the log. Only called on the log thread.
+     */
+    private void appendPendingMarks() {
+        List<long[]> pendingMarks;
+        synchronized (this) {
+            pendingMarks = new ArrayList<>(mPendingMarks);
+            mPendingMarks.clear();
+            mIsAppendScheduled = false;
+        }
+        if (pendingMarks.isEmpty()) {
+            return;
+        }
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(mFile, true);
+            // one write for all the marks. If the process dies meanwhile, the log is cut short past the
+            // last whole mark and the rest is dropped when it is loaded.
+            byte[] records = new byte[pendingMarks.size() * RECORD_SIZE];
+            for (int m = 0; m < pendingMarks.size(); m++) {
+                long id = pendingMarks.get(m)[1];
+                records[m * RECORD_SIZE] = (byte) pendingMarks.get(m)[0];
+                for (int i = 0; i < 8; i++) {
+                    records[m * RECORD_SIZE + 1 + i] = (byte) (id >>> (56 - 8 * i));
+                }
+            }
+            out.write(records);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot append read state " + e.getMessage());
+        } finally {
+            close(out);
+        }
+    }
+
+    private void rewrite(List<long[]> marks) {
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            for (long[] mark : marks) {
+                out.writeByte((int) mark[0]);
+                out.writeLong(mark[1]);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(mFile)) {
+                Log.e(TAG, "Cannot replace read state log");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot compact read state " + e.getMessage());
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot close read state log " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Wait until the pending marks are written. For tests.
+     */
+    void flush() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,525 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Finds the related news of every cached news, so that the details view shows them with a lookup in a
+ * RelatedNewsIndex. Two news are related when their TF-IDF vectors are similar: the terms are those of
+ * the search index (see NewsSearchIndex.DocTerms), weighted by field, and the similarity is the cosine
+ * of the vectors. Every news keeps its RELATED_COUNT most similar news.
+ *
+ * The related news are computed on a background thread every time the cache controller persists a
+ * snapshot, and incrementally: the vectors and related news of the news which did not change are kept,
+ * only the new and changed news are compared with all the others. A news which lost one of its related
+ * news is compared with all the others again. The document frequencies are frozen while the snapshots
+ * change little, once the snapshot differs by more than MAX_CHANGED_FRACTION from the one they were
+ * counted in, all the vectors and related news are computed again.
+ *
+ * There is one engine per process (singleton).
+ */
+public class RelatedNewsEngine implements NewsDataBaseController.SnapshotListener {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + RelatedNewsEngine.class.getSimpleName();
+
+    private static final String FILE_NAME = "news_related.idx";
+
+    /**
+     * The number of related news of a news.
+     */
+    static final int RELATED_COUNT = 5;
+
+    /**
+     * News less similar than this are not related, even if there are no better ones.
+     */
+    static final float MIN_SIMILARITY = 0.1f;
+
+    /**
+     * The fraction of new, changed and removed news from which the document frequencies are counted again.
+     */
+    static final float MAX_CHANGED_FRACTION = 0.25f;
+
+    private static RelatedNewsEngine sInstance;
+
+    private final File mFile;
+
+    /**
+     * Computes the related news, one snapshot at a time.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * True while an update is queued.
+     */
+    private final AtomicBoolean mIsScheduled = new AtomicBoolean();
+
+    /**
+     * The last snapshot written, null once it was taken by an update. Guarded by this.
+     */
+    private List<NewsEntity> mPendingSnapshot;
+
+    /**
+     * The index of the last snapshot, null until it is built or read from disk. Guarded by this.
+     */
+    private RelatedNewsIndex mIndex;
+
+    // guarded by this.
+    private final List<IndexListener> mIndexListeners = new ArrayList<>();
+
+    /**
+     * Callback when a new index is available, so that a view which found none, or an older one, queries
+     * it again.
+     */
+    public interface IndexListener {
+        /**
+         * Called on the engine thread.
+         */
+        void onRelatedNewsIndexed();
+    }
+
+    // the state of the last update, only used on the engine thread.
+    private Map<String, NewsSearchIndex.DocTerms> mDocTerms = new HashMap<>();
+    private Map<String, Doc> mDocs = new LinkedHashMap<>();
+    private Map<String, Integer> mTermIds = new HashMap<>();
+    private Map<String, Float> mIdf;
+    private int mIdfDocCount;
+
+    /**
+     * A news with its normalized TF-IDF vector and its most similar news.
+     */
+    private static final class Doc {
+
+        private final String mKey;
+
+        private final String mUrl;
+
+        private final String mTitle;
+
+        private final NewsSearchIndex.DocTerms mTerms;
+
+        // sorted term ids and their values.
+        private int[] mTermIds;
+        private float[] mValues;
+
+        // the most similar first.
+        private final Doc[] mRelated = new Doc[RELATED_COUNT];
+        private final float[] mSimilarities = new float[RELATED_COUNT];
+        private int mRelatedCount;
+
+        private Doc(String key, NewsEntity newsEntity, NewsSearchIndex.DocTerms terms) {
+            mKey = key;
+            mUrl = newsEntity.getUrl();
+            mTitle = newsEntity.getTitle() == null ? "" : newsEntity.getTitle();
+            mTerms = terms;
+        }
+
+        /**
+         * Keep the other news if it is among the most similar ones.
+         */
+        private void offer(Doc other, float similarity) {
+            if (similarity < MIN_SIMILARITY
+                    || (mRelatedCount == RELATED_COUNT && similarity <= mSimilarities[RELATED_COUNT - 1])) {
+                return;
+            }
+            int i = mRelatedCount < RELATED_COUNT ? mRelatedCount++ : RELATED_COUNT - 1;
+            while (i > 0 && mSimilarities[i - 1] < similarity) {
+                mRelated[i] = mRelated[i - 1];
+                mSimilarities[i] = mSimilarities[i - 1];
+                i--;
+            }
+            mRelated[i] = other;
+            mSimilarities[i] = similarity;
+        }
+
+        /**
+         * Drop the related news which are not in the snapshot anymore.
+         * @return    true if any was dropped.
+         */
+        private boolean retainCurrent(Map<String, Doc> docs) {
+            int kept = 0;
+            for (int i = 0; i < mRelatedCount; i++) {
+                if (docs.get(mRelated[i].mKey) == mRelated[i]) {
+                    mRelated[kept] = mRelated[i];
+                    mSimilarities[kept++] = mSimilarities[i];
+                }
+            }
+            boolean isDropped = kept < mRelatedCount;
+            Arrays.fill(mRelated, kept, mRelatedCount, null);
+            mRelatedCount = kept;
+            return isDropped;
+        }
+
+        private void clearRelated() {
+            Arrays.fill(mRelated, null);
+            mRelatedCount = 0;
+        }
+    }
+
+    RelatedNewsEngine(@NotNull File file) {
+        mFile = file;
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RelatedNewsThread");
+                // the related news are not urgent, leave the cpu to the ui.
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the engine of the process. The index of the last snapshot is read in the background the first
+     * time.
+     * @param filesDirPath    path to the files directory, where the index is stored.
+     * @return    the engine.
+     */
+    @NotNull
+    public static synchronized RelatedNewsEngine getInstance(@NotNull String filesDirPath) {
+        if (sInstance == null) {
+            sInstance = new RelatedNewsEngine(new File(filesDirPath, FILE_NAME));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Read the index of the last snapshot in the background, unless a snapshot is indexed first.
+     */
+    void load() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RelatedNewsEngine.this) {
+                    if (mIndex != null || !mFile.exists()) {
+                        return;
+                    }
+                }
+                try {
+                    RelatedNewsIndex index = RelatedNewsIndex.read(mFile);
+                    synchronized (RelatedNewsEngine.this) {
+                        if (mIndex != null) {
+                            return;
+                        }
+                        mIndex = index;
+                    }
+                    notifyIndexed();
+                } catch (IOException e) {
+                    // it is rebuilt with the next snapshot.
+                    Log.e(TAG, "Cannot read related news " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the related news of the cached news. This does not block, so it can be called on the main
+     * thread.
+     * @return    the index, null while it is neither built nor read from disk.
+     */
+    @Nullable
+    public synchronized RelatedNewsIndex getIndex() {
+        return mIndex;
+    }
+
+    public synchronized void addIndexListener(@NotNull IndexListener listener) {
+        mIndexListeners.add(listener);
+    }
+
+    public synchronized void removeIndexListener(@NotNull IndexListener listener) {
+        mIndexListeners.remove(listener);
+    }
+
+    private void notifyIndexed() {
+        List<IndexListener> indexListeners;
+        synchronized (this) {
+            indexListeners = new ArrayList<>(mIndexListeners);
+        }
+        for (IndexListener listener : indexListeners) {
+            listener.onRelatedNewsIndexed();
+        }
+    }
+
+    /**
+     * Called on the I/O worker once a snapshot was written to the cache. The related news are computed on
+     * the engine thread, only for the last snapshot if several are written meanwhile.
+     */
+    @Override
+    public void onSnapshotWritten(@NotNull List<NewsEntity> newsList) {
+        synchronized (this) {
+            mPendingSnapshot = new ArrayList<>(newsList);
+        }
+        if (mIsScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // a snapshot written from now on schedules the next update.
+                    mIsScheduled.set(false);
+                    List<NewsEntity> snapshot;
+                    synchronized (RelatedNewsEngine.this) {
+                        snapshot = mPendingSnapshot;
+                        mPendingSnapshot = null;
+                    }
+                    if (snapshot != null) {
+                        update(snapshot);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Compute the related news of a snapshot and write their index. Only called on the engine thread.
+     */
+    private void update(List<NewsEntity> newsList) {
+        long start = System.nanoTime();
+        Map<String, NewsSearchIndex.DocTerms> docTerms = new HashMap<>(newsList.size() * 2);
+        List<NewsSearchIndex.DocTerms> terms = NewsSearchIndex.collectTerms(newsList, mDocTerms, docTerms);
+        mDocTerms = docTerms;
+
+        // the news of the snapshot, the unchanged ones are those of the previous update.
+        Map<String, Doc> docs = new LinkedHashMap<>(newsList.size() * 2);
+        List<Doc> changed = new ArrayList<>();
+        for (int i = 0; i < newsList.size(); i++) {
+            NewsEntity newsEntity = newsList.get(i);
+            String key = newsEntity.getUrl() == null ? newsEntity.getTitle() : newsEntity.getUrl();
+            if (key == null || docs.containsKey(key)) {
+                continue;
+            }
+            Doc doc = mDocs.get(key);
+            // unchanged news keep their terms, see NewsSearchIndex.collectTerms.
+            if (doc == null || doc.mTerms != terms.get(i)) {
+                doc = new Doc(key, newsEntity, terms.get(i));
+                changed.add(doc);
+            }
+            docs.put(key, doc);
+        }
+        int removed = 0;
+        for (String key : mDocs.keySet()) {
+            if (!docs.containsKey(key)) {
+                removed++;
+            }
+        }
+
+        boolean isRebuilt = mIdf == null
+                || changed.size() + removed > MAX_CHANGED_FRACTION * Math.max(docs.size(), mIdfDocCount);
+        if (isRebuilt) {
+            rebuild(docs);
+        } else {
+            updateChanged(docs, changed);
+        }
+        mDocs = docs;
+
+        RelatedNewsIndex index = toIndex(docs);
+        synchronized (this) {
+            mIndex = index;
+        }
+        notifyIndexed();
+        try {
+            index.write(mFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write related news " + e.getMessage());
+        }
+        Log.d(TAG, "related news of " + docs.size() + " news, " + (isRebuilt ? "all" : changed.size())
+                + " compared in " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    /**
+     * Count the document frequencies again and compare all the news with each other.
+     */
+    private void rebuild(Map<String, Doc> docs) {
+        Map<String, int[]> docFrequencies = new HashMap<>();
+        for (Doc doc : docs.values()) {
+            for (String term : doc.mTerms.getTerms()) {
+                int[] docFrequency = docFrequencies.get(term);
+                if (docFrequency == null) {
+                    docFrequencies.put(term, new int[] {1});
+                } else {
+                    docFrequency[0]++;
+                }
+            }
+        }
+        mIdfDocCount = docs.size();
+        mIdf = new HashMap<>(docFrequencies.size() * 2);
+        for (Map.Entry<String, int[]> entry : docFrequencies.entrySet()) {
+            mIdf.put(entry.getKey(), idf(entry.getValue()[0]));
+        }
+        mTermIds = new HashMap<>(docFrequencies.size() * 2);
+
+        Doc[] all = docs.values().toArray(new Doc[docs.size()]);
+        for (Doc doc : all) {
+            vectorize(doc);
+            doc.clearRelated();
+        }
+        for (int i = 0; i < all.length; i++) {
+            for (int j = i + 1; j < all.length; j++) {
+                float similarity = similarity(all[i], all[j]);
+                all[i].offer(all[j], similarity);
+                all[j].offer(all[i], similarity);
+            }
+        }
+    }
+
+    /**
+     * Compare the new and changed news with all the news, with the frozen document frequencies.
+     */
+    private void updateChanged(Map<String, Doc> docs, List<Doc> changed) {
+        Set<Doc> isChanged = Collections.newSetFromMap(new IdentityHashMap<Doc, Boolean>());
+        isChanged.addAll(changed);
+        List<Doc> incomplete = new ArrayList<>();
+        for (Doc doc : docs.values()) {
+            if (!isChanged.contains(doc) && doc.retainCurrent(docs)) {
+                // the next most similar news is unknown.
+                incomplete.add(doc);
+            }
+        }
+        Set<Doc> isIncomplete = Collections.newSetFromMap(new IdentityHashMap<Doc, Boolean>());
+        isIncomplete.addAll(incomplete);
+        for (Doc doc : changed) {
+            vectorize(doc);
+        }
+        for (Doc doc : changed) {
+            for (Doc other : docs.values()) {
+                if (other == doc) {
+                    continue;
+                }
+                float similarity = similarity(doc, other);
+                doc.offer(other, similarity);
+                if (!isChanged.contains(other) && !isIncomplete.contains(other)) {
+                    other.offer(doc, similarity);
+                }
+            }
+        }
+        for (Doc doc : incomplete) {
+            doc.clearRelated();
+            for (Doc other : docs.values()) {
+                if (other != doc) {
+                    doc.offer(other, similarity(doc, other));
+                }
+            }
+        }
+    }
+
+    private float idf(int docFrequency) {
+        return (float) Math.log(1 + (double) mIdfDocCount / docFrequency);
+    }
+
+    /**
+     * Compute the normalized TF-IDF vector of a news. A term which was not counted is as rare as can be.
+     */
+    private void vectorize(Doc doc) {
+        String[] terms = doc.mTerms.getTerms();
+        int[] weights = doc.mTerms.getWeights();
+        long[] entries = new long[terms.length];
+        float[] values = new float[terms.length];
+        double norm = 0;
+        for (int i = 0; i < terms.length; i++) {
+            Integer termId = mTermIds.get(terms[i]);
+            if (termId == null) {
+                termId = mTermIds.size();
+                mTermIds.put(terms[i], termId);
+            }
+            Float idf = mIdf.get(terms[i]);
+            values[i] = weights[i] * (idf == null ? idf(1) : idf);
+            norm += values[i] * values[i];
+            // sort by term id, keeping the index of the value.
+            entries[i] = ((long) termId << 32) | i;
+        }
+        Arrays.sort(entries);
+        doc.mTermIds = new int[terms.length];
+        doc.mValues = new float[terms.length];
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < entries.length; i++) {
+            doc.mTermIds[i] = (int) (entries[i] >>> 32);
+            doc.mValues[i] = values[(int) entries[i]] * scale;
+        }
+    }
+
+    /**
+     * @return    the cosine of the vectors of two news, a merge of their sorted terms.
+     */
+    private static float similarity(Doc doc, Doc other) {
+        int[] termIds = doc.mTermIds;
+        int[] otherTermIds = other.mTermIds;
+        float similarity = 0;
+        int i = 0;
+        int j = 0;
+        while (i < termIds.length && j < otherTermIds.length) {
+            if (termIds[i] < otherTermIds[j]) {
+                i++;
+            } else if (termIds[i] > otherTermIds[j]) {
+                j++;
+            } else {
+                similarity += doc.mValues[i++] * other.mValues[j++];
+            }
+        }
+        return similarity;
+    }
+
+    /**
+     * Get the index of the related news of the news which have a url, those the details view shows.
+     */
+    private static RelatedNewsIndex toIndex(Map<String, Doc> docs) {
+        Map<Doc, Integer> ordinals = new IdentityHashMap<>();
+        List<Doc> indexed = new ArrayList<>(docs.size());
+        for (Doc doc : docs.values()) {
+            if (doc.mUrl != null) {
+                ordinals.put(doc, indexed.size());
+                indexed.add(doc);
+            }
+        }
+        String[] urls = new String[indexed.size()];
+        String[] titles = new String[indexed.size()];
+        int[][] related = new int[indexed.size()][];
+        for (int i = 0; i < indexed.size(); i++) {
+            Doc doc = indexed.get(i);
+            urls[i] = doc.mUrl;
+            titles[i] = doc.mTitle;
+            int[] relatedOrdinals = new int[doc.mRelatedCount];
+            int count = 0;
+            for (int j = 0; j < doc.mRelatedCount; j++) {
+                Integer ordinal = ordinals.get(doc.mRelated[j]);
+                if (ordinal != null) {
+                    relatedOrdinals[count++] = ordinal;
+                }
+            }
+            related[i] = Arrays.copyOf(relatedOrdinals, count);
+        }
+        return RelatedNewsIndex.build(urls, titles, related);
+    }
+
+    /**
+     * Wait until the scheduled update is done. For tests.
+     */
+    void flush() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,199 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The related news of every news of a snapshot, as computed by RelatedNewsEngine. News are identified by
+ * their ordinal in the index, and the related news of all the news are stored in one array of ordinals,
+ * the most similar first, so that the related news of a news are one binary search by url away.
+ *
+ * The index is immutable and can be queried from any thread. It is written to disk in the same compact
+ * form.
+ */
+public final class RelatedNewsIndex {
+
+    private static final int MAGIC = 0x4e524c58;
+
+    private static final int VERSION = 1;
+
+    private static final int[] NONE = new int[0];
+
+    // in the order of the snapshot.
+    private final String[] mUrls;
+
+    private final String[] mTitles;
+
+    // start of the related news of each news in mRelated, plus the end of the last one.
+    private final int[] mOffsets;
+
+    private final int[] mRelated;
+
+    // the ordinals sorted by url.
+    private final int[] mByUrl;
+
+    private RelatedNewsIndex(String[] urls, String[] titles, int[] offsets, int[] related) {
+        mUrls = urls;
+        mTitles = titles;
+        mOffsets = offsets;
+        mRelated = related;
+        Integer[] byUrl = new Integer[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            byUrl[i] = i;
+        }
+        Arrays.sort(byUrl, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return mUrls[o1].compareTo(mUrls[o2]);
+            }
+        });
+        mByUrl = new int[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            mByUrl[i] = byUrl[i];
+        }
+    }
+
+    /**
+     * Build the index of a snapshot.
+     * @param urls    the urls of the news, which must be distinct.
+     * @param titles    the titles of the news.
+     * @param related    the ordinals of the related news of every news, the most similar first.
+     */
+    @NotNull
+    static RelatedNewsIndex build(@NotNull String[] urls, @NotNull String[] titles, @NotNull int[][] related) {
+        int[] offsets = new int[urls.length + 1];
+        for (int i = 0; i < urls.length; i++) {
+            offsets[i + 1] = offsets[i] + related[i].length;
+        }
+        int[] flat = new int[offsets[urls.length]];
+        for (int i = 0; i < urls.length; i++) {
+            System.arraycopy(related[i], 0, flat, offsets[i], related[i].length);
+        }
+        return new RelatedNewsIndex(urls, titles, offsets, flat);
+    }
+
+    /**
+     * @return    number of news in the index.
+     */
+    public int getDocCount() {
+        return mUrls.length;
+    }
+
+    /**
+     * Get the related news of a news. This is a lookup, nothing is computed.
+     * @param url    the url of the news.
+     * @return    the ordinals of the related news, the most similar first. Empty if the news is unknown.
+     */
+    @NotNull
+    public int[] getRelated(@Nullable String url) {
+        int ordinal = ordinalOf(url);
+        return ordinal < 0 ? NONE : Arrays.copyOfRange(mRelated, mOffsets[ordinal], mOffsets[ordinal + 1]);
+    }
+
+    @NotNull
+    public String getUrl(int ordinal) {
+        return mUrls[ordinal];
+    }
+
+    @NotNull
+    public String getTitle(int ordinal) {
+        return mTitles[ordinal];
+    }
+
+    private int ordinalOf(String url) {
+        if (url == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = mByUrl.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = mUrls[mByUrl[middle]].compareTo(url);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return mByUrl[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Write the index to a file. The file is replaced atomically, a reader never sees half an index.
+     * This call is blocking.
+     * @param file    the file of the index.
+     * @throws IOException    if the file could not be written.
+     */
+    void write(@NotNull File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mUrls.length);
+            for (int i = 0; i < mUrls.length; i++) {
+                out.writeUTF(mUrls[i]);
+                out.writeUTF(mTitles[i]);
+                out.writeByte(mOffsets[i + 1] - mOffsets[i]);
+                for (int j = mOffsets[i]; j < mOffsets[i + 1]; j++) {
+                    out.writeInt(mRelated[j]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Read an index written with write. This call is blocking.
+     * @param file    the file of the index.
+     * @return    the index.
+     * @throws IOException    if the file is missing, corrupt or from another version.
+     */
+    @NotNull
+    static RelatedNewsIndex read(@NotNull File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a related news index of this version " + file);
+            }
+            int docCount = in.readInt();
+            if (docCount < 0) {
+                throw new IOException("Corrupt related news index " + file);
+            }
+            String[] urls = new String[docCount];
+            String[] titles = new String[docCount];
+            int[][] related = new int[docCount][];
+            for (int i = 0; i < docCount; i++) {
+                urls[i] = in.readUTF();
+                titles[i] = in.readUTF();
+                related[i] = new int[in.readUnsignedByte()];
+                for (int j = 0; j < related[i].length; j++) {
+                    related[i][j] = in.readInt();
+                    if (related[i][j] < 0 || related[i][j] >= docCount) {
+                        throw new IOException("Corrupt related news index " + file);
+                    }
+                }
+            }
+            return build(urls, titles, related);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package news.agoda.com.sample.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Decides how requests to the server are retried. A refresh gets a total time budget (the deadline),
+ * shared by all its requests, feeds and mirrors. A failed request is retried after a capped exponential
+ * backoff with random jitter, as long as the next attempt still fits in the deadline.
+ *
+ * Only transient failures are retried (I/O errors and 5xx responses). Client errors (4xx) and invalid
+ * responses are not, since a retry would fail the same way.
+ */
+class RetryPolicy {
+
+    /**
+     * The policy used for refreshing the news. A dead network fails a refresh within 20 seconds.
+     */
+    static final RetryPolicy DEFAULT = new RetryPolicy(20000, 3, 250, 2000, 4000, 8000);
+
+    /**
+     * Total time a refresh may spend on the server, including waiting between retries.
+     */
+    private final long mTotalDeadlineMs;
+
+    /**
+     * Maximum number of attempts for one url.
+     */
+    private final int mMaxAttempts;
+
+    /**
+     * Backoff before the first retry. It doubles for every following retry.
+     */
+    private final long mBaseDelayMs;
+
+    /**
+     * Upper limit of the backoff.
+     */
+    private final long mMaxDelayMs;
+
+    /**
+     * Connection timeout of a single attempt.
+     */
+    private final int mConnectTimeoutMs;
+
+    /**
+     * Read timeout of a single attempt.
+     */
+    private final int mReadTimeoutMs;
+
+    /**
+     * Random is thread safe. Used for the jitter.
+     */
+    private final Random mRandom = new Random();
+
+    RetryPolicy(long totalDeadlineMs, int maxAttempts, long baseDelayMs, long maxDelayMs,
+                int connectTimeoutMs, int readTimeoutMs) {
+        mTotalDeadlineMs = totalDeadlineMs;
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMs = baseDelayMs;
+        mMaxDelayMs = maxDelayMs;
+        mConnectTimeoutMs = connectTimeoutMs;
+        mReadTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Start the time budget of a refresh.
+     * @return    A budget that expires after the total deadline of this policy.
+     */
+    @NotNull
+    Budget newBudget() {
+        return new Budget(this, System.nanoTime() / 1000000 + mTotalDeadlineMs);
+    }
+
+    int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    int getConnectTimeoutMs() {
+        return mConnectTimeoutMs;
+    }
+
+    int getReadTimeoutMs() {
+        return mReadTimeoutMs;
+    }
+
+    /**
+     * The wait before the given retry: a random value between zero and the capped exponential delay
+     * ("full jitter"). The jitter keeps many clients from retrying in lock step.
+     * @param retry    0 for the first retry, 1 for the second and so on.
+     * @return    backoff in milliseconds.
+     */
+    long backoffMillis(int retry) {
+        long delay = mBaseDelayMs << Math.min(retry, 20);
+        long cap = Math.min(delay, mMaxDelayMs);
+        return (long) (mRandom.nextDouble() * (cap + 1));
+    }
+
+    /**
+     * Whether a response with the given http status code is worth retrying.
+     * @param statusCode    http status code.
+     * @return    true for server errors (5xx).
+     */
+    static boolean isRetryable(int statusCode) {
+        return statusCode >= 500 && statusCode < 600;
+    }
+
+    /**
+     * The time budget of one refresh. It is immutable and can be shared by requests running on
+     * different threads.
+     */
+    static class Budget {
+
+        private final RetryPolicy mPolicy;
+
+        /**
+         * The deadline, in the time base of System.nanoTime converted to milliseconds.
+         */
+        private final long mDeadlineMs;
+
+        private Budget(RetryPolicy policy, long deadlineMs) {
+            mPolicy = policy;
+            mDeadlineMs = deadlineMs;
+        }
+
+        RetryPolicy getPolicy() {
+            return mPolicy;
+        }
+
+        /**
+         * @return    milliseconds left before the deadline, zero or less if the deadline has passed.
+         */
+        long remainingMillis() {
+            return mDeadlineMs - System.nanoTime() / 1000000;
+        }
+    }
+}
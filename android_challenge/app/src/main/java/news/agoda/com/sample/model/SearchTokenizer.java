@@ -0,0 +1,68 @@
+package news.agoda.com.sample.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into the terms of the search index. The text is lower cased and stripped of accents, and
+ * every run of letters and digits is a term, so "Hillary Clinton's" gives "hillary", "clinton" and "s".
+ */
+final class SearchTokenizer {
+
+    /**
+     * Terms shorter than this are not indexed, they match too many news to be useful.
+     */
+    static final int MIN_INDEXED_LENGTH = 2;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * Get the terms of a text.
+     * @param text    the text, may be null.
+     * @param minLength    shorter terms are dropped.
+     * @return    the terms in the order of the text, with duplicates.
+     */
+    static List<String> tokenize(String text, int minLength) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean isTermChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (isTermChar && start < 0) {
+                start = i;
+            } else if (!isTermChar && start >= 0) {
+                if (i - start >= minLength) {
+                    tokens.add(normalized.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return    true if the last character of the text ends a term, i.e. the user finished typing it.
+     */
+    static boolean endsWithSeparator(String text) {
+        return !text.isEmpty() && !Character.isLetterOrDigit(text.charAt(text.length() - 1));
+    }
+
+    private static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            // drop the accents which the decomposition separated from their letters.
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+}
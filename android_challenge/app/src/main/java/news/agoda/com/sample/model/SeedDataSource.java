@@ -0,0 +1,117 @@
+package news.agoda.com.sample.model;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * The seed data source reads the snapshot of news packaged in the assets of the application, so that a
+ * fresh install shows news before it ever reached the server, even offline. It is used instead of the
+ * cache data source as long as the cache has no snapshot; the first server fetch writes one, which
+ * replaces the seed from then on.
+ *
+ * The seed is in the format of the cache, a json array of news. The asset is stored uncompressed in the
+ * APK (see noCompress in build.gradle), so it is memory mapped where it lies in the APK and its bytes are
+ * decoded from the mapping, without reading them into a byte array first. The json parser only takes a
+ * string, so the characters are still copied into one before they are parsed, as for the cache.
+ */
+class SeedDataSource implements DataSource {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + SeedDataSource.class.getSimpleName();
+
+    /**
+     * The name of the seed snapshot in the assets.
+     */
+    static final String SEED_ASSET = "seed_news.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final AssetManager mAssets;
+
+    SeedDataSource(@NotNull AssetManager assets) {
+        mAssets = assets;
+    }
+
+    @Override
+    @Nullable
+    public ArrayList<NewsEntity> fetchNewsList() {
+        Log.d(TAG,"fetchNewsList");
+        AssetFileDescriptor descriptor = null;
+        FileInputStream in = null;
+        try {
+            // This call is blocking.
+            descriptor = mAssets.openFd(SEED_ASSET);
+            in = descriptor.createInputStream();
+            return readSnapshot(in.getChannel(), descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            Log.e(TAG,"Cannot read seed snapshot "+e.getMessage());
+            return null;
+        } catch (JSONException e) {
+            Log.e(TAG,"JSON parse error "+e.getMessage());
+            return null;
+        } finally {
+            close(in);
+            close(descriptor);
+        }
+    }
+
+    /**
+     * Map a snapshot in the cache format and decode it.
+     * @param channel    The file holding the snapshot.
+     * @param offset    The start of the snapshot in the file.
+     * @param length    The length of the snapshot.
+     * @return    The news of the snapshot.
+     * @throws IOException    if the file cannot be mapped.
+     * @throws JSONException    if the snapshot is not a json array of news.
+     */
+    @NotNull
+    static ArrayList<NewsEntity> readSnapshot(@NotNull FileChannel channel, long offset, long length)
+            throws IOException, JSONException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        // the mapped pages are decoded without a byte array in between, then copied into the json string.
+        String snapshot = UTF_8.decode(mapped).toString();
+        return NewsDecoder.decode(new JSONArray(snapshot));
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG,"Cannot close seed snapshot "+e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The seed holds no reference to the cache db controller.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Get type of data source
+     * @return    SEED
+     */
+    @Override
+    public DataSourceFactory.Sources getType() {
+        return DataSourceFactory.Sources.SEED;
+    }
+}
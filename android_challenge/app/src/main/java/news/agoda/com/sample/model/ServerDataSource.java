@@ -2,77 +2,351 @@ package news.agoda.com.sample.model;
 
 import android.util.Log;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import news.agoda.com.sample.AppConstants;
 import news.agoda.com.sample.viewmodel.NewsEntity;
 
 /**
- * The server data source fetches data from the server using the provided urls. It first attempts to fetch
- * the data using the URL_1. If that does not work, it tries to fetch it from an alternate URL - URL_2.
+ * The server data source fetches data from the server for a set of feeds (see FeedEndpoint). For each
+ * feed it first attempts to fetch the data using the first url of the feed. If that does not work, it
+ * tries the next (mirror) url of the feed.
+ *
+ * When there is more than one feed, the feeds are fetched concurrently on a bounded pool of threads, so
+ * a refresh takes about as long as the slowest feed rather than the sum of all the feeds. The results are
+ * then merged into one list ordered by published date, without duplicate stories.
+ *
+ * A feed with delta sync (see DeltaSync) is fetched with the cursor of the news it sent last, so that its
+ * server only sends the news that changed. The news each feed sent last are kept in memory and in the
+ * cache. If the server sends a delta that does not apply to them, the feed is fetched again in full.
+ *
+ * Only the feeds which are due (see FeedScheduler) are fetched. The news of the feeds which are still
+ * fresh are the ones they sent last, so the news each scheduled feed sent last are kept too.
  */
 class ServerDataSource implements DataSource {
 
     private static final String TAG = AppConstants.APP_TAG + "." + ServerDataSource.class.getSimpleName();
-    private static final String URL_1 = "https://api.myjson.com/bins/nl6jh";
-    // The URL_2 is a backup url if URL_1 fails to respond
-    private static final String URL_2 = "http://www.mocky.io/v2/573c89f31100004a1daa8adb";
+
+    /**
+     * Threads used to fetch the feeds concurrently. The pool is shared by all server data sources and
+     * its threads stop when they have been idle for a while.
+     */
+    private static ThreadPoolExecutor sFeedExecutor;
+
+    /**
+     * The news each delta sync feed sent last, by key, by name of the feed. Loaded from the cache the first
+     * time a feed is fetched. Guarded by the map.
+     */
+    private static final Map<String, Map<String, NewsEntity>> sFeedStates = new HashMap<>();
 
     /**
      * All requests from the server are handled using this controller.
      */
     private NewsDataBaseController mNewsDB;
 
-    ServerDataSource (NewsDataBaseController newsDB) {
+    /**
+     * Decides which of the subscribed feeds are fetched.
+     */
+    private final FeedScheduler mScheduler;
+
+    /**
+     * The maximum number of feeds fetched at the same time.
+     */
+    private final int mMaxParallelFeeds;
+
+    /**
+     * How requests are retried. Every refresh gets a new time budget of this policy.
+     */
+    private final RetryPolicy mRetryPolicy;
+
+    ServerDataSource (NewsDataBaseController newsDB, @NotNull FeedScheduler scheduler, int maxParallelFeeds,
+                      @NotNull RetryPolicy retryPolicy) {
         mNewsDB = newsDB;
+        mScheduler = scheduler;
+        mMaxParallelFeeds = maxParallelFeeds;
+        mRetryPolicy = retryPolicy;
     }
 
     @Override
     @Nullable
     public ArrayList<NewsEntity> fetchNewsList() {
         Log.d(TAG,"fetchNewsList");
-        ArrayList<NewsEntity> newsEntityList;
+        long now = System.currentTimeMillis();
+        List<FeedSubscription> dueFeeds = mScheduler.getDueFeeds(now);
+        /**
+         * The fresh feeds are not fetched, their news are the ones they sent last. A fresh feed whose
+         * news are not known (anymore) is fetched anyway.
+         */
+        List<ArrayList<NewsEntity>> freshResults = new ArrayList<>();
+        for(FeedSubscription subscription : mScheduler.getSubscriptions()) {
+            if(!dueFeeds.contains(subscription)) {
+                Map<String, NewsEntity> feedState = getFeedState(subscription.getFeed());
+                if(feedState != null) {
+                    freshResults.add(new ArrayList<>(feedState.values()));
+                } else {
+                    dueFeeds.add(subscription);
+                }
+            }
+        }
+        if(dueFeeds.isEmpty()) {
+            // the cache already holds these news.
+            Log.d(TAG,"All feeds are fresh");
+            return NewsMerger.merge(freshResults);
+        }
+        Log.d(TAG,"Fetching "+dueFeeds.size()+" feeds, "+freshResults.size()+" are fresh");
+
+        // all the requests of this refresh, including retries, share one deadline.
+        RetryPolicy.Budget budget = mRetryPolicy.newBudget();
+        List<ArrayList<NewsEntity>> feedResults = dueFeeds.size() == 1 ?
+                fetchSingleFeed(dueFeeds.get(0), budget, now) : fetchFeedsConcurrently(dueFeeds, budget, now);
+        // the fetch times of all the feeds of this refresh in one write.
+        mScheduler.save();
+
+        if(feedResults.isEmpty()) {
+            if(freshResults.isEmpty()) {
+                // no feed could be fetched
+                return null;
+            }
+            // the due feeds failed, show the fresh ones. The cache keeps the news of all the feeds.
+            Log.d(TAG,"No due feed could be fetched, showing the fresh feeds");
+            return NewsMerger.merge(freshResults);
+        }
+        feedResults.addAll(freshResults);
+        ArrayList<NewsEntity> newsEntityList = NewsMerger.merge(feedResults);
+
         /**
-         * Fetch using the first URL
+         * Once a data is fetched from the server we will have to update the cache so that it always
+         * contains the latest news. The merged list is stored, so that the cache holds all the feeds.
          */
-        newsEntityList = fetchNewsListInternal(URL_1);
+        mNewsDB.writeSnapshot(newsEntityList);
+        return newsEntityList;
+    }
+
+    @NotNull
+    private List<ArrayList<NewsEntity>> fetchSingleFeed(FeedSubscription subscription, RetryPolicy.Budget budget,
+                                                        long now) {
+        List<ArrayList<NewsEntity>> feedResults = new ArrayList<>(1);
+        ArrayList<NewsEntity> newsEntityList = fetchSubscription(subscription, budget, now);
+        if(newsEntityList != null) {
+            feedResults.add(newsEntityList);
+        }
+        return feedResults;
+    }
+
+    /**
+     * Fetch the feeds on the shared pool and wait until all of them are done. Feeds that failed are
+     * left out of the result. The feeds are queued in order, the ones with the highest priority first.
+     */
+    @NotNull
+    private List<ArrayList<NewsEntity>> fetchFeedsConcurrently(List<FeedSubscription> subscriptions,
+                                                               final RetryPolicy.Budget budget, final long now) {
+        List<Callable<ArrayList<NewsEntity>>> tasks = new ArrayList<>(subscriptions.size());
+        for(final FeedSubscription subscription : subscriptions) {
+            tasks.add(new Callable<ArrayList<NewsEntity>>() {
+                @Override
+                public ArrayList<NewsEntity> call() {
+                    return fetchSubscription(subscription, budget, now);
+                }
+            });
+        }
+
+        List<ArrayList<NewsEntity>> feedResults = new ArrayList<>(subscriptions.size());
+        try {
+            for(Future<ArrayList<NewsEntity>> future : getFeedExecutor(mMaxParallelFeeds).invokeAll(tasks)) {
+                try {
+                    ArrayList<NewsEntity> newsEntityList = future.get();
+                    if(newsEntityList != null) {
+                        feedResults.add(newsEntityList);
+                    }
+                } catch (ExecutionException e) {
+                    Log.e(TAG,"Feed fetch failed "+e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG,"Feed fetch interrupted");
+            Thread.currentThread().interrupt();
+        }
+        return feedResults;
+    }
+
+    private static synchronized ThreadPoolExecutor getFeedExecutor(int maxParallelFeeds) {
+        if(sFeedExecutor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            sFeedExecutor = new ThreadPoolExecutor(maxParallelFeeds, maxParallelFeeds, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "FeedFetchThread-" + count.incrementAndGet());
+                }
+            });
+            sFeedExecutor.allowCoreThreadTimeOut(true);
+        } else if(sFeedExecutor.getMaximumPoolSize() != maxParallelFeeds) {
+            // the limit was reconfigured. The order matters so that core <= maximum at all times.
+            if(maxParallelFeeds > sFeedExecutor.getMaximumPoolSize()) {
+                sFeedExecutor.setMaximumPoolSize(maxParallelFeeds);
+                sFeedExecutor.setCorePoolSize(maxParallelFeeds);
+            } else {
+                sFeedExecutor.setCorePoolSize(maxParallelFeeds);
+                sFeedExecutor.setMaximumPoolSize(maxParallelFeeds);
+            }
+        }
+        return sFeedExecutor;
+    }
+
+    /**
+     * Fetch a subscribed feed and tell the scheduler.
+     * @param subscription    The feed to fetch.
+     * @param budget    The time budget of the refresh.
+     * @param now    The time of the refresh.
+     * @return    The list of news of the feed, null if none of the mirrors responded.
+     */
+    @Nullable
+    private ArrayList<NewsEntity> fetchSubscription(FeedSubscription subscription, RetryPolicy.Budget budget,
+                                                    long now) {
+        FeedEndpoint feed = subscription.getFeed();
+        AtomicLong responseLength = new AtomicLong();
+        ArrayList<NewsEntity> newsEntityList = fetchFeed(feed, budget, responseLength);
         if(newsEntityList == null) {
-            /**
-             * If unsuccessful, retry using the second url.
-             */
-            newsEntityList = fetchNewsListInternal(URL_2);
+            return null;
         }
+        mScheduler.onFeedFetched(subscription, now, responseLength.get());
+        if(subscription.isScheduled() && !feed.isDeltaSync()) {
+            // the next refreshes may leave the feed out and use these news.
+            setFeedState(feed, DeltaSync.index(newsEntityList), newsEntityList);
+        }
+        return newsEntityList;
+    }
 
+    /**
+     * Fetch one feed, trying its mirrors in order until one of them responds.
+     * @param feed    The feed to fetch.
+     * @param budget    The time budget of the refresh.
+     * @param responseLength    Incremented by the length of the responses.
+     * @return    The list of news of the feed, null if none of the mirrors responded.
+     */
+    @Nullable
+    private ArrayList<NewsEntity> fetchFeed(FeedEndpoint feed, RetryPolicy.Budget budget,
+                                            AtomicLong responseLength) {
+        Log.d(TAG,"fetchFeed "+feed);
+        Map<String, NewsEntity> feedState = feed.isDeltaSync() ? getFeedState(feed) : null;
+        for(String url : feed.getMirrorUrls()) {
+            if(budget.remainingMillis() <= 0) {
+                // the deadline of the refresh has passed, don't try the other mirrors.
+                break;
+            }
+            ArrayList<NewsEntity> newsEntityList = feed.isDeltaSync() ?
+                    fetchDeltaSync(feed, url, feedState, budget, responseLength) :
+                    fetchNewsListInternal(url, new NetworkResponseProcessor(), budget, responseLength);
+            if(newsEntityList != null) {
+                return newsEntityList;
+            }
+            // If unsuccessful, retry using the next url.
+        }
+        return null;
+    }
+
+    /**
+     * Fetch a feed with delta sync. If the server sends a delta that does not apply to the news the feed
+     * sent last, the feed is fetched again in full.
+     * @param feedState    The news the feed sent last, null if there are none.
+     * @return    The list of news of the feed, null if it could not be fetched.
+     */
+    @Nullable
+    private ArrayList<NewsEntity> fetchDeltaSync(FeedEndpoint feed, String url,
+                                                 @Nullable Map<String, NewsEntity> feedState,
+                                                 RetryPolicy.Budget budget, AtomicLong responseLength) {
+        DeltaResponseProcessor responseProcessor = new DeltaResponseProcessor(feedState);
+        String syncUrl = feedState == null ? url : DeltaSync.Cursor.of(feedState).appendTo(url);
+        ArrayList<NewsEntity> newsEntityList = fetchNewsListInternal(syncUrl, responseProcessor, budget,
+                responseLength);
+        if(newsEntityList == null && responseProcessor.isBaseStale()) {
+            Log.d(TAG,"Fetching "+feed+" in full");
+            responseProcessor = new DeltaResponseProcessor(null);
+            newsEntityList = fetchNewsListInternal(url, responseProcessor, budget, responseLength);
+        }
+        if(newsEntityList != null) {
+            setFeedState(feed, responseProcessor.getSynced(), newsEntityList);
+        }
         return newsEntityList;
     }
 
+    @Nullable
+    private Map<String, NewsEntity> getFeedState(FeedEndpoint feed) {
+        synchronized (sFeedStates) {
+            if(sFeedStates.containsKey(feed.getName())) {
+                return sFeedStates.get(feed.getName());
+            }
+        }
+        // not fetched in this process yet, the cache has the news of the last fetch.
+        Map<String, NewsEntity> feedState = null;
+        String storedState = mNewsDB.readFeedState(feed.getName());
+        if(storedState != null) {
+            try {
+                feedState = DeltaSync.index(NewsDecoder.decode(new JSONArray(storedState)));
+            } catch (JSONException e) {
+                Log.e(TAG,"Cannot read the state of "+feed+" "+e.getMessage());
+            }
+        }
+        synchronized (sFeedStates) {
+            if(!sFeedStates.containsKey(feed.getName())) {
+                sFeedStates.put(feed.getName(), feedState);
+            }
+            return sFeedStates.get(feed.getName());
+        }
+    }
+
+    private void setFeedState(FeedEndpoint feed, Map<String, NewsEntity> feedState,
+                              List<NewsEntity> newsEntityList) {
+        synchronized (sFeedStates) {
+            sFeedStates.put(feed.getName(), feedState);
+        }
+        mNewsDB.writeFeedState(feed.getName(), newsEntityList);
+    }
+
     /**
      * The processing of data from the server is broken into two parts. The first task is fetch from
      * the server and the second task is to parse the response of the server and create list of news
      * entity.
      * For this we have used the chain of responsibility design pattern.
      *
-     * Also note, once a data is fetched from the server we will have to update the cache so that it
-     * always contains the latest news. The newsdb controller is used for this purpose.
-     *
      * @param url    The url from which data needs to be sourced.
+     * @param responseProcessor    Parses the response, the second task.
+     * @param budget    The time budget of the refresh, used for retrying the request.
+     * @param responseLength    Incremented by the length of the response.
      * @return    The list of news entity which is needed by the viewmodel.
      */
-    private ArrayList<NewsEntity> fetchNewsListInternal(String url) {
+    private ArrayList<NewsEntity> fetchNewsListInternal(String url, NetworkProcessor responseProcessor,
+                                                        RetryPolicy.Budget budget, AtomicLong responseLength) {
         ArrayList<NewsEntity> newsEntityList;
 
         // chain of responsibility pattern
-        NetworkProcessor networkProcessor = new NetworkRequestProcessor(mNewsDB);
-        networkProcessor.setNext(new NetworkResponseProcessor(mNewsDB));
+        NetworkRequestProcessor networkProcessor = new NetworkRequestProcessor(budget);
+        networkProcessor.setNext(responseProcessor);
         newsEntityList = networkProcessor.execute(url);
+        responseLength.addAndGet(networkProcessor.getResponseLength());
 
         return newsEntityList;
     }
 
     /**
-     * clean up the cache db controller
+     * release the cache db controller
      */
     @Override
     public void close() {
@@ -0,0 +1,282 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import news.agoda.com.sample.AppConstants;
+
+/**
+ * A disk cache of the pages of full stories, by story url, so that a story can be read offline.
+ *
+ * The cache holds at most a number of bytes. When a page is added beyond that, the least recently used
+ * pages are deleted. The order of use is kept in memory and on disk, as the modification time of the
+ * files, so it survives a restart. Every page is one file, its content type followed by the body, written
+ * to a temporary file first so that a page is either complete or missing.
+ *
+ * The directory is scanned the first time the cache is used for I/O, or with load, not when the cache is
+ * created. The cache can be used from any thread.
+ */
+public final class StoryPageCache {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + StoryPageCache.class.getSimpleName();
+
+    private static final String PAGE_SUFFIX = ".page";
+
+    private final File mDirectory;
+
+    private final long mMaxBytes;
+
+    // the size of the page files by name, the least recently used first. Guarded by this.
+    private final LinkedHashMap<String, Long> mPages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long mTotalBytes;
+
+    private boolean mIsLoaded;
+
+    /**
+     * A cached page.
+     */
+    public static final class Page {
+
+        private final String mContentType;
+
+        private final InputStream mBody;
+
+        Page(String contentType, InputStream body) {
+            mContentType = contentType;
+            mBody = body;
+        }
+
+        /**
+         * @return    the mime type of the page, e.g. "text/html".
+         */
+        @NotNull
+        public String getMimeType() {
+            int separator = mContentType.indexOf(';');
+            return (separator < 0 ? mContentType : mContentType.substring(0, separator)).trim();
+        }
+
+        /**
+         * @return    the charset of the page, or null if the server did not tell.
+         */
+        @Nullable
+        public String getEncoding() {
+            for (String parameter : mContentType.split(";")) {
+                String[] nameValue = parameter.trim().split("=", 2);
+                if (nameValue.length == 2 && nameValue[0].trim().equalsIgnoreCase("charset")) {
+                    return nameValue[1].trim().replace("\"", "");
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return    the body of the page, to be closed by the caller.
+         */
+        @NotNull
+        public InputStream getBody() {
+            return mBody;
+        }
+    }
+
+    /**
+     * Create the cache. This does not do any I/O.
+     * @param directory    the directory of the cache, created when the cache is loaded.
+     * @param maxBytes    the maximum size of the pages.
+     */
+    public StoryPageCache(@NotNull File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Read which pages the cache has, unless this was done already. This call is blocking.
+     */
+    public synchronized void load() {
+        if (mIsLoaded) {
+            return;
+        }
+        mIsLoaded = true;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.e(TAG, "Cannot create " + mDirectory);
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(PAGE_SUFFIX)) {
+                mPages.put(file.getName(), file.length());
+                mTotalBytes += file.length();
+            } else {
+                // a write that did not complete.
+                file.delete();
+            }
+        }
+        trim();
+    }
+
+    /**
+     * @return    true if the page of a story is cached. This does not do any I/O, so it is false for all
+     *            the stories until the cache is loaded.
+     */
+    public synchronized boolean contains(@NotNull String url) {
+        return mPages.containsKey(fileNameOf(url));
+    }
+
+    /**
+     * Open the cached page of a story, which becomes the most recently used.
+     * @return    the page, or null if it is not cached.
+     */
+    @Nullable
+    public Page open(@NotNull String url) {
+        String fileName = fileNameOf(url);
+        File file = new File(mDirectory, fileName);
+        synchronized (this) {
+            load();
+            if (mPages.get(fileName) == null) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            String contentType = in.readUTF();
+            return new Page(contentType, in);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read cached story " + e.getMessage());
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException closeException) {
+                    // already failed.
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Mark the page of a story as recently used, so that it is not evicted soon.
+     * @return    true if the page is cached.
+     */
+    public boolean touch(@NotNull String url) {
+        String fileName = fileNameOf(url);
+        synchronized (this) {
+            load();
+            if (mPages.get(fileName) == null) {
+                return false;
+            }
+            new File(mDirectory, fileName).setLastModified(System.currentTimeMillis());
+            return true;
+        }
+    }
+
+    /**
+     * Add or replace the page of a story, and evict the least recently used pages beyond the size of the
+     * cache.
+     * @param url    the url of the story.
+     * @param contentType    the content type sent by the server.
+     * @param body    the page.
+     */
+    public void put(@NotNull String url, @NotNull String contentType, @NotNull byte[] body) {
+        String fileName = fileNameOf(url);
+        // creates the directory.
+        load();
+        File tmpFile = new File(mDirectory, fileName + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tmpFile));
+            out.writeUTF(contentType);
+            out.write(body);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write story " + e.getMessage());
+            tmpFile.delete();
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // already failed.
+                }
+            }
+        }
+        synchronized (this) {
+            File file = new File(mDirectory, fileName);
+            if (!tmpFile.renameTo(file)) {
+                Log.e(TAG, "Cannot add story " + url);
+                tmpFile.delete();
+                return;
+            }
+            Long previous = mPages.put(fileName, file.length());
+            mTotalBytes += file.length() - (previous == null ? 0 : previous);
+            trim();
+        }
+    }
+
+    /**
+     * @return    the size of the cached pages.
+     */
+    public synchronized long getTotalBytes() {
+        load();
+        return mTotalBytes;
+    }
+
+    /**
+     * @return    the number of cached pages.
+     */
+    public synchronized int size() {
+        load();
+        return mPages.size();
+    }
+
+    private synchronized void trim() {
+        Iterator<Map.Entry<String, Long>> leastRecent = mPages.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && leastRecent.hasNext()) {
+            Map.Entry<String, Long> entry = leastRecent.next();
+            new File(mDirectory, entry.getKey()).delete();
+            mTotalBytes -= entry.getValue();
+            leastRecent.remove();
+        }
+    }
+
+    /**
+     * The file of a page is named after a 64 bit hash of the url, urls are too long for file names.
+     */
+    private static String fileNameOf(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        return String.format(Locale.ROOT, "%016x", hash) + PAGE_SUFFIX;
+    }
+}
@@ -0,0 +1,268 @@
+package news.agoda.com.sample.model;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * Downloads the pages of the full stories of the newest news into the story page cache, so that they can
+ * be read offline and open without a page load.
+ *
+ * Every snapshot of news fetched from the server is told to the prefetcher, which downloads the pages of
+ * its TOP_STORIES newest news that are not cached yet, one after the other on a background thread. Pages
+ * are only downloaded while prefetching is allowed, i.e. on an unmetered network; the connectivity is
+ * tracked by the viewmodel. If it stops being allowed, the prefetch stops after the current page and
+ * goes on once it is allowed again.
+ *
+ * There is one prefetcher per process (singleton).
+ */
+public class StoryPrefetcher implements NewsDataBaseController.SnapshotListener {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + StoryPrefetcher.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "stories";
+
+    /**
+     * The number of newest news whose stories are prefetched.
+     */
+    static final int TOP_STORIES = 20;
+
+    /**
+     * The size of the cache. A story page is typically a few hundred kilobytes.
+     */
+    private static final long MAX_CACHE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Larger pages are not cached, they would evict many others.
+     */
+    static final int MAX_PAGE_BYTES = 2 * 1024 * 1024;
+
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private static StoryPrefetcher sInstance;
+
+    private final StoryPageCache mCache;
+
+    /**
+     * Downloads the pages, one at a time.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * True while a prefetch is queued or running.
+     */
+    private final AtomicBoolean mIsScheduled = new AtomicBoolean();
+
+    /**
+     * The story urls of the newest news of the last snapshot. Guarded by this.
+     */
+    private List<String> mTopStoryUrls = Collections.emptyList();
+
+    private volatile boolean mIsAllowed;
+
+    StoryPrefetcher(@NotNull StoryPageCache cache) {
+        mCache = cache;
+        mExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "StoryPrefetchThread");
+                // the pages are not urgent, leave the cpu to the ui.
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the prefetcher of the process. The cache is loaded in the background the first time.
+     * @param filesDirPath    path to the files directory, where the pages are cached.
+     * @return    the prefetcher.
+     */
+    @NotNull
+    public static synchronized StoryPrefetcher getInstance(@NotNull String filesDirPath) {
+        if (sInstance == null) {
+            sInstance = new StoryPrefetcher(new StoryPageCache(new File(filesDirPath, DIRECTORY_NAME),
+                    MAX_CACHE_BYTES));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Load the cache in the background, before the first prefetch.
+     */
+    void load() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCache.load();
+            }
+        });
+    }
+
+    /**
+     * @return    the cache the pages are prefetched into.
+     */
+    @NotNull
+    public StoryPageCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Allow or stop prefetching, e.g. when the network becomes unmetered or metered.
+     */
+    public void setAllowed(boolean isAllowed) {
+        if (isAllowed != mIsAllowed) {
+            Log.d(TAG, "prefetch allowed " + isAllowed);
+        }
+        mIsAllowed = isAllowed;
+        if (isAllowed) {
+            schedule();
+        }
+    }
+
+    @Override
+    public void onSnapshotWritten(List<NewsEntity> newsList) {
+        // the snapshot is ordered newest first.
+        List<String> urls = new ArrayList<>(TOP_STORIES);
+        for (int i = 0; i < newsList.size() && urls.size() < TOP_STORIES; i++) {
+            String url = newsList.get(i).getUrl();
+            if (url != null && (url.startsWith("http://") || url.startsWith("https://"))) {
+                urls.add(url);
+            }
+        }
+        synchronized (this) {
+            mTopStoryUrls = urls;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (mIsAllowed && mIsScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // a snapshot written from now on schedules the next prefetch.
+                    mIsScheduled.set(false);
+                    prefetchTopStories();
+                }
+            });
+        }
+    }
+
+    /**
+     * Download the pages of the top stories which are not cached. Only called on the prefetch thread.
+     */
+    private void prefetchTopStories() {
+        List<String> urls;
+        synchronized (this) {
+            urls = mTopStoryUrls;
+        }
+        int fetched = 0;
+        // the oldest first, so that the newest stories are the most recently used in the cache.
+        for (int i = urls.size() - 1; i >= 0; i--) {
+            if (!mIsAllowed) {
+                Log.d(TAG, "prefetch stopped, " + fetched + " stories fetched");
+                return;
+            }
+            String url = urls.get(i);
+            if (mCache.touch(url)) {
+                continue;
+            }
+            if (fetchPage(url)) {
+                fetched++;
+            }
+        }
+        Log.d(TAG, fetched + " stories fetched, cache has " + mCache.size() + " stories, "
+                + mCache.getTotalBytes() + " bytes");
+    }
+
+    /**
+     * Download the page of a story into the cache.
+     * @return    true if the page was cached.
+     */
+    private boolean fetchPage(String url) {
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL(url).openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            con.setReadTimeout(READ_TIMEOUT_MS);
+            if (con.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.e(TAG, "HTTP " + con.getResponseCode() + " for story " + url);
+                return false;
+            }
+            String contentType = con.getContentType();
+            if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("text/html")) {
+                // only pages are rendered in the app.
+                return false;
+            }
+            byte[] body = readBody(con.getInputStream());
+            if (body == null) {
+                Log.d(TAG, "Story too large " + url);
+                return false;
+            }
+            mCache.put(url, contentType, body);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot prefetch story " + e.getMessage());
+            return false;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @return    the body, or null if it is larger than MAX_PAGE_BYTES.
+     */
+    private static byte[] readBody(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_PAGE_BYTES) {
+                    return null;
+                }
+            }
+            return body.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Wait until the scheduled prefetch is done. For tests.
+     */
+    void flush() throws Exception {
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
@@ -7,14 +7,23 @@ import android.util.Log;
 
 import news.agoda.com.sample.AppConstants;
 import news.agoda.com.sample.R;
+import news.agoda.com.sample.UiPerfMonitor;
+import news.agoda.com.sample.viewmodel.ArticleRegistry;
+import news.agoda.com.sample.viewmodel.NewsRowModel;
 
 /**
  * The detail view activity is launched in from the single pane layout of the main activity. It uses
- * the detail fragment to show the details of the selected news.
+ * the detail fragment to show the details of the selected news. The news is identified by its id
+ * (EXTRA_ARTICLE_ID) in the article registry.
  */
 public class DetailViewActivity extends AppCompatActivity {
     private static final String TAG = AppConstants.APP_TAG +"."+DetailViewActivity.class.getSimpleName();
 
+    /**
+     * The id of the news to show, a long extra.
+     */
+    public static final String EXTRA_ARTICLE_ID = "articleId";
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -26,7 +35,29 @@ public class DetailViewActivity extends AppCompatActivity {
         FragmentDetail detail = (FragmentDetail) getSupportFragmentManager().findFragmentById(R.id.fragmentDetails);
 
         Intent intent = getIntent();
-        detail.updateUI(intent.getExtras());
+        NewsRowModel newsRow = ArticleRegistry.getInstance().get(intent.getLongExtra(EXTRA_ARTICLE_ID, 0));
+        if (newsRow == null) {
+            /**
+             * The registry is in memory. If the process was restarted while the details were shown, the
+             * news is gone; go back to the list of news.
+             */
+            Log.d(TAG, "News not found");
+            finish();
+            return;
+        }
+        detail.updateUI(newsRow);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        UiPerfMonitor.getInstance().startTracking(this);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        UiPerfMonitor.getInstance().stopTracking(this);
     }
 
 }
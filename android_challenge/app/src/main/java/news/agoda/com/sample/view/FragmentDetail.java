@@ -4,24 +4,33 @@ import android.content.Intent;
 import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import com.facebook.drawee.backends.pipeline.Fresco;
 import com.facebook.drawee.interfaces.DraweeController;
-import com.facebook.imagepipeline.request.ImageRequest;
 
 import news.agoda.com.sample.AppConstants;
 import news.agoda.com.sample.R;
+import news.agoda.com.sample.UiPerfMonitor;
 import news.agoda.com.sample.databinding.FragmentDetailBinding;
+import news.agoda.com.sample.model.RelatedNewsEngine;
+import news.agoda.com.sample.model.RelatedNewsIndex;
+import news.agoda.com.sample.model.StoryPageCache;
+import news.agoda.com.sample.model.StoryPrefetcher;
+import news.agoda.com.sample.viewmodel.NewsRowModel;
 
 /**
  * The details fragment shows more information and a short summary of the news the user clicked.
  */
-public class FragmentDetail extends Fragment {
+public class FragmentDetail extends Fragment implements RelatedNewsEngine.IndexListener {
 
     private static final String TAG = AppConstants.APP_TAG + "." + FragmentDetail.class.getSimpleName();
 
@@ -39,6 +48,8 @@ public class FragmentDetail extends Fragment {
      */
     private FragmentDetailBinding mFragmentDetailBinding;
 
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -50,7 +61,8 @@ public class FragmentDetail extends Fragment {
         mFragmentDetailBinding = DataBindingUtil.inflate(
                 inflater, R.layout.fragment_detail, container, false);
         /**
-         * On click of the Full Story button the user will launch the web browser.
+         * On click of the Full Story button the user will see the full story, in the app if it was
+         * prefetched or in the web browser.
          */
         mFragmentDetailBinding.fullStoryLink.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -61,34 +73,67 @@ public class FragmentDetail extends Fragment {
         return mFragmentDetailBinding.getRoot();
     }
 
+    /**
+     * While started, the related news are shown again whenever their index changes, so that a news shown
+     * before the index was read or built gets its related news once it is.
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        getRelatedNewsEngine().addIndexListener(this);
+        if (!TextUtils.isEmpty(mStoryURL)) {
+            // the index may have changed while stopped.
+            showRelatedNews();
+        }
+    }
+
+    @Override
+    public void onStop() {
+        getRelatedNewsEngine().removeIndexListener(this);
+        super.onStop();
+    }
+
+    @Override
+    public void onRelatedNewsIndexed() {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isAdded() && mFragmentDetailBinding != null && !TextUtils.isEmpty(mStoryURL)) {
+                    showRelatedNews();
+                }
+            }
+        });
+    }
+
     /**
      * Show the details of the news on the UI.
      *
-     * @param extras      Contains the information to be populated on the UI.
+     * @param newsRow      The news to show.
      */
-    public void updateUI(Bundle extras) {
+    public void updateUI(NewsRowModel newsRow) {
         Log.d(TAG, "updateUI");
-        mStoryURL = extras.getString("storyURL");
-        mTitle = extras.getString("title");
-        mSummary = extras.getString("summary");
+        long updateStart = System.nanoTime();
+        mStoryURL = newsRow.getStoryURL();
+        mTitle = newsRow.getTitle();
+        mSummary = newsRow.getSummary();
 
         mFragmentDetailBinding.setDetailView(this);
 
-        String imageURL = extras.getString("imageUrl");
-        if(imageURL == null) {
-            /**
-             * If URL is unavailable use an empty string. This will ensure that the DraweeController
-             * displays the place holder image for this case.
-             */
-            imageURL = "";
-        }
+        /**
+         * The request is the one the list prefetched when the row was pressed, so the image is usually
+         * in the cache already. If there is no image, the DraweeController displays the place holder.
+         */
+        long controllerStart = System.nanoTime();
         DraweeController draweeController = Fresco.newDraweeControllerBuilder()
-                .setImageRequest(ImageRequest.fromUri(Uri.parse(imageURL)))
+                .setImageRequest(newsRow.getHeroRequest())
                 .setOldController(mFragmentDetailBinding.newsImage.getController()).build();
 
         mFragmentDetailBinding.newsImage.setController(draweeController);
+        UiPerfMonitor.getInstance().recordSince(UiPerfMonitor.DETAIL_IMAGE_CONTROLLER, controllerStart);
 
         makeAllViewsVisible();
+        showRelatedNews();
+        UiPerfMonitor.getInstance().recordSince(UiPerfMonitor.DETAIL_UPDATE, updateStart);
     }
 
     /**
@@ -103,12 +148,55 @@ public class FragmentDetail extends Fragment {
     }
 
     /**
-     * Open the web browser.
+     * Show the titles of the related news. They were computed in the background when the news were
+     * cached (see RelatedNewsEngine), so this is a lookup. Nothing is shown until they are, then they are
+     * shown by onRelatedNewsIndexed.
+     */
+    private void showRelatedNews() {
+        mFragmentDetailBinding.relatedNews.removeAllViews();
+        RelatedNewsIndex relatedIndex = getRelatedNewsEngine().getIndex();
+        int[] related = relatedIndex == null ? new int[0] : relatedIndex.getRelated(mStoryURL);
+        mFragmentDetailBinding.relatedHeader.setVisibility(related.length == 0 ? View.GONE : View.VISIBLE);
+        LayoutInflater inflater = LayoutInflater.from(getActivity());
+        for (int ordinal : related) {
+            final String storyURL = relatedIndex.getUrl(ordinal);
+            TextView titleView = (TextView) inflater.inflate(android.R.layout.simple_list_item_1,
+                    mFragmentDetailBinding.relatedNews, false);
+            titleView.setText(relatedIndex.getTitle(ordinal));
+            titleView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    openStory(storyURL);
+                }
+            });
+            mFragmentDetailBinding.relatedNews.addView(titleView);
+        }
+    }
+
+    private RelatedNewsEngine getRelatedNewsEngine() {
+        return RelatedNewsEngine.getInstance(getActivity().getFilesDir().toString());
+    }
+
+    /**
+     * Show the full story in the app if it was prefetched, so that it opens from the disk, even offline.
+     * Otherwise open the web browser.
      */
     public void onFullStoryClicked() {
         Log.d(TAG, "onFullStoryClicked");
-        Intent intent = new Intent(Intent.ACTION_VIEW);
-        intent.setData(Uri.parse(mStoryURL));
+        openStory(mStoryURL);
+    }
+
+    private void openStory(String storyURL) {
+        StoryPageCache storyCache = StoryPrefetcher.getInstance(getActivity().getFilesDir().toString())
+                .getCache();
+        Intent intent;
+        if (storyCache.contains(storyURL)) {
+            intent = new Intent(getActivity(), StoryActivity.class);
+            intent.putExtra(StoryActivity.EXTRA_STORY_URL, storyURL);
+        } else {
+            intent = new Intent(Intent.ACTION_VIEW);
+            intent.setData(Uri.parse(storyURL));
+        }
         startActivity(intent);
     }
 }
@@ -5,29 +5,44 @@ import android.arch.lifecycle.LifecycleOwner;
 import android.arch.lifecycle.LifecycleRegistry;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Trace;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-
-import com.facebook.drawee.backends.pipeline.Fresco;
-
-import java.util.ArrayList;
-import java.util.List;
+import android.view.ViewTreeObserver;
+import android.widget.Toast;
 
 import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.BuildConfig;
+import news.agoda.com.sample.NewsImagePrefetcher;
 import news.agoda.com.sample.NewsListAdapter;
 import news.agoda.com.sample.R;
+import news.agoda.com.sample.TitleLayoutCache;
+import news.agoda.com.sample.UiPerfMonitor;
 import news.agoda.com.sample.databinding.FragmentMainBinding;
-import news.agoda.com.sample.viewmodel.MediaEntity;
-import news.agoda.com.sample.viewmodel.NewsEntity;
+import news.agoda.com.sample.model.NewsFacets;
+import news.agoda.com.sample.model.ReadStateStore;
+import news.agoda.com.sample.viewmodel.ArticleRegistry;
+import news.agoda.com.sample.viewmodel.NewsRowModel;
 import news.agoda.com.sample.viewmodel.NewsViewModel;
+import news.agoda.com.sample.viewmodel.PagedNewsList;
+import news.agoda.com.sample.viewmodel.StartupOrchestrator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import static android.content.res.Configuration.ORIENTATION_LANDSCAPE;
 
@@ -43,10 +58,15 @@ import static android.content.res.Configuration.ORIENTATION_LANDSCAPE;
  * member variables will start with s. Constants are all capitals.
  */
 public class MainActivity extends AppCompatActivity implements LifecycleOwner,
-        Observer<ArrayList<NewsEntity>> {
+        Observer<PagedNewsList> {
 
     private static final String TAG = AppConstants.APP_TAG + "." + MainActivity.class.getSimpleName();
 
+    /**
+     * Number of rows past the visible ones whose images are loaded in advance.
+     */
+    private static final int PREFETCH_ROWS_AHEAD = 6;
+
     /**
      * Indicates if a dual pane layout is setup. We use dual pane for tablets in landscape mode, otherwise
      * single pane layout. In a dual pane layout the news list and the details view are shown side by side.
@@ -74,6 +94,17 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
      */
     private FragmentDetail mDetail;
 
+    /**
+     * The adapter of the list of news. It is created once and given each new list of news, so that
+     * only the rows that changed are rebound.
+     */
+    private NewsListAdapter mNewsAdapter;
+
+    /**
+     * Loads the images of the rows ahead of the scroll and of the row the user touches.
+     */
+    private NewsImagePrefetcher mImagePrefetcher;
+
     /**
      * For Android lifecycle callbacks
      */
@@ -85,9 +116,9 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
         Log.d(TAG, "onCreate");
         super.onCreate(savedInstanceState);
 
-        Fresco.initialize(this);
-
+        Trace.beginSection("startup.inflate");
         setContentView(R.layout.activity_main);
+        Trace.endSection();
 
         mMain = (FragmentMain) getSupportFragmentManager().findFragmentById(R.id.fragmentMain);
         mDetail = (FragmentDetail) getSupportFragmentManager().findFragmentById(R.id.fragmentDetails);
@@ -108,6 +139,53 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
         }
 
 
+        /**
+         * Set up the list of news. On click of a news item we show its details.
+         */
+        mNewsAdapter = new NewsListAdapter(TitleLayoutCache.getInstance(this),
+                ReadStateStore.getInstance(getFilesDir().toString()),
+                new NewsListAdapter.OnNewsClickListener() {
+            @Override
+            public void onNewsClicked(NewsRowModel newsRow) {
+                if (!mIsDualPaneLayout) {
+                    /**
+                     * If we are not supporting a dual pane layout, we will start the next activity
+                     * for the details.
+                     */
+                    startNextActivity(newsRow);
+                } else {
+                    /**
+                     * For dual pane layout, we will just update the details fragment with the information
+                     * from the clicked news item.
+                     */
+                    updateDetailsFragment(newsRow);
+                }
+            }
+        });
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        mFragmentMainBinding.newsList.setLayoutManager(layoutManager);
+        mFragmentMainBinding.newsList.addItemDecoration(
+                new DividerItemDecoration(this, layoutManager.getOrientation()));
+        mFragmentMainBinding.newsList.setAdapter(mNewsAdapter);
+        mImagePrefetcher = new NewsImagePrefetcher(mNewsAdapter, layoutManager, PREFETCH_ROWS_AHEAD,
+                getResources().getDisplayMetrics().density);
+        mImagePrefetcher.attach(mFragmentMainBinding.newsList);
+
+        /**
+         * Report when the first news row is drawn, to measure the start time of the app.
+         */
+        mFragmentMainBinding.newsList.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mFragmentMainBinding.newsList.getChildCount() > 0) {
+                    StartupOrchestrator.getInstance().onFirstRowDrawn();
+                    mFragmentMainBinding.newsList.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                return true;
+            }
+        });
+
         /**
          * The MainActivity will observe changes to the list of news and update the UI accordingly.
          * We are going to register and set up the callbacks from the viewmodel.
@@ -128,7 +206,8 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
 
         /**
          * Observe for change is internet connection. If disconnected, we would show to the user -
-         * he is presently offline.
+         * they are presently offline. The connectivity monitor updates this as soon as the connection
+         * changes, and refreshes the news once the connection is back.
          */
         mNewsViewModel.getOfflineStatus().observe(MainActivity.this, new Observer<Boolean>() {
             @Override
@@ -141,6 +220,20 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
             }
         });
 
+        /**
+         * Tell the user how many news were published since they last looked at the news.
+         */
+        mNewsViewModel.getNewSinceLastOpen().observe(MainActivity.this, new Observer<Integer>() {
+            @Override
+            public void onChanged(@Nullable Integer count) {
+                if (count != null && count > 0) {
+                    Toast.makeText(MainActivity.this, getResources().getQuantityString(
+                            R.plurals.new_since_last_open, count, count), Toast.LENGTH_SHORT).show();
+                    mNewsViewModel.onNewSinceLastOpenShown();
+                }
+            }
+        });
+
         /**
          * set the viewmodel to the layout for data binding
          */
@@ -152,7 +245,8 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
          * Fetch the list of news from the server if internet is available, otherwise fetch it from
          * the cache (file storage in internal memory). Also note, in case of configuration change we
          * will fetch the data always from the cache so that the refresh can happen quickly (data
-         * persistence across configuration changes).
+         * persistence across configuration changes). When the process just started, the fetch is
+         * already in progress (see StartupOrchestrator) and the viewmodel takes it over.
          */
         // if configuration changed then fetch from cache. (server calls are expensive)
         mNewsViewModel.fetchNewsList(savedInstanceState != null);
@@ -160,19 +254,23 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
     }
 
     @Override
-    public void onResume() {
-        Log.d(TAG, "onResume");
+    protected void onResume() {
         super.onResume();
-        /**
-         * Update the UI to show if we are still connected to the internet.
-         */
-        mNewsViewModel.isInternetAccessAvailable();
+        UiPerfMonitor.getInstance().startTracking(this);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        UiPerfMonitor.getInstance().stopTracking(this);
     }
 
     @Override
     public void onDestroy() {
         Log.d(TAG, "onDestroy");
         super.onDestroy();
+        mImagePrefetcher.detach();
+        mNewsAdapter.detach();
         /**
          * If the user is leaving the activity clean up the cache manager instance (newsDB object).
          * However, if a configuration change occurs we will not destroy the cache manager as right
@@ -193,6 +291,34 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
         Log.d(TAG, "onCreateOptionsMenu");
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        // the performance numbers are for developers.
+        menu.findItem(R.id.perf_stats).setVisible(BuildConfig.DEBUG);
+
+        /**
+         * The news are searched as the user types. Closing the search shows all the news again.
+         */
+        MenuItem searchItem = menu.findItem(R.id.search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        String searchQuery = mNewsViewModel.getSearchQuery();
+        if (!searchQuery.isEmpty()) {
+            // the activity was recreated during a search.
+            searchItem.expandActionView();
+            searchView.setQuery(searchQuery, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mNewsViewModel.setSearchQuery(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mNewsViewModel.setSearchQuery(newText);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -210,6 +336,18 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
              */
             mNewsViewModel.fetchNewsList(false);
             return true;
+        } else if (id == R.id.filter) {
+            showFilterDialog();
+            return true;
+        } else if (id == R.id.perf_stats) {
+            String dump = UiPerfMonitor.getInstance().dump();
+            Log.i(TAG, "Performance stats\n" + dump);
+            new AlertDialog.Builder(this)
+                    .setTitle(R.string.perf_stats)
+                    .setMessage(dump)
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
@@ -225,10 +363,10 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
     /**
      * Called after a list of news is fetched from the server or the cache.
      *
-     * @param newsEntities    The list of news
+     * @param newsList    The list of news
      */
     @Override
-    public void onChanged(final ArrayList<NewsEntity> newsEntities) {
+    public void onChanged(PagedNewsList newsList) {
         Log.d(TAG, "onChanged");
         if(mNewsViewModel.isFetchInProgress()) {
             /**
@@ -240,53 +378,91 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
             return;
         }
         mFragmentMainBinding.ReadError.setVisibility(View.GONE);
-        NewsListAdapter mNewsAdapter = new NewsListAdapter(MainActivity.this,
-                R.layout.list_item_news, newsEntities);
         /**
-         * Refresh the list view with the latest news.
+         * Refresh the list view with the latest news. The adapter computes the changes on a background
+         * thread and rebinds only the rows that changed.
          */
-        mFragmentMainBinding.listview.setAdapter(mNewsAdapter);
+        mNewsAdapter.submitList(newsList);
 
-        if (newsEntities.size() == 0) {
+        if (newsList.size() == 0 && !newsList.isFiltered()) {
             Log.d(TAG,"Fetch failed");
             /**
-             * If the fetch failed we show a read message error.
+             * If the fetch failed we show a read message error. Refresh the data binding for the
+             * error message to be visible.
              */
-            mFragmentMainBinding.listview.setVisibility(View.GONE);
+            mFragmentMainBinding.newsList.setVisibility(View.GONE);
             mFragmentMainBinding.ReadError.setVisibility(View.VISIBLE);
+            mFragmentMainBinding.invalidateAll();
         } else {
             Log.d(TAG,"Fetch is successful");
             /**
-             * If the fetch is successful we show the list of news and set an on click listener for
-             * each news item on the list.
+             * If the fetch is successful we show the list of news.
              */
             mFragmentMainBinding.ReadError.setVisibility(View.GONE);
-            mFragmentMainBinding.listview.setVisibility(View.VISIBLE);
-            mFragmentMainBinding.listview.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-                @Override
-                public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                    if (!mIsDualPaneLayout) {
-                        /**
-                         * If we are not supporting a dual pane layout, we will start the next activity
-                         * for the details.
-                         */
-                        startNextActivity(newsEntities.get(position));
-                    } else {
-                        /**
-                         * For dual pane layout, we will just update the details fragment with the information
-                         * from the clicked news item.
-                         */
-                        updateDetailsFragment(newsEntities.get(position));
-                    }
+            mFragmentMainBinding.newsList.setVisibility(View.VISIBLE);
+        }
+    }
 
-                }
-            });
+    /**
+     * Let the user choose the sections and subsections of the news shown. Each value shows how many news
+     * it has among the news of the values selected in the other dimension.
+     */
+    private void showFilterDialog() {
+        final NewsFacets facets = mNewsViewModel.getFacets();
+        final List<String> sections = facets.getValues(NewsFacets.Dimension.SECTION);
+        final List<String> subsections = facets.getValues(NewsFacets.Dimension.SUBSECTION);
+        final Set<String> selectedSections =
+                new LinkedHashSet<>(mNewsViewModel.getSelectedValues(NewsFacets.Dimension.SECTION));
+        final Set<String> selectedSubsections =
+                new LinkedHashSet<>(mNewsViewModel.getSelectedValues(NewsFacets.Dimension.SUBSECTION));
+
+        long[] bits = facets.newBits();
+        List<String> labels = new ArrayList<>(sections.size() + subsections.size());
+        boolean[] checked = new boolean[sections.size() + subsections.size()];
+        facets.filter(new ArrayList<String>(), selectedSubsections, bits);
+        for (String section : sections) {
+            checked[labels.size()] = selectedSections.contains(section);
+            labels.add(getString(R.string.facet_value_count, section,
+                    facets.getCount(NewsFacets.Dimension.SECTION, section, bits)));
         }
-        /**
-         * Refresh the data binding for the UI changes to be visible.
-         */
-        mFragmentMainBinding.invalidateAll();
-        mFragmentMainBinding.setNewsViewModel(mNewsViewModel);
+        facets.filter(selectedSections, new ArrayList<String>(), bits);
+        for (String subsection : subsections) {
+            checked[labels.size()] = selectedSubsections.contains(subsection);
+            labels.add(getString(R.string.facet_value_count, subsection,
+                    facets.getCount(NewsFacets.Dimension.SUBSECTION, subsection, bits)));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.filter)
+                .setMultiChoiceItems(labels.toArray(new String[labels.size()]), checked,
+                        new DialogInterface.OnMultiChoiceClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                        // sections come first, then subsections.
+                        Set<String> values = which < sections.size() ? selectedSections : selectedSubsections;
+                        String value = which < sections.size() ? sections.get(which)
+                                : subsections.get(which - sections.size());
+                        if (isChecked) {
+                            values.add(value);
+                        } else {
+                            values.remove(value);
+                        }
+                    }
+                })
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mNewsViewModel.setFacetFilter(selectedSections, selectedSubsections);
+                    }
+                })
+                .setNeutralButton(R.string.filter_show_all, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mNewsViewModel.setFacetFilter(new ArrayList<String>(), new ArrayList<String>());
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
     }
 
     /**
@@ -298,47 +474,34 @@ public class MainActivity extends AppCompatActivity implements LifecycleOwner,
         if (isVisible) {
             mFragmentMainBinding.progressBar.setVisibility(View.VISIBLE);
             mFragmentMainBinding.FetchDataText.setVisibility(View.VISIBLE);
-            mFragmentMainBinding.listview.setVisibility(View.GONE);
+            mFragmentMainBinding.newsList.setVisibility(View.GONE);
         } else {
             mFragmentMainBinding.progressBar.setVisibility(View.GONE);
             mFragmentMainBinding.FetchDataText.setVisibility(View.GONE);
-            mFragmentMainBinding.listview.setVisibility(View.VISIBLE);
+            mFragmentMainBinding.newsList.setVisibility(View.VISIBLE);
         }
 
     }
 
     /**
-     * Start the DetailsActivity
-     * @param newsEntity    Information about the news the user clicked.
+     * Start the DetailsActivity. Only the id of the news is passed, the activity gets the news from the
+     * article registry.
+     * @param newsRow    Information about the news the user clicked.
      */
-    private void startNextActivity(NewsEntity newsEntity) {
+    private void startNextActivity(NewsRowModel newsRow) {
         Log.d(TAG, "startNextActivity");
         Intent intent = new Intent(this, DetailViewActivity.class);
-        intent.putExtra("title", newsEntity.getTitle());
-        intent.putExtra("summary", newsEntity.getSummary());
-        intent.putExtra("storyURL", newsEntity.getUrl());
-        List<MediaEntity> mediaList = newsEntity.getMediaEntityList();
-        if (mediaList.size() > 0) {
-            intent.putExtra("imageUrl", mediaList.get(mediaList.size() - 1).getUrl());
-        }
+        intent.putExtra(DetailViewActivity.EXTRA_ARTICLE_ID, ArticleRegistry.getInstance().register(newsRow));
         startActivity(intent);
     }
 
     /**
      * Update the Details fragment for a dual pane layout of a tablet.
-     * @param newsEntity    Information about the news the user clicked.
+     * @param newsRow    Information about the news the user clicked.
      */
-    private void updateDetailsFragment(NewsEntity newsEntity) {
+    private void updateDetailsFragment(NewsRowModel newsRow) {
         Log.d(TAG, "updateDetailsFragment");
-        Bundle bundle = new Bundle();
-        bundle.putString("title", newsEntity.getTitle());
-        bundle.putString("summary", newsEntity.getSummary());
-        bundle.putString("storyURL", newsEntity.getUrl());
-        List<MediaEntity> mediaList = newsEntity.getMediaEntityList();
-        if (mediaList.size() > 0) {
-            bundle.putString("imageUrl", mediaList.get(mediaList.size() - 1).getUrl());
-        }
-        mDetail.updateUI(bundle);
+        mDetail.updateUI(newsRow);
     }
 
 }
@@ -0,0 +1,75 @@
+package news.agoda.com.sample.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.StaticLayout;
+import android.util.AttributeSet;
+import android.view.View;
+
+import news.agoda.com.sample.TitleLayoutCache;
+
+/**
+ * Shows the title of a news in the list. Unlike a TextView it does not lay out its text itself: it takes
+ * the layout from the TitleLayoutCache, where it is usually prepared on a background thread already.
+ */
+public class NewsTitleView extends View {
+
+    private TitleLayoutCache mLayoutCache;
+
+    private CharSequence mTitle = "";
+
+    /**
+     * The layout of the title at the current width, null until measured.
+     */
+    private StaticLayout mLayout;
+
+    public NewsTitleView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mLayoutCache = TitleLayoutCache.getInstance(context);
+    }
+
+    /**
+     * Set the title to show.
+     * @param title    The title, null shows nothing.
+     */
+    public void setTitle(CharSequence title) {
+        if (title == null) {
+            title = "";
+        }
+        if (title.equals(mTitle)) {
+            return;
+        }
+        mTitle = title;
+        // there is no text for accessibility services to read otherwise.
+        setContentDescription(title);
+        mLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int textWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+        if (mLayout == null || mLayout.getWidth() != textWidth) {
+            mLayout = mLayoutCache.get(mTitle, textWidth);
+        }
+        int height = mLayout.getHeight() + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,93 @@
+package news.agoda.com.sample.view;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.R;
+import news.agoda.com.sample.model.StoryPageCache;
+import news.agoda.com.sample.model.StoryPrefetcher;
+
+/**
+ * Shows a full story whose page was prefetched (see StoryPrefetcher). The page itself is read from the
+ * story page cache, the images and style sheets it refers to are loaded by the web view as usual and are
+ * missing when offline. Links followed from the story are loaded from the network.
+ */
+public class StoryActivity extends AppCompatActivity {
+    private static final String TAG = AppConstants.APP_TAG +"."+StoryActivity.class.getSimpleName();
+
+    /**
+     * The url of the story to show, a string extra.
+     */
+    public static final String EXTRA_STORY_URL = "storyUrl";
+
+    private WebView mWebView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        Log.d(TAG,"OnCreate");
+        super.onCreate(savedInstanceState);
+
+        setContentView(R.layout.activity_story);
+
+        final String storyUrl = getIntent().getStringExtra(EXTRA_STORY_URL);
+        if (storyUrl == null) {
+            finish();
+            return;
+        }
+        final StoryPageCache storyCache = StoryPrefetcher.getInstance(getFilesDir().toString()).getCache();
+        mWebView = (WebView) findViewById(R.id.story_web_view);
+        mWebView.setWebViewClient(new WebViewClient() {
+            /**
+             * Called on a thread of the web view, so the page is read from the disk off the main thread.
+             */
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                if (request.isForMainFrame() && storyUrl.equals(request.getUrl().toString())) {
+                    StoryPageCache.Page page = storyCache.open(storyUrl);
+                    if (page != null) {
+                        Log.d(TAG, "Story read from the cache");
+                        return new WebResourceResponse(page.getMimeType(), page.getEncoding(), page.getBody());
+                    }
+                    // evicted since the story was opened, it is loaded from the network.
+                }
+                return super.shouldInterceptRequest(view, request);
+            }
+        });
+        if (savedInstanceState == null || mWebView.restoreState(savedInstanceState) == null) {
+            mWebView.loadUrl(storyUrl);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mWebView != null) {
+            mWebView.saveState(outState);
+        }
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (mWebView != null && mWebView.canGoBack()) {
+            // back to the story from a link followed in it.
+            mWebView.goBack();
+        } else {
+            super.onBackPressed();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (mWebView != null) {
+            mWebView.destroy();
+            mWebView = null;
+        }
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,59 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.support.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the news the user opened, by their stable id (see NewsRowModel.getId), so that the details view
+ * only needs the id of a news instead of copies of its fields. The registry is in memory and bounded: it
+ * keeps the most recently opened news.
+ */
+public class ArticleRegistry {
+
+    /**
+     * Number of news kept. Only the news on the screen and those reachable with the back stack are needed.
+     */
+    private static final int MAX_ARTICLES = 32;
+
+    private static final ArticleRegistry sInstance = new ArticleRegistry();
+
+    /**
+     * The news by id, in access order so that the least recently used is evicted first. Guarded by this.
+     */
+    private final Map<Long, NewsRowModel> mArticles = new LinkedHashMap<Long, NewsRowModel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, NewsRowModel> eldest) {
+            return size() > MAX_ARTICLES;
+        }
+    };
+
+    public static ArticleRegistry getInstance() {
+        return sInstance;
+    }
+
+    private ArticleRegistry() {
+    }
+
+    /**
+     * Register a news, before it is opened.
+     * @param newsRow    The news.
+     * @return    The id with which the news can be retrieved.
+     */
+    public synchronized long register(NewsRowModel newsRow) {
+        mArticles.put(newsRow.getId(), newsRow);
+        return newsRow.getId();
+    }
+
+    /**
+     * Get a registered news.
+     * @param id    The id of the news.
+     * @return    The news, or null if it is not registered (anymore). This happens when the process was
+     *            restarted.
+     */
+    @Nullable
+    public synchronized NewsRowModel get(long id) {
+        return mArticles.get(id);
+    }
+}
@@ -0,0 +1,214 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.app.Application;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import news.agoda.com.sample.AppConstants;
+
+/**
+ * Tracks the internet connection using network callbacks from the system, instead of polling the active
+ * network. The link state, whether the network is unmetered and a rough bandwidth class are exposed as
+ * LiveData so that the UI and the viewmodel are told when the connection changes.
+ *
+ * There is one monitor per process. It is registered once and stays registered as long as the process.
+ * The network callback is registered when the main thread is idle, so that it does not delay the start of
+ * the app. Until then the monitor reports the state of the network when it was created.
+ */
+public class ConnectivityMonitor {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + ConnectivityMonitor.class.getSimpleName();
+
+    /**
+     * A rough classification of the downstream bandwidth of the active network.
+     */
+    public enum Bandwidth {
+        // no network or the bandwidth is not reported
+        UNKNOWN,
+        // less than 150 kbps
+        POOR,
+        // less than 2 Mbps
+        MODERATE,
+        // 2 Mbps or more
+        GOOD
+    }
+
+    private static ConnectivityMonitor sInstance;
+
+    private final ConnectivityManager mConnectivityManager;
+
+    /**
+     * The networks with internet that are currently available. Guarded by this.
+     */
+    private final Set<Network> mNetworks = new HashSet<>();
+
+    /**
+     * Latest link state. Can be read from any thread, unlike the LiveData value which is updated
+     * asynchronously on the main thread.
+     */
+    private volatile boolean mIsOnline;
+
+    /**
+     * Latest bandwidth class, for the same reason.
+     */
+    private volatile Bandwidth mLastBandwidth;
+
+    /**
+     * Latest unmetered state, for the same reason.
+     */
+    private volatile boolean mIsUnmetered;
+
+    private final MutableLiveData<Boolean> mOnlineStatus = new MutableLiveData<>();
+
+    private final MutableLiveData<Bandwidth> mBandwidth = new MutableLiveData<>();
+
+    private final MutableLiveData<Boolean> mUnmeteredStatus = new MutableLiveData<>();
+
+    /**
+     * Get the monitor of the process. The first call must be made on the main thread.
+     * @param application    The application context.
+     * @return    The monitor.
+     */
+    public static synchronized ConnectivityMonitor getInstance(@NonNull Application application) {
+        if (sInstance == null) {
+            sInstance = new ConnectivityMonitor(application);
+        }
+        return sInstance;
+    }
+
+    private ConnectivityMonitor(Application application) {
+        mConnectivityManager = (ConnectivityManager) application.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        // start from the current state, the callbacks keep it up to date afterwards.
+        mIsOnline = Util.isInternetAccessAvailable(application);
+        mOnlineStatus.setValue(mIsOnline);
+        mLastBandwidth = mIsOnline ? classify(mConnectivityManager
+                .getNetworkCapabilities(mConnectivityManager.getActiveNetwork())) : Bandwidth.UNKNOWN;
+        mBandwidth.setValue(mLastBandwidth);
+        mIsUnmetered = mIsOnline && !mConnectivityManager.isActiveNetworkMetered();
+        mUnmeteredStatus.setValue(mIsUnmetered);
+
+        StartupOrchestrator.getInstance().deferUntilIdle("connectivity", new Runnable() {
+            @Override
+            public void run() {
+                registerNetworkCallback();
+            }
+        });
+    }
+
+    private void registerNetworkCallback() {
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        mConnectivityManager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                synchronized (ConnectivityMonitor.this) {
+                    mNetworks.add(network);
+                }
+                update();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                synchronized (ConnectivityMonitor.this) {
+                    mNetworks.remove(network);
+                }
+                update();
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                update();
+            }
+        });
+    }
+
+    /**
+     * Called on the system's callback thread whenever a network changes.
+     */
+    private void update() {
+        boolean isOnline;
+        synchronized (this) {
+            isOnline = !mNetworks.isEmpty();
+        }
+        NetworkCapabilities capabilities = isOnline ?
+                mConnectivityManager.getNetworkCapabilities(mConnectivityManager.getActiveNetwork()) : null;
+        Bandwidth bandwidth = classify(capabilities);
+        boolean isUnmetered = capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+
+        if (isOnline != mIsOnline) {
+            Log.d(TAG, "Connection changed, online " + isOnline);
+            mIsOnline = isOnline;
+            mOnlineStatus.postValue(isOnline);
+        }
+        if (bandwidth != mLastBandwidth) {
+            mLastBandwidth = bandwidth;
+            mBandwidth.postValue(bandwidth);
+        }
+        if (isUnmetered != mIsUnmetered) {
+            Log.d(TAG, "Connection changed, unmetered " + isUnmetered);
+            mIsUnmetered = isUnmetered;
+            mUnmeteredStatus.postValue(isUnmetered);
+        }
+    }
+
+    private static Bandwidth classify(NetworkCapabilities capabilities) {
+        if (capabilities == null) {
+            return Bandwidth.UNKNOWN;
+        }
+        int kbps = capabilities.getLinkDownstreamBandwidthKbps();
+        if (kbps <= 0) {
+            return Bandwidth.UNKNOWN;
+        } else if (kbps < 150) {
+            return Bandwidth.POOR;
+        } else if (kbps < 2000) {
+            return Bandwidth.MODERATE;
+        }
+        return Bandwidth.GOOD;
+    }
+
+    /**
+     * Checks if internet is available. This does not query the system, it is cheap.
+     * @return    true if internet is up.
+     */
+    public boolean isOnline() {
+        return mIsOnline;
+    }
+
+    /**
+     * Get the link state for setting up the LiveData observer pattern
+     * @return    live online status, true if internet is up.
+     */
+    public LiveData<Boolean> getOnlineStatus() {
+        return mOnlineStatus;
+    }
+
+    /**
+     * Get whether the active network is unmetered (e.g. wifi), for setting up the LiveData observer
+     * pattern
+     * @return    live unmetered status, false when offline.
+     */
+    public LiveData<Boolean> getUnmeteredStatus() {
+        return mUnmeteredStatus;
+    }
+
+    /**
+     * Get the bandwidth class for setting up the LiveData observer pattern
+     * @return    live bandwidth class of the active network.
+     */
+    public LiveData<Bandwidth> getBandwidth() {
+        return mBandwidth;
+    }
+}
@@ -1,7 +1,5 @@
 package news.agoda.com.sample.viewmodel;
 
-import java.util.ArrayList;
-
 /**
  * A callback for listening to data fetch complete. The caller must implement this interface
  */
@@ -13,9 +11,9 @@ public interface FetchListener {
 
     /**
      * Called if data fetch is successful.
-     * @param newsEntities     list of news fetched.
+     * @param newsList     the list of news fetched.
      */
-    void onFetchSuccess(ArrayList<NewsEntity> newsEntities);
+    void onFetchSuccess(PagedNewsList newsList);
 
     /**
      * Called if data fetch failed.
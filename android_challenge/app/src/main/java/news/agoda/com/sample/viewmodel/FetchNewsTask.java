@@ -1,6 +1,7 @@
 package news.agoda.com.sample.viewmodel;
 
 import android.os.AsyncTask;
+import android.os.Trace;
 import android.util.Log;
 
 import java.util.ArrayList;
@@ -11,10 +12,13 @@ import news.agoda.com.sample.model.DataSource;
 
 /**
  * This class is responsible for fetching the data from the repository (server/cache) in a background
- * thread.
+ * thread. The news are then stored in pages (PagedNewsList), and the display models of the first page are
+ * built, on the background thread as well.
  *
+ * The task can be started before a listener is registered (see StartupOrchestrator). Its result is then
+ * kept and delivered when the listener registers.
  */
-class FetchNewsTask extends AsyncTask<Void, Void, ArrayList<NewsEntity>> {
+class FetchNewsTask extends AsyncTask<Void, Void, PagedNewsList> {
 
 
     private final String TAG = AppConstants.APP_TAG + "." +
@@ -25,27 +29,66 @@ class FetchNewsTask extends AsyncTask<Void, Void, ArrayList<NewsEntity>> {
      */
     private DataSource mSource;
 
+    /**
+     * The sizes of the image views, for choosing the images of the news.
+     */
+    private final NewsRowModel.ImageTargets mImageTargets;
+
+    /**
+     * Path to the files directory, where the pages of the list are stored.
+     */
+    private final String mFilesDirPath;
+
     /**
      * Will be used to relay fetch complete events to the caller.
      */
     private FetchListener mFetchListener;
 
+    /**
+     * Indicates the fetch is complete but the result was not delivered, as no listener was registered.
+     */
+    private boolean mIsResultPending;
+
+    /**
+     * The undelivered result. null indicates an error during fetch.
+     */
+    private PagedNewsList mPendingResult;
+
 
     /**
      * Constructor
      * @param source    The data source object for fetching the data
+     * @param imageTargets    The sizes of the image views
+     * @param filesDirPath    Path to the files directory
      */
-    FetchNewsTask(DataSource source) {
+    FetchNewsTask(DataSource source, NewsRowModel.ImageTargets imageTargets, String filesDirPath) {
         mSource = source;
+        mImageTargets = imageTargets;
+        mFilesDirPath = filesDirPath;
     }
 
     /**
-     * Register listener for events
+     * Get the data source the task fetches from.
+     * @return    The data source.
+     */
+    DataSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * Register listener for events. If the fetch already completed, the listener gets the result right
+     * away.
      * @param listener    Observer who implements the FetchListener interface.
      */
     void registerFetchCompleteListener(FetchListener listener) {
         Log.d(TAG,"registerFetchCompleteListener");
         mFetchListener = listener;
+        if(mIsResultPending) {
+            mIsResultPending = false;
+            PagedNewsList newsList = mPendingResult;
+            mPendingResult = null;
+            deliver(newsList);
+        }
     }
 
     /**
@@ -57,10 +100,26 @@ class FetchNewsTask extends AsyncTask<Void, Void, ArrayList<NewsEntity>> {
     }
 
     @Override
-    protected ArrayList<NewsEntity> doInBackground(Void... voids) {
+    protected PagedNewsList doInBackground(Void... voids) {
         Log.d(TAG,"Fetching News List in background");
 
-        return mSource.fetchNewsList();
+        Trace.beginSection("FetchNewsTask.fetch");
+        ArrayList<NewsEntity> newsEntities;
+        try {
+            newsEntities = mSource.fetchNewsList();
+        } finally {
+            Trace.endSection();
+        }
+        if(newsEntities == null) {
+            // null indicates an error during fetch.
+            return null;
+        }
+        Trace.beginSection("FetchNewsTask.pages");
+        try {
+            return PagedNewsList.create(mFilesDirPath, newsEntities, mImageTargets);
+        } finally {
+            Trace.endSection();
+        }
     }
 
     @Override
@@ -73,18 +132,26 @@ class FetchNewsTask extends AsyncTask<Void, Void, ArrayList<NewsEntity>> {
     }
 
     @Override
-    protected void onPostExecute(ArrayList<NewsEntity> newsEntities) {
+    protected void onPostExecute(PagedNewsList newsList) {
         Log.d(TAG,"onPostExecute - Main Thread");
 
         if(mFetchListener != null) {
-            if (newsEntities == null) {
-                // if the list object is null it indicates an error during fetch.
-                mFetchListener.onError();
-            } else {
-                // fetch is successful
-                mFetchListener.onFetchSuccess(newsEntities);
-            }
+            deliver(newsList);
+        } else {
+            // keep the result for the listener to come.
+            mIsResultPending = true;
+            mPendingResult = newsList;
         }
 
     }
+
+    private void deliver(PagedNewsList newsList) {
+        if (newsList == null) {
+            // if the list object is null it indicates an error during fetch.
+            mFetchListener.onError();
+        } else {
+            // fetch is successful
+            mFetchListener.onFetchSuccess(newsList);
+        }
+    }
 }
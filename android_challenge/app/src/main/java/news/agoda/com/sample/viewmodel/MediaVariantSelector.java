@@ -0,0 +1,68 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Chooses which rendition of the image of a news to load for a view. The feed lists several renditions
+ * of the same image (thumbnail, inline, jumbo...) with their pixel size. The smallest one that covers the
+ * view is enough, anything bigger is downloaded and decoded only to be scaled down again.
+ */
+final class MediaVariantSelector {
+
+    private static final String TYPE_IMAGE = "image";
+
+    private MediaVariantSelector() {
+    }
+
+    /**
+     * Select the rendition to show in a view of the given size. The view is filled with center crop, so a
+     * rendition covers the view if it is at least as wide and as high as the view.
+     *
+     * @param mediaEntityList    The renditions of the image of a news.
+     * @param targetWidth    Width of the view in pixels.
+     * @param targetHeight    Height of the view in pixels.
+     * @return    The smallest rendition which covers the view. If none does, the biggest one. If the
+     *            renditions have no size, the last one. null if there is no image.
+     */
+    @Nullable
+    static MediaEntity select(@Nullable List<MediaEntity> mediaEntityList, int targetWidth, int targetHeight) {
+        if (mediaEntityList == null || mediaEntityList.isEmpty()) {
+            return null;
+        }
+        MediaEntity smallestCovering = null;
+        MediaEntity biggest = null;
+        for (MediaEntity media : mediaEntityList) {
+            if (!isSizedImage(media)) {
+                continue;
+            }
+            if (media.getWidth() >= targetWidth && media.getHeight() >= targetHeight) {
+                if (smallestCovering == null || area(media) < area(smallestCovering)) {
+                    smallestCovering = media;
+                }
+            }
+            if (biggest == null || area(media) > area(biggest)) {
+                biggest = media;
+            }
+        }
+        if (smallestCovering != null) {
+            return smallestCovering;
+        }
+        if (biggest != null) {
+            return biggest;
+        }
+        // no size information, the feed lists the renditions from the smallest to the biggest.
+        return mediaEntityList.get(mediaEntityList.size() - 1);
+    }
+
+    private static boolean isSizedImage(MediaEntity media) {
+        // the type is optional, only other kinds of media (e.g. video) are skipped.
+        return media.getUrl() != null && media.getWidth() > 0 && media.getHeight() > 0 &&
+                (media.getType() == null || TYPE_IMAGE.equals(media.getType()));
+    }
+
+    private static long area(MediaEntity media) {
+        return (long) media.getWidth() * media.getHeight();
+    }
+}
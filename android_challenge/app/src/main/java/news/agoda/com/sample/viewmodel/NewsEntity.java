@@ -27,6 +27,12 @@ public class NewsEntity {
     @SerializedName("multimedia")
     public List<MediaEntity> mediaEntityList;
 
+    /**
+     * The near duplicate signature of the title and summary, computed once per news by the model. Not
+     * serialized, and reset when the title or the summary change.
+     */
+    private transient int[] nearDuplicateSignature;
+
     public String getSection() {
         return section;
     }
@@ -49,6 +55,7 @@ public class NewsEntity {
 
     public void setTitle(String title) {
         this.title = title;
+        nearDuplicateSignature = null;
     }
 
     public String getSummary() {
@@ -57,6 +64,7 @@ public class NewsEntity {
 
     public void setSummary(String summary) {
         this.summary = summary;
+        nearDuplicateSignature = null;
     }
 
     public String getUrl() {
@@ -91,6 +99,14 @@ public class NewsEntity {
         this.mediaEntityList = mediaEntityList;
     }
 
+    public int[] getNearDuplicateSignature() {
+        return nearDuplicateSignature;
+    }
+
+    public void setNearDuplicateSignature(int[] nearDuplicateSignature) {
+        this.nearDuplicateSignature = nearDuplicateSignature;
+    }
+
     /**
      * Override the equals method to compare two NewsEntities correctly. This is needed for Unit
      * Testing.
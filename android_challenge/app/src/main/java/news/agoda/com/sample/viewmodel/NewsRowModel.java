@@ -0,0 +1,281 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import news.agoda.com.sample.model.NewsDates;
+import news.agoda.com.sample.model.NewsTimeline;
+
+/**
+ * An immutable display model of a news, with everything the list row and the details view show already
+ * derived from the news entity: parsed image uris, the thumbnail image request, the formatted date and
+ * the byline. The models are built once per fetched list on a background thread, so binding a row is
+ * just assigning fields.
+ *
+ * The images are chosen by the size of the views which show them (see MediaVariantSelector), and the
+ * thumbnail is decoded at the size of the list row.
+ */
+public final class NewsRowModel {
+
+    /**
+     * The pixel sizes of the views showing the images of a news.
+     */
+    public static final class ImageTargets {
+
+        private final int mThumbnailWidth;
+
+        private final int mThumbnailHeight;
+
+        private final int mHeroWidth;
+
+        private final int mHeroHeight;
+
+        public ImageTargets(int thumbnailWidth, int thumbnailHeight, int heroWidth, int heroHeight) {
+            mThumbnailWidth = thumbnailWidth;
+            mThumbnailHeight = thumbnailHeight;
+            mHeroWidth = heroWidth;
+            mHeroHeight = heroHeight;
+        }
+    }
+
+    // url of the full story. It identifies the news.
+    private final String mStoryURL;
+
+    // id of the news, derived from the story url so that it is the same for every fetch.
+    private final long mId;
+
+    private final String mTitle;
+
+    private final String mSummary;
+
+    private final String mByline;
+
+    // published date formatted for display, empty if unknown.
+    private final String mDate;
+
+    // byline and date as shown below the title in the list.
+    private final String mSubtitle;
+
+    // the thumbnail shown in the list. Uri.EMPTY shows the place holder.
+    private final Uri mThumbnailUri;
+
+    // the request for the thumbnail, built once and shared by all binds of this row. It is decoded at
+    // the size of the row.
+    private final ImageRequest mThumbnailRequest;
+
+    // the image shown in the details view, null if there is none.
+    private final Uri mHeroUri;
+
+    // the request for the image of the details view, decoded at the size of the details view. Null if
+    // there is no image.
+    private final ImageRequest mHeroRequest;
+
+    private NewsRowModel(NewsEntity newsEntity, long publishedAt, DateFormat dateFormat, ImageTargets targets) {
+        mStoryURL = newsEntity.getUrl();
+        mId = idOf(newsEntity);
+        mTitle = newsEntity.getTitle();
+        mSummary = newsEntity.getSummary();
+        mByline = newsEntity.getByline() == null ? "" : newsEntity.getByline();
+
+        mDate = publishedAt == NewsDates.UNKNOWN ? "" : dateFormat.format(new Date(publishedAt));
+        if (mByline.isEmpty() || mDate.isEmpty()) {
+            mSubtitle = mByline + mDate;
+        } else {
+            mSubtitle = mByline + ", " + mDate;
+        }
+
+        List<MediaEntity> mediaEntityList = newsEntity.getMediaEntityList();
+        MediaEntity thumbnail = MediaVariantSelector.select(mediaEntityList,
+                targets.mThumbnailWidth, targets.mThumbnailHeight);
+        MediaEntity hero = MediaVariantSelector.select(mediaEntityList, targets.mHeroWidth, targets.mHeroHeight);
+        mThumbnailUri = thumbnail == null ? Uri.EMPTY : parse(thumbnail.getUrl());
+        mHeroUri = hero == null ? null : parse(hero.getUrl());
+        // thumbnails are kept in the small image disk cache.
+        mThumbnailRequest = ImageRequestBuilder.newBuilderWithSource(mThumbnailUri)
+                .setImageType(ImageRequest.ImageType.SMALL)
+                .setResizeOptions(new ResizeOptions(targets.mThumbnailWidth, targets.mThumbnailHeight))
+                .build();
+        mHeroRequest = mHeroUri == null ? null : ImageRequestBuilder.newBuilderWithSource(mHeroUri)
+                .setResizeOptions(new ResizeOptions(targets.mHeroWidth, targets.mHeroHeight))
+                .build();
+    }
+
+    /**
+     * Build the display models of a part of a list of news. This formats dates and parses uris, so it
+     * must not be called on the main thread.
+     * @param newsEntities    the news.
+     * @param timeline    the published times of the whole list, which were parsed when it was fetched.
+     * @param firstOrdinal    position of the first news in the whole list.
+     * @param targets    the sizes of the image views, used to choose the image renditions.
+     * @return    the display models, in the same order.
+     */
+    @NonNull
+    @WorkerThread
+    public static List<NewsRowModel> fromList(@NonNull List<NewsEntity> newsEntities, @NonNull NewsTimeline timeline,
+                                              int firstOrdinal, @NonNull ImageTargets targets) {
+        // DateFormat is not thread safe, one instance per list.
+        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+        List<NewsRowModel> rows = new ArrayList<>(newsEntities.size());
+        for (int i = 0; i < newsEntities.size(); i++) {
+            rows.add(new NewsRowModel(newsEntities.get(i), timeline.getPublishedAt(firstOrdinal + i),
+                    dateFormat, targets));
+        }
+        return rows;
+    }
+
+    /**
+     * A stable id of the news. Two row models of the same news have the same id, even from different
+     * fetches.
+     */
+    public long getId() {
+        return mId;
+    }
+
+    public String getStoryURL() {
+        return mStoryURL;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public String getSummary() {
+        return mSummary;
+    }
+
+    public String getByline() {
+        return mByline;
+    }
+
+    public String getDate() {
+        return mDate;
+    }
+
+    public String getSubtitle() {
+        return mSubtitle;
+    }
+
+    public Uri getThumbnailUri() {
+        return mThumbnailUri;
+    }
+
+    public ImageRequest getThumbnailRequest() {
+        return mThumbnailRequest;
+    }
+
+    @Nullable
+    public Uri getHeroUri() {
+        return mHeroUri;
+    }
+
+    /**
+     * The request for the image of the details view. The details view and the prefetch on row press use
+     * this same request, so the prefetched image is found in the cache.
+     */
+    @Nullable
+    public ImageRequest getHeroRequest() {
+        return mHeroRequest;
+    }
+
+    /**
+     * Two rows represent the same news if they have the same story url.
+     * @param other    the other row.
+     * @return    true if both rows are about the same news.
+     */
+    public boolean isSameNews(NewsRowModel other) {
+        return isEqual(mStoryURL, other.mStoryURL);
+    }
+
+    /**
+     * Two rows are equal if everything they display is equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NewsRowModel)) {
+            return false;
+        }
+        NewsRowModel row = (NewsRowModel) obj;
+        return isEqual(mStoryURL, row.mStoryURL) &&
+                isEqual(mTitle, row.mTitle) &&
+                isEqual(mSummary, row.mSummary) &&
+                mSubtitle.equals(row.mSubtitle) &&
+                mThumbnailUri.equals(row.mThumbnailUri) &&
+                isEqual(mHeroUri, row.mHeroUri);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = mStoryURL == null ? 0 : mStoryURL.hashCode();
+        hash = 31 * hash + (mTitle == null ? 0 : mTitle.hashCode());
+        return 31 * hash + mThumbnailUri.hashCode();
+    }
+
+    /**
+     * The id of the row model of a news, without building the row model.
+     */
+    static long idOf(NewsEntity newsEntity) {
+        return stableId(newsEntity.getUrl() == null ? newsEntity.getTitle() : newsEntity.getUrl());
+    }
+
+    /**
+     * A hash of the fields of a news which the row model displays. If two news have different hashes,
+     * their row models are not equal.
+     */
+    static int contentHashOf(NewsEntity newsEntity) {
+        int hash = hashOf(newsEntity.getUrl());
+        hash = 31 * hash + hashOf(newsEntity.getTitle());
+        hash = 31 * hash + hashOf(newsEntity.getSummary());
+        hash = 31 * hash + hashOf(newsEntity.getByline());
+        hash = 31 * hash + hashOf(newsEntity.getPublishedDate());
+        List<MediaEntity> mediaEntityList = newsEntity.getMediaEntityList();
+        if (mediaEntityList != null) {
+            for (MediaEntity media : mediaEntityList) {
+                hash = 31 * hash + hashOf(media.getUrl());
+                hash = 31 * hash + media.getWidth();
+                hash = 31 * hash + media.getHeight();
+            }
+        }
+        return hash;
+    }
+
+    private static int hashOf(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+
+    /**
+     * 64 bit FNV-1a hash of a string.
+     */
+    private static long stableId(String key) {
+        if (key == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Uri parse(String url) {
+        return url == null ? Uri.EMPTY : Uri.parse(url);
+    }
+
+    private static boolean isEqual(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+}
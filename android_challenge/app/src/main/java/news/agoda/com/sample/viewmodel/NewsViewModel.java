@@ -1,18 +1,39 @@
 package news.agoda.com.sample.viewmodel;
 
 import android.app.Application;
+import android.arch.core.util.Function;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+import android.arch.lifecycle.Transformations;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import news.agoda.com.sample.AppConstants;
 import news.agoda.com.sample.R;
 import news.agoda.com.sample.model.DataSource;
 import news.agoda.com.sample.model.DataSourceFactory;
+import news.agoda.com.sample.model.NewsDates;
+import news.agoda.com.sample.model.NewsFacets;
+import news.agoda.com.sample.model.NewsSearchIndex;
+import news.agoda.com.sample.model.NewsSearchIndexer;
+import news.agoda.com.sample.model.NewsTimeline;
+import news.agoda.com.sample.model.StoryPrefetcher;
 
 import static org.junit.Assert.assertNotNull;
 
@@ -33,10 +54,63 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
     private static final String TAG = AppConstants.APP_TAG +"."+NewsViewModel.class.getSimpleName();
 
     /**
-     * The list of news fetched from the model. This is live data and thus the view (MainActivity) would
-     * receive callbacks (onChange) when the list is updated.
+     * After the connection comes back we wait this long before refreshing, so that a flapping connection
+     * causes only one refresh.
      */
-    private MutableLiveData<ArrayList<NewsEntity>> newsItemList = new MutableLiveData<>();
+    private static final long RECONNECT_REFRESH_DELAY_MS = 2000;
+
+    /**
+     * The shortest wait for the next scheduled refresh, so that a feed which cannot be fetched is not
+     * retried in a loop.
+     */
+    private static final long MIN_SCHEDULED_REFRESH_DELAY_MS = 60 * 1000;
+
+    /**
+     * Preferences holding the time the news were last shown, to tell what is new since then.
+     */
+    private static final String PREFS_NAME = "news_state";
+
+    private static final String KEY_LAST_OPEN_MILLIS = "last_open_millis";
+
+    /**
+     * Maximum number of news shown for a search.
+     */
+    private static final int MAX_SEARCH_RESULTS = 200;
+
+    /**
+     * Runs the searches, as the search index may have to be read from disk. Created on first use.
+     */
+    private static ThreadPoolExecutor sSearchExecutor;
+
+    /**
+     * The list of news shown, i.e. the fetched list filtered by the selected sections and subsections,
+     * and by the search query if there is one.
+     * This is live data and thus the view (MainActivity) would receive callbacks (onChange) when the
+     * list is updated.
+     */
+    private MutableLiveData<PagedNewsList> newsItemList = new MutableLiveData<>();
+
+    /**
+     * The list fetched from the model, unfiltered.
+     */
+    private PagedNewsList mFullNewsList = PagedNewsList.empty();
+
+    /**
+     * The list fetched before the current one. The view may still show it until it has compared it with
+     * the current one, so it is closed only when the next list arrives.
+     */
+    private PagedNewsList mRetiredNewsList;
+
+    /**
+     * The sections and subsections the list is filtered by. Empty to show all.
+     */
+    private Set<String> mSelectedSections = Collections.emptySet();
+    private Set<String> mSelectedSubsections = Collections.emptySet();
+
+    /**
+     * The text searched for. Empty to show all.
+     */
+    private String mSearchQuery = "";
 
     /**
      * Indicates if the indeterminate progress bar should be displayed or not. It is displayed when a
@@ -45,9 +119,98 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
     private MutableLiveData<Boolean> mProgressBarStatus = new MutableLiveData<>();
 
     /**
-     * Indicates if the device is connected to the internet.
+     * Number of news published since the news were last shown, set with the first list of this
+     * viewmodel fetched from the server. Not set on the first start of the app.
+     */
+    private MutableLiveData<Integer> mNewSinceLastOpen = new MutableLiveData<>();
+
+    /**
+     * Indicates if the news since last open were counted.
+     */
+    private boolean mIsLastOpenChecked;
+
+    /**
+     * Holds the time the news were last shown. The preferences are loaded from the disk in the background
+     * as soon as they are obtained, so they are obtained when the viewmodel is created and are loaded
+     * when the first server list arrives.
+     */
+    private final SharedPreferences mPreferences;
+
+    /**
+     * Indicates if the device is offline. Derived from the link state of the connectivity monitor.
      */
-    private MutableLiveData<Boolean> mOffline = new MutableLiveData<>();
+    private final LiveData<Boolean> mOffline;
+
+    /**
+     * Tracks the internet connection. It is told about changes by the system, so we don't need to poll.
+     */
+    private final ConnectivityMonitor mConnectivityMonitor;
+
+    /**
+     * Handler of the main thread, used to delay the refresh after a reconnect.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Refreshes the news once the connection is back.
+     */
+    private final Runnable mReconnectRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if(mConnectivityMonitor.isOnline()) {
+                Log.d(TAG,"Refreshing after reconnect");
+                fetchNewsList(false);
+            }
+        }
+    };
+
+    /**
+     * Refreshes the news when the next subscribed feed is due (see FeedScheduler). The feeds due at
+     * about the same time are fetched by this one refresh.
+     */
+    private final Runnable mScheduledRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if(mConnectivityMonitor.isOnline() && !mIsFetchActive) {
+                Log.d(TAG,"Scheduled refresh");
+                fetchNewsList(false);
+            }
+        }
+    };
+
+    /**
+     * Observes the link state and schedules a refresh when the device goes from offline to online.
+     */
+    private final Observer<Boolean> mConnectivityObserver = new Observer<Boolean>() {
+
+        private Boolean mWasOnline;
+
+        @Override
+        public void onChanged(@Nullable Boolean isOnline) {
+            if(isOnline == null) {
+                return;
+            }
+            if(isOnline && Boolean.FALSE.equals(mWasOnline)) {
+                // debounce: only the last reconnect within the delay triggers a refresh
+                mHandler.removeCallbacks(mReconnectRefresh);
+                mHandler.postDelayed(mReconnectRefresh, RECONNECT_REFRESH_DELAY_MS);
+            } else if(!isOnline) {
+                mHandler.removeCallbacks(mReconnectRefresh);
+            }
+            mWasOnline = isOnline;
+        }
+    };
+
+    /**
+     * Prefetches the full stories of the newest news for offline reading, while the network is unmetered.
+     */
+    private final Observer<Boolean> mUnmeteredObserver = new Observer<Boolean>() {
+        @Override
+        public void onChanged(@Nullable Boolean isUnmetered) {
+            StoryPrefetcher.getInstance(getApplication().getFilesDir().toString())
+                    .setAllowed(Boolean.TRUE.equals(isUnmetered));
+        }
+    };
 
     /**
      * The data source or the model
@@ -72,19 +235,51 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
      */
     private FetchNewsTask mFetchTask;
 
+    /**
+     * The pixel sizes of the news images in the list and the details view.
+     */
+    private final NewsRowModel.ImageTargets mImageTargets;
+
     /**
      * Constructor
      * @param application    The application context
      */
     public NewsViewModel(@NonNull Application application) {
         super(application);
+        mConnectivityMonitor = ConnectivityMonitor.getInstance(application);
+        mImageTargets = Util.getImageTargets(application);
+        mPreferences = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mOffline = Transformations.map(mConnectivityMonitor.getOnlineStatus(), new Function<Boolean, Boolean>() {
+            @Override
+            public Boolean apply(Boolean isOnline) {
+                return !isOnline;
+            }
+        });
+        // the viewmodel is not a lifecycle owner, observe until it is cleared.
+        mConnectivityMonitor.getOnlineStatus().observeForever(mConnectivityObserver);
+        mConnectivityMonitor.getUnmeteredStatus().observeForever(mUnmeteredObserver);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mConnectivityMonitor.getOnlineStatus().removeObserver(mConnectivityObserver);
+        mConnectivityMonitor.getUnmeteredStatus().removeObserver(mUnmeteredObserver);
+        // nobody tracks the network anymore, it could become metered.
+        StoryPrefetcher.getInstance(getApplication().getFilesDir().toString()).setAllowed(false);
+        mHandler.removeCallbacks(mReconnectRefresh);
+        mHandler.removeCallbacks(mScheduledRefresh);
+        if(mRetiredNewsList != null) {
+            mRetiredNewsList.close();
+        }
+        mFullNewsList.close();
     }
 
     /**
      * Get the live list of news for setting up the LiveData observer pattern
      * @return    livedata list of news
      */
-    public LiveData<ArrayList<NewsEntity>> getListOfNews() {
+    public LiveData<PagedNewsList> getListOfNews() {
         return newsItemList;
     }
 
@@ -102,6 +297,23 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
      */
     public LiveData<Boolean> getOfflineStatus () {return mOffline;}
 
+    /**
+     * Get the number of news published since the news were last shown, for setting up the LiveData
+     * observer pattern
+     * @return    live number of new news
+     */
+    public LiveData<Integer> getNewSinceLastOpen() {
+        return mNewSinceLastOpen;
+    }
+
+    /**
+     * Called once the number of new news was shown, so that it is not shown again when the view is
+     * recreated.
+     */
+    public void onNewSinceLastOpenShown() {
+        mNewSinceLastOpen.setValue(null);
+    }
+
     /**
      * Close connection to the model and stop the cache db controller. We also unregister background data
      * fetch callback.
@@ -109,6 +321,7 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
     public void cleanUpNewsDB() {
         if(mSource != null) {
             mSource.close();
+            mSource = null;
         }
         if(mFetchTask != null) {
             mFetchTask.unregisterFetchCompleteListener();
@@ -116,12 +329,17 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
     }
 
     /**
-     * This is used to fetch the list of news on a worker thread.
+     * This is used to fetch the list of news on a worker thread. The first call after the process
+     * started uses the fetch the process started with.
      * @param isStartAfterDestroy    indicates whether the view (MainActivity) is recreated as a result
      *                               of screen orientation change. If so, we fetch the data from the cache.
      */
     public void fetchNewsList(boolean isStartAfterDestroy) {
         Log.d(TAG,"fetchNewsList");
+        if(!mIsFetchActive && adoptStartupFetch()) {
+            // the news are already being fetched since the process started.
+            return;
+        }
         if(!isStartAfterDestroy) {
             // Fresh start of activity
             /**
@@ -137,27 +355,54 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
                 if (isInternetAccessAvailable()) {
                     fetchNewsListInternal(DataSourceFactory.Sources.SERVER);
                 } else {
-                    fetchNewsListInternal(DataSourceFactory.Sources.CACHE);
+                    // the cache, or the seed until the first server fetch filled it.
+                    fetchNewsListInternal(DataSourceFactory.Sources.LOCAL);
                 }
             }
         } else {
             if(!mIsFetchActive) {
                 mIsFetchActive = true;
                 // configuration change. Fetch from cache
-                fetchNewsListInternal(DataSourceFactory.Sources.CACHE);
+                fetchNewsListInternal(DataSourceFactory.Sources.LOCAL);
             }
         }
 
     }
 
     /**
-     * Checks if internet is available.
+     * Checks if internet is available. The connectivity monitor keeps this up to date, so it is cheap
+     * and doesn't query the system. While offline, we don't attempt server fetches.
      * @return    true if internet is up.
      */
     public boolean isInternetAccessAvailable() {
-        boolean isInternetUp = Util.isInternetAccessAvailable(getApplication());
-        mOffline.setValue(!isInternetUp);
-        return isInternetUp;
+        return mConnectivityMonitor.isOnline();
+    }
+
+    /**
+     * Get the bandwidth class of the active network for setting up the LiveData observer pattern
+     * @return    live bandwidth class
+     */
+    public LiveData<ConnectivityMonitor.Bandwidth> getBandwidth() {
+        return mConnectivityMonitor.getBandwidth();
+    }
+
+    /**
+     * Take over the fetch which started with the process, if it was not taken yet.
+     * @return    true if there was a startup fetch. Its result is delivered like the result of any fetch.
+     */
+    private boolean adoptStartupFetch() {
+        FetchNewsTask startupFetch = StartupOrchestrator.getInstance().takeStartupFetch();
+        if(startupFetch == null) {
+            return false;
+        }
+        Log.d(TAG,"adoptStartupFetch");
+        mIsFetchActive = true;
+        mSource = startupFetch.getSource();
+        mFetchTask = startupFetch;
+        showProgress();
+        // delivers the result right away if the fetch is already complete.
+        mFetchTask.registerFetchCompleteListener(this);
+        return true;
     }
 
     /**
@@ -165,6 +410,13 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
      * @param SOURCE_TYPE    Either Server or Cache
      */
     private void fetchNewsListInternal(DataSourceFactory.Sources SOURCE_TYPE) {
+        /**
+         * Each data source holds a reference to the cache db controller. The previous fetch is complete
+         * (only one fetch is active at a time), so release its data source before creating a new one.
+         */
+        if(mSource != null) {
+            mSource.close();
+        }
         /**
          * The util method uses the DataSourceFactory and the Source type to return the appropriate
          * data source. The DataSources uses the Factory pattern.
@@ -173,7 +425,8 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
         // we don't expect the data source to be null.
         assertNotNull(mSource);
         // create a new async task
-        mFetchTask = new FetchNewsTask(mSource);
+        mFetchTask = new FetchNewsTask(mSource, mImageTargets,
+                getApplication().getFilesDir().toString());
         // register callbacks (observer pattern).
         mFetchTask.registerFetchCompleteListener(this);
         // start the thread.
@@ -190,18 +443,57 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
 
     /**
      * Callback when a list of news is fetched successfully.
-     * @param newsEntities     list of news fetched.
+     * @param newsList     the list of news fetched.
      */
     @Override
-    public void onFetchSuccess(ArrayList<NewsEntity> newsEntities) {
+    public void onFetchSuccess(PagedNewsList newsList) {
         Log.d(TAG,"onFetchSuccess");
         // remove the progress bar
         mProgressBarStatus.setValue(false);
         // toggle fetch active to false so that another fetch request can be made.
         mIsFetchActive = false;
         // update the live news list so that it shows up on the UI.
-        newsItemList.setValue(newsEntities);
+        setNewsList(newsList);
         mFetchTask.unregisterFetchCompleteListener();
+        /**
+         * The news are compared with those the user saw last time when they come from the server. The
+         * cache or the seed shown first hold no news the user did not see.
+         */
+        if(!mIsLastOpenChecked && newsList.size() > 0
+                && mSource.getType() == DataSourceFactory.Sources.SERVER) {
+            mIsLastOpenChecked = true;
+            countNewSinceLastOpen(newsList.getTimeline());
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Schedule the refresh of the feed which is due next. While the viewmodel lives the refresh runs on
+     * the main thread handler, the system is not woken up for it.
+     */
+    private void scheduleRefresh() {
+        mHandler.removeCallbacks(mScheduledRefresh);
+        long nextRefreshMillis = DataSourceFactory.getFeedScheduler(getApplication().getFilesDir().toString())
+                .getNextRefreshMillis();
+        if(nextRefreshMillis == Long.MAX_VALUE) {
+            // all the feeds are fetched on every refresh, or no refresh read the fetch times yet.
+            return;
+        }
+        long delay = Math.max(nextRefreshMillis - System.currentTimeMillis(), MIN_SCHEDULED_REFRESH_DELAY_MS);
+        Log.d(TAG,"Next refresh in "+delay+"ms");
+        mHandler.postDelayed(mScheduledRefresh, delay);
+    }
+
+    /**
+     * Count the news published since the last time the news were shown, and remember this time. The
+     * count is a binary search in the sort index of the timeline. The time is written in the background.
+     */
+    private void countNewSinceLastOpen(NewsTimeline timeline) {
+        long lastOpenMillis = mPreferences.getLong(KEY_LAST_OPEN_MILLIS, NewsDates.UNKNOWN);
+        mPreferences.edit().putLong(KEY_LAST_OPEN_MILLIS, System.currentTimeMillis()).apply();
+        if(lastOpenMillis != NewsDates.UNKNOWN) {
+            mNewSinceLastOpen.setValue(timeline.countNewerThan(lastOpenMillis));
+        }
     }
 
     /**
@@ -224,8 +516,130 @@ public class NewsViewModel extends AndroidViewModel implements FetchListener {
         // set fetch active to false so that another fetch request can be made.
         mIsFetchActive = false;
         // Set empty list on failure
-        newsItemList.setValue(new ArrayList<NewsEntity>());
+        setNewsList(PagedNewsList.empty());
         mFetchTask.unregisterFetchCompleteListener();
+        scheduleRefresh();
+    }
+
+    /**
+     * Show a new list of news, and release the list before the previous one. The selected sections and
+     * subsections which the new list still has stay selected.
+     */
+    private void setNewsList(PagedNewsList newsList) {
+        if(mRetiredNewsList != null) {
+            mRetiredNewsList.close();
+        }
+        mRetiredNewsList = mFullNewsList;
+        mFullNewsList = newsList;
+        NewsFacets facets = newsList.getFacets();
+        mSelectedSections = retainValues(mSelectedSections, facets, NewsFacets.Dimension.SECTION);
+        mSelectedSubsections = retainValues(mSelectedSubsections, facets, NewsFacets.Dimension.SUBSECTION);
+        showNewsList();
+    }
+
+    private static Set<String> retainValues(Set<String> values, NewsFacets facets, NewsFacets.Dimension dimension) {
+        Set<String> retained = new LinkedHashSet<>(values);
+        retained.retainAll(facets.getValues(dimension));
+        return Collections.unmodifiableSet(retained);
+    }
+
+    /**
+     * Get the sections and subsections of the fetched news, with the number of news of each.
+     * @return    the facets of the fetched list.
+     */
+    @NonNull
+    public NewsFacets getFacets() {
+        return mFullNewsList.getFacets();
+    }
+
+    /**
+     * @return    the selected values of a dimension, empty if the list is not filtered by it.
+     */
+    @NonNull
+    public Set<String> getSelectedValues(@NonNull NewsFacets.Dimension dimension) {
+        return dimension == NewsFacets.Dimension.SECTION ? mSelectedSections : mSelectedSubsections;
+    }
+
+    /**
+     * Show only the news which have any of the given sections and any of the given subsections. This is
+     * computed from the facets of the list, the news are not read again.
+     * @param sections    the sections, empty for any section.
+     * @param subsections    the subsections, empty for any subsection.
+     */
+    public void setFacetFilter(@NonNull Collection<String> sections, @NonNull Collection<String> subsections) {
+        mSelectedSections = Collections.unmodifiableSet(new LinkedHashSet<>(sections));
+        mSelectedSubsections = Collections.unmodifiableSet(new LinkedHashSet<>(subsections));
+        showNewsList();
+    }
+
+    /**
+     * @return    the text searched for, empty if there is no search.
+     */
+    @NonNull
+    public String getSearchQuery() {
+        return mSearchQuery;
+    }
+
+    /**
+     * Show only the news matching a query, the best matches first, among the news of the selected
+     * sections and subsections. The last word of the query is a prefix, so it can be called as the user
+     * types. The search runs on a worker thread.
+     * @param query    the text searched for, empty to show all the news again.
+     */
+    public void setSearchQuery(@NonNull String query) {
+        String searchQuery = query.trim().isEmpty() ? "" : query;
+        if(searchQuery.equals(mSearchQuery)) {
+            return;
+        }
+        mSearchQuery = searchQuery;
+        showNewsList();
+    }
+
+    /**
+     * Show the fetched list, filtered by the selected sections and subsections and by the search query.
+     * The search index is of the cached snapshot, which is the fetched list. It is looked up on the search
+     * thread, and the result is shown only if neither the query nor the list changed meanwhile.
+     */
+    private void showNewsList() {
+        if(mSearchQuery.isEmpty()) {
+            newsItemList.setValue(mFullNewsList.filter(mSelectedSections, mSelectedSubsections));
+            return;
+        }
+        final String query = mSearchQuery;
+        final PagedNewsList fullList = mFullNewsList;
+        final String filesDirPath = getApplication().getFilesDir().toString();
+        getSearchExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                NewsSearchIndex index = NewsSearchIndexer.getInstance(filesDirPath).getIndex();
+                // the seed is not indexed, nor is a list whose snapshot the indexer did not reach yet.
+                boolean isCurrent = index != null && index.getSnapshotDigest() == fullList.getSnapshotDigest();
+                final int[] ordinals = isCurrent ? index.search(query, MAX_SEARCH_RESULTS) : new int[0];
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(query.equals(mSearchQuery) && fullList == mFullNewsList) {
+                            newsItemList.setValue(fullList.search(ordinals, mSelectedSections,
+                                    mSelectedSubsections));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static synchronized ThreadPoolExecutor getSearchExecutor() {
+        if(sSearchExecutor == null) {
+            sSearchExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "NewsSearchThread");
+                }
+            });
+            sSearchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sSearchExecutor;
     }
 
     /**
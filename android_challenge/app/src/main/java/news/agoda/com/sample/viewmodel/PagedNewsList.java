@@ -0,0 +1,516 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.model.NewsFacets;
+import news.agoda.com.sample.model.NewsPageStore;
+import news.agoda.com.sample.model.NewsSearchIndex;
+import news.agoda.com.sample.model.NewsTimeline;
+
+/**
+ * A list of news which keeps only a window of pages of display models in memory. The news are stored on
+ * disk in pages (NewsPageStore). When a row outside of the window is needed, its page is read and its
+ * display models are built on a background thread, and the pages furthest from the rows being looked at
+ * are dropped. The memory used by the list thus does not grow with the number of news, apart from the id
+ * and a hash of the content of every news (12 bytes per news), which are kept to compare lists.
+ *
+ * The rows of a page which is not loaded yet are null; the page listener is told when they become
+ * available. The list is used on the main thread, except for the ids and content hashes which can be read
+ * from any thread.
+ *
+ * The sections and subsections of the news are kept as bitsets (NewsFacets), so that a filtered view of
+ * the list is made without reading the news again. The views share the pages of the full list. The
+ * published times are parsed once, when the list is created (NewsTimeline).
+ */
+public class PagedNewsList {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + PagedNewsList.class.getSimpleName();
+
+    /**
+     * Number of news per page.
+     */
+    public static final int PAGE_SIZE = 25;
+
+    /**
+     * Number of pages of display models kept in memory.
+     */
+    static final int MAX_PAGES_IN_MEMORY = 5;
+
+    /**
+     * Listener of the pages becoming available.
+     */
+    public interface PageListener {
+        /**
+         * Called on the main thread when the rows of a page have been loaded.
+         * @param firstPosition    position of the first row of the page.
+         * @param count    number of rows of the page.
+         */
+        void onPageLoaded(int firstPosition, int count);
+    }
+
+    /**
+     * The thread reading pages. Reads are done in order, and the pages of a closed list are deleted after
+     * its pending reads.
+     */
+    private static ThreadPoolExecutor sPageExecutor;
+
+    private static final PagedNewsList EMPTY = new PagedNewsList(
+            new Pages(null, new long[0], new int[0], 0, NewsFacets.empty(), NewsTimeline.empty(), null, 0),
+            null);
+
+    /**
+     * The news and their pages. They are shared by the full list and the filtered views of it.
+     */
+    private final Pages mPages;
+
+    /**
+     * The positions in the full list of the news of this list, ascending unless the list is ranked. null
+     * for the full list.
+     */
+    private final int[] mOrdinals;
+
+    /**
+     * Indicates the news are in the order of a search, best match first, not in the order of the full list.
+     */
+    private final boolean mIsRanked;
+
+    private PageListener mPageListener;
+
+    private PagedNewsList(Pages pages, int[] ordinals) {
+        this(pages, ordinals, false);
+    }
+
+    private PagedNewsList(Pages pages, int[] ordinals, boolean isRanked) {
+        mPages = pages;
+        mOrdinals = ordinals;
+        mIsRanked = isRanked;
+    }
+
+    /**
+     * An empty list.
+     */
+    public static PagedNewsList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a paged list of news. The news are written to disk, and the first page is kept in memory so
+     * that the first rows can be shown right away. The facets of the news are built at the same time.
+     * @param filesDirPath    path to the files directory.
+     * @param newsEntities    the news.
+     * @param imageTargets    the sizes of the image views, for building the display models.
+     * @return    the list.
+     */
+    @WorkerThread
+    @NonNull
+    static PagedNewsList create(String filesDirPath, List<NewsEntity> newsEntities,
+                                NewsRowModel.ImageTargets imageTargets) {
+        long[] ids = new long[newsEntities.size()];
+        int[] contentHashes = new int[newsEntities.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = NewsRowModel.idOf(newsEntities.get(i));
+            contentHashes[i] = NewsRowModel.contentHashOf(newsEntities.get(i));
+        }
+        long snapshotDigest = NewsSearchIndex.digestOf(newsEntities);
+        NewsFacets facets = NewsFacets.build(newsEntities);
+        // the dates are parsed here once, the display models and the queries by time use the timeline.
+        NewsTimeline timeline = NewsTimeline.build(newsEntities);
+
+        NewsPageStore store;
+        try {
+            store = NewsPageStore.write(filesDirPath, newsEntities, PAGE_SIZE);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write pages, keeping the news in memory " + e.getMessage());
+            store = null;
+        }
+
+        Pages pages = new Pages(store, ids, contentHashes, snapshotDigest, facets, timeline, imageTargets,
+                PAGE_SIZE);
+        int pageCount = store == null ? (ids.length + PAGE_SIZE - 1) / PAGE_SIZE : Math.min(1, ids.length);
+        for (int page = 0; page < pageCount; page++) {
+            int from = page * PAGE_SIZE;
+            pages.mRows.put(page, NewsRowModel.fromList(
+                    newsEntities.subList(from, Math.min(from + PAGE_SIZE, ids.length)), timeline, from,
+                    imageTargets));
+        }
+        return new PagedNewsList(pages, null);
+    }
+
+    /**
+     * @return    number of news.
+     */
+    public int size() {
+        return mOrdinals == null ? mPages.mIds.length : mOrdinals.length;
+    }
+
+    /**
+     * The stable id of a news (see NewsRowModel.getId). Can be called from any thread.
+     */
+    public long getId(int position) {
+        return mPages.mIds[ordinalOf(position)];
+    }
+
+    /**
+     * A hash of what is displayed of a news. Can be called from any thread.
+     */
+    public int getContentHash(int position) {
+        return mPages.mContentHashes[ordinalOf(position)];
+    }
+
+    /**
+     * The digest of the news of the full list (see NewsSearchIndex.digestOf), which tells if a search
+     * index was built from them. Can be called from any thread.
+     */
+    public long getSnapshotDigest() {
+        return mPages.mSnapshotDigest;
+    }
+
+    /**
+     * The sections and subsections of the full list. Can be called from any thread.
+     */
+    @NonNull
+    public NewsFacets getFacets() {
+        return mPages.mFacets;
+    }
+
+    /**
+     * The published times of the full list, by position in the full list. Can be called from any thread.
+     */
+    @NonNull
+    public NewsTimeline getTimeline() {
+        return mPages.mTimeline;
+    }
+
+    /**
+     * Get a view of the full list with only the news of some sections and subsections (see
+     * NewsFacets.filter). The view shares the pages of the full list, nothing is read or built for it.
+     * @param sections    the sections, empty for any section.
+     * @param subsections    the subsections, empty for any subsection.
+     * @return    the filtered view, or the full list if there is no restriction.
+     */
+    @NonNull
+    public PagedNewsList filter(@NonNull Collection<String> sections, @NonNull Collection<String> subsections) {
+        PagedNewsList fullList = mOrdinals == null ? this : new PagedNewsList(mPages, null);
+        if (sections.isEmpty() && subsections.isEmpty()) {
+            return fullList;
+        }
+        long[] bits = mPages.mFacets.newBits();
+        mPages.mFacets.filter(sections, subsections, bits);
+        return new PagedNewsList(mPages, NewsFacets.toOrdinals(bits));
+    }
+
+    /**
+     * Get a view of the full list with the news found by a search (see NewsSearchIndex.search), in the
+     * order of the search, which are also in the given sections and subsections. Like a filtered view, it
+     * shares the pages of the full list.
+     * @param rankedOrdinals    the positions in the full list of the news found, best match first.
+     *                          Positions past the end of the list are skipped.
+     * @param sections    the sections, empty for any section.
+     * @param subsections    the subsections, empty for any subsection.
+     * @return    the view of the news found.
+     */
+    @NonNull
+    public PagedNewsList search(@NonNull int[] rankedOrdinals, @NonNull Collection<String> sections,
+                                @NonNull Collection<String> subsections) {
+        long[] bits = mPages.mFacets.newBits();
+        mPages.mFacets.filter(sections, subsections, bits);
+        int[] ordinals = new int[rankedOrdinals.length];
+        int count = 0;
+        for (int ordinal : rankedOrdinals) {
+            if (ordinal >= 0 && ordinal < mPages.mIds.length && (bits[ordinal >> 6] & (1L << ordinal)) != 0) {
+                ordinals[count++] = ordinal;
+            }
+        }
+        return new PagedNewsList(mPages, Arrays.copyOf(ordinals, count), true);
+    }
+
+    /**
+     * @return    true if this is a filtered view of a list.
+     */
+    public boolean isFiltered() {
+        return mOrdinals != null;
+    }
+
+    /**
+     * Get the display model of a news. If its page is not in memory it is loaded, together with the
+     * neighbouring pages.
+     * @param position    position of the news.
+     * @return    the display model, or null if its page is being loaded.
+     */
+    @MainThread
+    @Nullable
+    public NewsRowModel get(int position) {
+        return mPages.get(ordinalOf(position));
+    }
+
+    /**
+     * Get the display model of a news if its page is in memory, without loading any page.
+     * @param position    position of the news.
+     * @return    the display model, or null if its page is not in memory.
+     */
+    @MainThread
+    @Nullable
+    public NewsRowModel peek(int position) {
+        return mPages.peek(ordinalOf(position));
+    }
+
+    /**
+     * Set the listener of the pages becoming available, replacing the previous one. Of the lists sharing
+     * pages, only the last one given a listener is told.
+     */
+    @MainThread
+    public void setPageListener(@Nullable PageListener pageListener) {
+        mPageListener = pageListener;
+        if (pageListener != null) {
+            mPages.mListeningList = this;
+        } else if (mPages.mListeningList == this) {
+            mPages.mListeningList = null;
+        }
+    }
+
+    /**
+     * Release the memory and the disk space of the list and of its filtered views. The rows cannot be
+     * read afterwards.
+     */
+    @MainThread
+    public void close() {
+        if (this != EMPTY) {
+            mPages.close();
+        }
+    }
+
+    private int ordinalOf(int position) {
+        return mOrdinals == null ? position : mOrdinals[position];
+    }
+
+    /**
+     * Tell the listener about a loaded page, in positions of this list.
+     */
+    private void dispatchPageLoaded(int firstOrdinal, int count) {
+        if (mPageListener == null) {
+            return;
+        }
+        if (mOrdinals == null) {
+            mPageListener.onPageLoaded(firstOrdinal, count);
+            return;
+        }
+        if (mIsRanked) {
+            // the news of the page are anywhere in a ranked list, which is short: the range spanning them.
+            int from = mOrdinals.length;
+            int to = 0;
+            for (int position = 0; position < mOrdinals.length; position++) {
+                if (mOrdinals[position] >= firstOrdinal && mOrdinals[position] < firstOrdinal + count) {
+                    from = Math.min(from, position);
+                    to = position + 1;
+                }
+            }
+            if (to > from) {
+                mPageListener.onPageLoaded(from, to - from);
+            }
+            return;
+        }
+        int from = lowerBound(mOrdinals, firstOrdinal);
+        int to = lowerBound(mOrdinals, firstOrdinal + count);
+        if (to > from) {
+            mPageListener.onPageLoaded(from, to - from);
+        }
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * The news of a full list: their ids, content hashes and facets, and the window of pages of display
+     * models in memory.
+     */
+    private static final class Pages {
+
+        /**
+         * The pages on disk. null if the pages could not be written, then all pages are kept in memory.
+         */
+        private final NewsPageStore mStore;
+
+        private final long[] mIds;
+
+        private final int[] mContentHashes;
+
+        private final long mSnapshotDigest;
+
+        private final NewsFacets mFacets;
+
+        private final NewsTimeline mTimeline;
+
+        private final NewsRowModel.ImageTargets mImageTargets;
+
+        private final int mPageSize;
+
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        /**
+         * The pages in memory, by index.
+         */
+        private final Map<Integer, List<NewsRowModel>> mRows = new HashMap<>();
+
+        /**
+         * The pages being read.
+         */
+        private final Set<Integer> mLoadingPages = new HashSet<>();
+
+        /**
+         * The pages which could not be read. They are not tried again.
+         */
+        private final Set<Integer> mFailedPages = new HashSet<>();
+
+        /**
+         * The page of the last row requested. Pages are dropped by their distance to this page.
+         */
+        private int mLastAccessedPage;
+
+        /**
+         * The list told about loaded pages.
+         */
+        private PagedNewsList mListeningList;
+
+        private volatile boolean mIsClosed;
+
+        Pages(NewsPageStore store, long[] ids, int[] contentHashes, long snapshotDigest, NewsFacets facets,
+              NewsTimeline timeline, NewsRowModel.ImageTargets imageTargets, int pageSize) {
+            mStore = store;
+            mIds = ids;
+            mContentHashes = contentHashes;
+            mSnapshotDigest = snapshotDigest;
+            mFacets = facets;
+            mTimeline = timeline;
+            mImageTargets = imageTargets;
+            mPageSize = pageSize;
+        }
+
+        NewsRowModel get(int ordinal) {
+            int page = ordinal / mPageSize;
+            mLastAccessedPage = page;
+            // load the pages around the row, so that scrolling in either direction finds them ready.
+            loadPage(page);
+            loadPage(page - 1);
+            loadPage(page + 1);
+            return peek(ordinal);
+        }
+
+        NewsRowModel peek(int ordinal) {
+            List<NewsRowModel> rows = mRows.get(ordinal / mPageSize);
+            return rows == null ? null : rows.get(ordinal % mPageSize);
+        }
+
+        void close() {
+            if (mIsClosed) {
+                return;
+            }
+            mIsClosed = true;
+            mRows.clear();
+            mListeningList = null;
+            if (mStore != null) {
+                getPageExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mStore.delete();
+                    }
+                });
+            }
+        }
+
+        private void loadPage(final int page) {
+            if (mStore == null || mIsClosed || page < 0 || page >= mStore.getPageCount() ||
+                    mRows.containsKey(page) || mLoadingPages.contains(page) || mFailedPages.contains(page)) {
+                return;
+            }
+            mLoadingPages.add(page);
+            getPageExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<NewsRowModel> rows = null;
+                    if (!mIsClosed) {
+                        try {
+                            rows = NewsRowModel.fromList(mStore.readPage(page), mTimeline, page * mPageSize,
+                                    mImageTargets);
+                        } catch (IOException e) {
+                            Log.e(TAG, "Cannot read page " + page + " " + e.getMessage());
+                        }
+                    }
+                    final List<NewsRowModel> loadedRows = rows;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPageLoaded(page, loadedRows);
+                        }
+                    });
+                }
+            });
+        }
+
+        private void onPageLoaded(int page, List<NewsRowModel> rows) {
+            mLoadingPages.remove(page);
+            if (mIsClosed) {
+                return;
+            }
+            if (rows == null) {
+                mFailedPages.add(page);
+                return;
+            }
+            mRows.put(page, rows);
+            dropFarPages();
+            if (mListeningList != null && mRows.containsKey(page)) {
+                mListeningList.dispatchPageLoaded(page * mPageSize, rows.size());
+            }
+        }
+
+        /**
+         * Drop the pages furthest from the last accessed page until the window fits.
+         */
+        private void dropFarPages() {
+            while (mRows.size() > MAX_PAGES_IN_MEMORY) {
+                int farthest = -1;
+                for (int page : mRows.keySet()) {
+                    if (farthest < 0 || Math.abs(page - mLastAccessedPage) > Math.abs(farthest - mLastAccessedPage)) {
+                        farthest = page;
+                    }
+                }
+                mRows.remove(farthest);
+            }
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getPageExecutor() {
+        if (sPageExecutor == null) {
+            sPageExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "NewsPageThread");
+                }
+            });
+            sPageExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sPageExecutor;
+    }
+}
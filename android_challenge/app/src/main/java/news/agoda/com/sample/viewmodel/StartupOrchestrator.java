@@ -0,0 +1,185 @@
+package news.agoda.com.sample.viewmodel;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import news.agoda.com.sample.AppConstants;
+import news.agoda.com.sample.ImagePipelineSetup;
+import news.agoda.com.sample.model.CacheSetup;
+import news.agoda.com.sample.model.DataSourceFactory;
+import news.agoda.com.sample.model.ReadStateStore;
+
+/**
+ * Runs the start of the process. Only what is needed to show the first news is done right away, and the
+ * list of news is fetched while the UI is inflated:
+ *
+ * - the image pipeline is configured, the list rows need it to inflate.
+ * - the fetch of the news (server, cache or the seed packaged with the app) starts on a background
+ *   thread. The viewmodel takes over this fetch instead of starting its own once the activity is created.
+ *   If no viewmodel takes it within STARTUP_FETCH_TIMEOUT_MS, the process was not started to show the
+ *   news (e.g. for a broadcast), and the fetch is released.
+ * - everything else is deferred until the main thread is idle (see deferUntilIdle).
+ *
+ * Each phase is a trace section ("startup.*"), and the time from the process start to the first news row
+ * drawn on the screen is logged.
+ */
+public class StartupOrchestrator {
+
+    private static final String TAG = AppConstants.APP_TAG + "." + StartupOrchestrator.class.getSimpleName();
+
+    private static final StartupOrchestrator sInstance = new StartupOrchestrator();
+
+    /**
+     * How long the startup fetch waits for a viewmodel to take it. An activity started with the process
+     * is created well before.
+     */
+    private static final long STARTUP_FETCH_TIMEOUT_MS = 10000;
+
+    /**
+     * Time the process started, in uptime milliseconds. 0 until started.
+     */
+    private long mStartTime;
+
+    /**
+     * Time from the process start to the first news row drawn, -1 until it is drawn.
+     */
+    private long mTimeToFirstRow = -1;
+
+    /**
+     * The fetch started with the process, until the viewmodel takes it.
+     */
+    private FetchNewsTask mStartupFetch;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Releases the startup fetch if nobody took it: its data source holds a reference to the cache db
+     * controller, and its list holds pages on disk.
+     */
+    private final Runnable mReleaseStartupFetch = new Runnable() {
+        @Override
+        public void run() {
+            final FetchNewsTask startupFetch = takeStartupFetch();
+            if (startupFetch == null) {
+                return;
+            }
+            Log.d(TAG, "startup fetch not taken, releasing it");
+            // delivers the result right away if the fetch is already complete.
+            startupFetch.registerFetchCompleteListener(new FetchListener() {
+                @Override
+                public void showProgress() {
+                }
+
+                @Override
+                public void onFetchSuccess(PagedNewsList newsList) {
+                    newsList.close();
+                    release(startupFetch);
+                }
+
+                @Override
+                public void onError() {
+                    release(startupFetch);
+                }
+            });
+        }
+
+        private void release(FetchNewsTask startupFetch) {
+            startupFetch.unregisterFetchCompleteListener();
+            startupFetch.getSource().close();
+        }
+    };
+
+    public static StartupOrchestrator getInstance() {
+        return sInstance;
+    }
+
+    private StartupOrchestrator() {
+    }
+
+    /**
+     * Start the process. Called from Application.onCreate.
+     * @param application    The application.
+     */
+    @MainThread
+    public void start(Application application) {
+        mStartTime = SystemClock.uptimeMillis();
+
+        Trace.beginSection("startup.imagePipeline");
+        ImagePipelineSetup.initialize(application);
+        Trace.endSection();
+
+        Trace.beginSection("startup.cache");
+        CacheSetup.initialize(application.getFilesDir().toString());
+        Trace.endSection();
+
+        Trace.beginSection("startup.fetch");
+        DataSourceFactory.Sources sourceType = Util.isInternetAccessAvailable(application) ?
+                DataSourceFactory.Sources.SERVER : DataSourceFactory.Sources.LOCAL;
+        mStartupFetch = new FetchNewsTask(Util.getDataSource(application, sourceType),
+                Util.getImageTargets(application), application.getFilesDir().toString());
+        mStartupFetch.execute();
+        mHandler.postDelayed(mReleaseStartupFetch, STARTUP_FETCH_TIMEOUT_MS);
+        Trace.endSection();
+        Log.d(TAG, "startup fetch from " + sourceType);
+
+        // the read state is loaded in the background while the news are fetched.
+        ReadStateStore.getInstance(application.getFilesDir().toString());
+    }
+
+    /**
+     * Take the fetch started with the process. It is handed out only once.
+     * @return    The fetch, in progress or complete, or null if there is none.
+     */
+    @MainThread
+    @Nullable
+    FetchNewsTask takeStartupFetch() {
+        mHandler.removeCallbacks(mReleaseStartupFetch);
+        FetchNewsTask startupFetch = mStartupFetch;
+        mStartupFetch = null;
+        return startupFetch;
+    }
+
+    /**
+     * Run work which is not needed to show the first news once the main thread has nothing else to do.
+     * @param name    Name of the work, for the trace section.
+     * @param work    The work to run on the main thread.
+     */
+    public void deferUntilIdle(final String name, final Runnable work) {
+        Looper.getMainLooper().getQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                Trace.beginSection("startup.deferred." + name);
+                work.run();
+                Trace.endSection();
+                // run once
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Called when the list has drawn its first news row.
+     */
+    @MainThread
+    public void onFirstRowDrawn() {
+        if (mTimeToFirstRow < 0 && mStartTime > 0) {
+            mTimeToFirstRow = SystemClock.uptimeMillis() - mStartTime;
+            Log.i(TAG, "time to first row " + mTimeToFirstRow + "ms");
+        }
+    }
+
+    /**
+     * @return    time from the process start to the first news row drawn in milliseconds, -1 if no row
+     *            has been drawn yet.
+     */
+    public long getTimeToFirstRowMillis() {
+        return mTimeToFirstRow;
+    }
+}
@@ -2,9 +2,11 @@ package news.agoda.com.sample.viewmodel;
 
 import android.app.Application;
 import android.content.Context;
+import android.content.res.Resources;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 
+import news.agoda.com.sample.R;
 import news.agoda.com.sample.model.DataSource;
 import news.agoda.com.sample.model.DataSourceFactory;
 
@@ -38,6 +40,19 @@ class Util {
      */
     static DataSource getDataSource(Application application, DataSourceFactory.Sources SOURCE_TYPE) {
         return DataSourceFactory.getDataSource(SOURCE_TYPE,
-                application.getApplicationContext().getFilesDir().toString());
+                application.getApplicationContext().getFilesDir().toString(), application.getAssets());
+    }
+
+    /**
+     * Returns the pixel sizes of the news images in the list and the details view.
+     * @param application    Application context to get the resources.
+     * @return    The sizes for choosing the news images.
+     */
+    static NewsRowModel.ImageTargets getImageTargets(Application application) {
+        Resources resources = application.getResources();
+        int thumbnailSize = resources.getDimensionPixelSize(R.dimen.news_thumbnail_size);
+        return new NewsRowModel.ImageTargets(thumbnailSize, thumbnailSize,
+                resources.getDimensionPixelSize(R.dimen.news_hero_width),
+                resources.getDimensionPixelSize(R.dimen.news_hero_height));
     }
 }
@@ -0,0 +1,63 @@
+package news.agoda.com.sample;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PerfHistogramTest {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void countMeanAndMax() {
+        PerfHistogram histogram = new PerfHistogram("test");
+        histogram.record(2 * MS);
+        histogram.record(4 * MS);
+        histogram.record(30 * MS);
+        assertEquals(3, histogram.getCount());
+        assertEquals(12000, histogram.getMeanMicros());
+        assertEquals(30000, histogram.getMaxMicros());
+    }
+
+    /**
+     * Frames longer than the frame budget are counted as slow.
+     */
+    @Test
+    public void countAboveFrameBudget() {
+        PerfHistogram histogram = new PerfHistogram("frames");
+        for (int i = 0; i < 90; i++) {
+            histogram.record(10 * MS);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(40 * MS);
+        }
+        assertEquals(10, histogram.countAbove(16700));
+        assertEquals(100, histogram.countAbove(0));
+    }
+
+    /**
+     * Percentiles are estimated by the upper bound of their bucket, and never exceed the max.
+     */
+    @Test
+    public void percentiles() {
+        PerfHistogram histogram = new PerfHistogram("frames");
+        for (int i = 0; i < 99; i++) {
+            histogram.record(3 * MS);
+        }
+        histogram.record(300 * MS);
+        assertEquals(4000, histogram.getPercentileMicros(50));
+        assertEquals(4000, histogram.getPercentileMicros(99));
+        assertEquals(300000, histogram.getPercentileMicros(100));
+        assertTrue(histogram.toString().startsWith("frames: n=100"));
+    }
+
+    @Test
+    public void reset() {
+        PerfHistogram histogram = new PerfHistogram("test");
+        histogram.record(5 * MS);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(90));
+    }
+}
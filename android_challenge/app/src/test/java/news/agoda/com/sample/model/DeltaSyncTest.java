@@ -0,0 +1,235 @@
+package news.agoda.com.sample.model;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import news.agoda.com.sample.viewmodel.MediaEntity;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class DeltaSyncTest {
+
+    private FeedStandInServer mServer;
+
+    private final Random mRandom = new Random(46);
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FeedStandInServer();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.close();
+    }
+
+    /**
+     * The first refresh fetches the feed in full, the next one only gets the delta, and both give the
+     * news the server has.
+     */
+    @Test
+    public void refreshFetchesDelta() {
+        NewsDataBaseController newsDB = mock(NewsDataBaseController.class);
+        FeedEndpoint feed = new FeedEndpoint("delta-refresh", mServer.getUrl()).withDeltaSync();
+        FeedScheduler scheduler = new FeedScheduler(null);
+        scheduler.setSubscriptions(Collections.singletonList(new FeedSubscription(feed)));
+        ServerDataSource dataSource = new ServerDataSource(newsDB, scheduler, 1, RetryPolicy.DEFAULT);
+        List<NewsEntity> newsList = createNewsList(0, 200);
+        mServer.publish(newsList);
+
+        assertEquals(urlsOf(newsList), urlsOf(dataSource.fetchNewsList()));
+        assertEquals(1, mServer.getFullResponses());
+        verify(newsDB).writeFeedState(eq("delta-refresh"), anyListOf(NewsEntity.class));
+
+        List<NewsEntity> nextNewsList = churn(newsList, 200, 5, 3, 2);
+        mServer.publish(nextNewsList);
+        long bytesServed = mServer.getBytesServed();
+
+        assertEquals(urlsOf(nextNewsList), urlsOf(dataSource.fetchNewsList()));
+        assertEquals(1, mServer.getDeltaResponses());
+        assertEquals(1, mServer.getFullResponses());
+        assertTrue(mServer.getBytesServed() - bytesServed < bytesServed / 10);
+    }
+
+    /**
+     * A client whose news the server does not know gets the full news, and a delta which does not apply
+     * to the news of the client is detected.
+     */
+    @Test
+    public void staleBaseIsDetected() throws Exception {
+        List<NewsEntity> newsList = createNewsList(0, 20);
+        mServer.publish(newsList);
+        List<NewsEntity> nextNewsList = churn(newsList, 20, 2, 1, 1);
+        mServer.publish(nextNewsList);
+
+        // the server does not know this state, it sends everything.
+        LinkedHashMap<String, NewsEntity> unknown = DeltaSync.index(newsList.subList(0, 19));
+        String response = mServer.respond(query(unknown));
+        assertFalse(DeltaSync.isDelta(new JSONObject(response)));
+        DeltaResponseProcessor processor = new DeltaResponseProcessor(unknown);
+        assertEquals(urlsOf(nextNewsList), urlsOf(processor.execute(response)));
+
+        // a delta meant for other news than the base.
+        String delta = mServer.respond(query(DeltaSync.index(newsList)));
+        assertTrue(DeltaSync.isDelta(new JSONObject(delta)));
+        processor = new DeltaResponseProcessor(unknown);
+        assertNull(processor.execute(delta));
+        assertTrue(processor.isBaseStale());
+
+        processor = new DeltaResponseProcessor(DeltaSync.index(newsList));
+        assertEquals(urlsOf(nextNewsList), urlsOf(processor.execute(delta)));
+        assertFalse(processor.isBaseStale());
+    }
+
+    /**
+     * Digests keep all their 64 bits in the url, and do not depend on the order of the news.
+     */
+    @Test
+    public void digestIsOrderIndependent() {
+        for (long digest : new long[] {0, 1, -1, Long.MIN_VALUE, 0x123456789abcdefL}) {
+            assertEquals(digest, DeltaSync.parseDigest(DeltaSync.formatDigest(digest)));
+        }
+        List<NewsEntity> newsList = createNewsList(0, 10);
+        List<NewsEntity> reversed = new ArrayList<>(newsList);
+        Collections.reverse(reversed);
+        assertEquals(DeltaSync.digest(newsList), DeltaSync.digest(reversed));
+
+        NewsEntity changed = createNews(3);
+        changed.setSummary(changed.getSummary() + " Updated.");
+        List<NewsEntity> changedList = new ArrayList<>(newsList);
+        changedList.set(3, changed);
+        assertTrue(DeltaSync.digest(newsList) != DeltaSync.digest(changedList));
+    }
+
+    /**
+     * For a feed in which 1% of the news change between two refreshes, the delta is a small fraction of
+     * the full response.
+     */
+    @Test
+    public void deltaIsSmallerThanFullResponse() throws Exception {
+        int size = 2000;
+        List<NewsEntity> newsList = createNewsList(0, size);
+        mServer.publish(newsList);
+        mServer.publish(churn(newsList, size, 10, 5, 5));
+        String full = mServer.respond(null);
+        String delta = mServer.respond(query(DeltaSync.index(newsList)));
+
+        assertTrue(delta.length() * 20 < full.length());
+    }
+
+    /**
+     * Measures the parse time of a full response and of a delta for a feed in which 1% of the news change
+     * between two refreshes. The times depend on the machine, so it is run by hand; they are in the
+     * message of the assertion.
+     */
+    @Ignore("benchmark, run by hand")
+    @Test
+    public void benchmarkFullVsDelta() throws Exception {
+        int size = 2000;
+        List<NewsEntity> newsList = createNewsList(0, size);
+        mServer.publish(newsList);
+        mServer.publish(churn(newsList, size, 10, 5, 5));
+        LinkedHashMap<String, NewsEntity> base = DeltaSync.index(newsList);
+        String full = mServer.respond(null);
+        String delta = mServer.respond(query(base));
+
+        long fullTime = Long.MAX_VALUE;
+        long deltaTime = Long.MAX_VALUE;
+        for (int run = 0; run < 7; run++) {
+            long start = System.nanoTime();
+            assertNotNull(new NetworkResponseProcessor().execute(full));
+            fullTime = Math.min(fullTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            assertNotNull(new DeltaResponseProcessor(base).execute(delta));
+            deltaTime = Math.min(deltaTime, System.nanoTime() - start);
+        }
+        assertTrue("articles=" + size + " full=" + full.length() + " chars " + fullTime / 1000
+                + "us, delta=" + delta.length() + " chars " + deltaTime / 1000 + "us", deltaTime < fullTime);
+    }
+
+    private static String query(LinkedHashMap<String, NewsEntity> news) {
+        String url = DeltaSync.Cursor.of(news).appendTo("");
+        return url.substring(1);
+    }
+
+    /**
+     * The next state of a feed: some news are added, some changed and some removed.
+     */
+    private List<NewsEntity> churn(List<NewsEntity> newsList, int nextId, int added, int changed,
+                                   int removed) {
+        List<NewsEntity> next = new ArrayList<>(newsList.subList(removed, newsList.size()));
+        for (int i = 0; i < changed; i++) {
+            NewsEntity news = createNews(nextId + i);
+            news.setUrl(next.get(i * 7).getUrl());
+            next.set(i * 7, news);
+        }
+        next.addAll(0, createNewsList(nextId + changed, added));
+        return next;
+    }
+
+    private List<NewsEntity> createNewsList(int firstId, int count) {
+        List<NewsEntity> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            newsList.add(createNews(firstId + i));
+        }
+        return newsList;
+    }
+
+    /**
+     * A news with random words, so that news are not near duplicates of each other.
+     */
+    private NewsEntity createNews(int id) {
+        NewsEntity news = new NewsEntity();
+        news.setUrl("http://example.com/story/" + id);
+        news.setTitle(words(8));
+        news.setSummary(words(30));
+        news.setSection("Technology");
+        news.setByline("By A WRITER");
+        news.setPublishedDate(String.format("2015-08-%02dT%02d:%02d:00-5:00",
+                1 + id / 1440 % 28, id / 60 % 24, id % 60));
+        MediaEntity media = new MediaEntity();
+        media.setUrl("http://example.com/images/" + id + ".jpg");
+        media.setFormat("Standard Thumbnail");
+        news.setMediaEntityList(Arrays.asList(media));
+        return news;
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append("w").append(Integer.toString(mRandom.nextInt(50000), 36));
+        }
+        return text.toString();
+    }
+
+    private static Set<String> urlsOf(List<NewsEntity> newsList) {
+        assertNotNull(newsList);
+        Set<String> urls = new HashSet<>();
+        for (NewsEntity news : newsList) {
+            urls.add(news.getUrl());
+        }
+        assertEquals(newsList.size(), urls.size());
+        return urls;
+    }
+}
@@ -0,0 +1,219 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class FeedSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    private static final long HOUR = 60 * MINUTE;
+
+    private final FeedSubscription mBreaking = new FeedSubscription(
+            new FeedEndpoint("breaking", "http://example.com/breaking"),
+            10 * MINUTE, FeedSubscription.Priority.HIGH, FeedSubscription.UNLIMITED_BYTES);
+
+    private final FeedSubscription mHome = new FeedSubscription(
+            new FeedEndpoint("home", "http://example.com/home"),
+            HOUR, FeedSubscription.Priority.NORMAL, FeedSubscription.UNLIMITED_BYTES);
+
+    private final FeedSubscription mScience = new FeedSubscription(
+            new FeedEndpoint("science", "http://example.com/science"),
+            24 * HOUR, FeedSubscription.Priority.LOW, 1000);
+
+    private File mStateFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mStateFile = File.createTempFile("feed_schedule", ".bin");
+        assertTrue(mStateFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mStateFile.delete();
+    }
+
+    /**
+     * Feeds never fetched are due, by priority. Once fetched, a feed is due after its interval, or a
+     * little earlier to join the refresh of another feed.
+     */
+    @Test
+    public void feedsAreDueAfterTheirInterval() {
+        FeedScheduler scheduler = new FeedScheduler(null);
+        scheduler.setSubscriptions(Arrays.asList(mScience, mHome, mBreaking));
+
+        assertEquals(Arrays.asList(mBreaking, mHome, mScience), scheduler.getDueFeeds(0));
+        long start = 1000 * HOUR;
+        for (FeedSubscription subscription : scheduler.getDueFeeds(start)) {
+            scheduler.onFeedFetched(subscription, start, 100);
+        }
+        assertEquals(Collections.emptyList(), scheduler.getDueFeeds(start + MINUTE));
+        // the quarter of the interval of breaking is earlier than MAX_EARLY_MILLIS.
+        assertEquals(start + 10 * MINUTE - 10 * MINUTE / 4, scheduler.getNextRefreshMillis());
+        assertEquals(Collections.singletonList(mBreaking), scheduler.getDueFeeds(start + 8 * MINUTE));
+
+        scheduler.onFeedFetched(mBreaking, start + 50 * MINUTE, 100);
+        assertEquals(start + HOUR - FeedScheduler.MAX_EARLY_MILLIS, scheduler.getNextRefreshMillis());
+        // home is due at 55 minutes, it joins the refresh of breaking at 58 minutes.
+        assertEquals(Arrays.asList(mBreaking, mHome), scheduler.getDueFeeds(start + 58 * MINUTE));
+    }
+
+    /**
+     * A feed which spent its daily byte budget is not due until the budget is renewed.
+     */
+    @Test
+    public void byteBudgetDefersFeed() {
+        FeedScheduler scheduler = new FeedScheduler(null);
+        FeedSubscription chatty = new FeedSubscription(mScience.getFeed(), MINUTE,
+                FeedSubscription.Priority.NORMAL, 1000);
+        scheduler.setSubscriptions(Collections.singletonList(chatty));
+        long start = 1000 * HOUR;
+
+        scheduler.onFeedFetched(chatty, start, 600);
+        assertEquals(Collections.singletonList(chatty), scheduler.getDueFeeds(start + MINUTE));
+        scheduler.onFeedFetched(chatty, start + MINUTE, 600);
+
+        assertEquals(Collections.emptyList(), scheduler.getDueFeeds(start + 2 * MINUTE));
+        assertEquals(Collections.emptyList(), scheduler.getDueFeeds(start + 23 * HOUR));
+        assertEquals(start + FeedScheduler.BUDGET_WINDOW_MILLIS, scheduler.getNextRefreshMillis());
+        assertEquals(Collections.singletonList(chatty),
+                scheduler.getDueFeeds(start + FeedScheduler.BUDGET_WINDOW_MILLIS));
+
+        // a new window starts with the next fetch.
+        scheduler.onFeedFetched(chatty, start + FeedScheduler.BUDGET_WINDOW_MILLIS, 600);
+        assertEquals(Collections.singletonList(chatty),
+                scheduler.getDueFeeds(start + FeedScheduler.BUDGET_WINDOW_MILLIS + MINUTE));
+    }
+
+    /**
+     * The fetch times survive a restart. They are written once for all the feeds of a refresh, and read
+     * when they are first needed.
+     */
+    @Test
+    public void fetchTimesArePersisted() {
+        FeedScheduler scheduler = new FeedScheduler(mStateFile);
+        scheduler.setSubscriptions(Arrays.asList(mHome, mBreaking));
+        long start = 1000 * HOUR;
+        scheduler.onFeedFetched(mHome, start, 100);
+        scheduler.onFeedFetched(mBreaking, start, 100);
+        assertFalse(mStateFile.exists());
+        scheduler.save();
+        assertTrue(mStateFile.exists());
+
+        FeedScheduler restarted = new FeedScheduler(mStateFile);
+        restarted.setSubscriptions(Arrays.asList(mHome, mBreaking));
+        // not read yet.
+        assertEquals(Long.MAX_VALUE, restarted.getNextRefreshMillis());
+        assertEquals(Collections.emptyList(), restarted.getDueFeeds(start + MINUTE));
+        assertEquals(start + 10 * MINUTE - 10 * MINUTE / 4, restarted.getNextRefreshMillis());
+        assertEquals(Collections.singletonList(mBreaking), restarted.getDueFeeds(start + 50 * MINUTE));
+    }
+
+    /**
+     * A refresh fetches only the due feeds, the news of the fresh ones are the ones they sent last.
+     */
+    @Test
+    public void refreshSkipsFreshFeeds() throws Exception {
+        FeedStandInServer breakingServer = new FeedStandInServer();
+        FeedStandInServer weeklyServer = new FeedStandInServer();
+        try {
+            FeedSubscription breaking = new FeedSubscription(
+                    new FeedEndpoint("skip-breaking", breakingServer.getUrl()));
+            FeedSubscription weekly = new FeedSubscription(
+                    new FeedEndpoint("skip-weekly", weeklyServer.getUrl()),
+                    7 * 24 * HOUR, FeedSubscription.Priority.LOW, FeedSubscription.UNLIMITED_BYTES);
+            FeedScheduler scheduler = new FeedScheduler(null);
+            scheduler.setSubscriptions(Arrays.asList(breaking, weekly));
+            ServerDataSource dataSource = new ServerDataSource(mock(NewsDataBaseController.class), scheduler, 2,
+                    RetryPolicy.DEFAULT);
+            breakingServer.publish(Collections.singletonList(createNews("breaking/1")));
+            weeklyServer.publish(Collections.singletonList(createNews("weekly/1")));
+
+            assertEquals(urls("breaking/1", "weekly/1"), urlsOf(dataSource.fetchNewsList()));
+            assertEquals(1, weeklyServer.getFullResponses());
+
+            breakingServer.publish(Collections.singletonList(createNews("breaking/2")));
+            weeklyServer.publish(Collections.singletonList(createNews("weekly/2")));
+
+            assertEquals(urls("breaking/2", "weekly/1"), urlsOf(dataSource.fetchNewsList()));
+            assertEquals(2, breakingServer.getFullResponses());
+            assertEquals(1, weeklyServer.getFullResponses());
+        } finally {
+            breakingServer.close();
+            weeklyServer.close();
+        }
+    }
+
+    /**
+     * If all the due feeds fail, the refresh shows the news of the fresh feeds rather than none.
+     */
+    @Test
+    public void refreshKeepsFreshFeedsWhenDueFeedsFail() throws Exception {
+        FeedStandInServer breakingServer = new FeedStandInServer();
+        FeedStandInServer weeklyServer = new FeedStandInServer();
+        try {
+            FeedSubscription breaking = new FeedSubscription(
+                    new FeedEndpoint("fail-breaking", breakingServer.getUrl()));
+            FeedSubscription weekly = new FeedSubscription(
+                    new FeedEndpoint("fail-weekly", weeklyServer.getUrl()),
+                    7 * 24 * HOUR, FeedSubscription.Priority.LOW, FeedSubscription.UNLIMITED_BYTES);
+            FeedScheduler scheduler = new FeedScheduler(null);
+            scheduler.setSubscriptions(Arrays.asList(breaking, weekly));
+            ServerDataSource dataSource = new ServerDataSource(mock(NewsDataBaseController.class), scheduler, 2,
+                    new RetryPolicy(2000, 2, 10, 40, 500, 500));
+            breakingServer.publish(Collections.singletonList(createNews("breaking/1")));
+            weeklyServer.publish(Collections.singletonList(createNews("weekly/1")));
+            assertEquals(urls("breaking/1", "weekly/1"), urlsOf(dataSource.fetchNewsList()));
+
+            breakingServer.close();
+
+            assertEquals(urls("weekly/1"), urlsOf(dataSource.fetchNewsList()));
+            assertEquals(1, weeklyServer.getFullResponses());
+        } finally {
+            breakingServer.close();
+            weeklyServer.close();
+        }
+    }
+
+    private static NewsEntity createNews(String path) {
+        NewsEntity news = new NewsEntity();
+        news.setUrl("http://example.com/" + path);
+        news.setTitle("Title " + path);
+        news.setPublishedDate("2015-08-10T10:00:00-5:00");
+        return news;
+    }
+
+    private static Set<String> urls(String... paths) {
+        Set<String> urls = new HashSet<>();
+        for (String path : paths) {
+            urls.add("http://example.com/" + path);
+        }
+        return urls;
+    }
+
+    private static Set<String> urlsOf(List<NewsEntity> newsList) {
+        Set<String> urls = new HashSet<>();
+        for (NewsEntity news : new ArrayList<>(newsList)) {
+            urls.add(news.getUrl());
+        }
+        return urls;
+    }
+}
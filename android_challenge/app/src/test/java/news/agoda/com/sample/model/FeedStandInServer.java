@@ -0,0 +1,194 @@
+package news.agoda.com.sample.model;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+/**
+ * A local stand-in for a feed server which speaks the delta sync protocol (see DeltaSync), to measure
+ * delta sync against full fetches in tests.
+ *
+ * The server serves the news last published. It remembers the MAX_GENERATIONS states published before by
+ * their digest, and sends a delta to a client whose cursor matches one of them, the full news otherwise.
+ */
+final class FeedStandInServer implements Closeable {
+
+    static final int MAX_GENERATIONS = 8;
+
+    private static final Gson sGson = new Gson();
+
+    private final HttpServer mServer;
+
+    // the published states by digest, the oldest first. Guarded by this.
+    private final LinkedHashMap<Long, Generation> mGenerations = new LinkedHashMap<>();
+
+    private Generation mCurrent = new Generation(new LinkedHashMap<String, NewsEntity>());
+
+    private long mBytesServed;
+
+    private int mDeltaResponses;
+
+    private int mFullResponses;
+
+    FeedStandInServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = respond(exchange.getRequestURI().getRawQuery()).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+    }
+
+    /**
+     * @return    the url of the feed.
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/feed";
+    }
+
+    /**
+     * Publish a new state of the feed.
+     */
+    synchronized void publish(List<NewsEntity> newsList) {
+        mCurrent = new Generation(DeltaSync.index(newsList));
+        mGenerations.remove(mCurrent.mDigest);
+        mGenerations.put(mCurrent.mDigest, mCurrent);
+        if (mGenerations.size() > MAX_GENERATIONS) {
+            Iterator<Long> oldest = mGenerations.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Answer a request of the feed.
+     * @param query    the query of the url, null if there is none.
+     * @return    the response.
+     */
+    synchronized String respond(String query) {
+        Map<String, String> params = parseQuery(query);
+        DeltaSync.Cursor cursor = DeltaSync.Cursor.parse(params.get(DeltaSync.PARAM_SINCE),
+                params.get(DeltaSync.PARAM_DIGEST));
+        Generation base = cursor == null ? null : mGenerations.get(cursor.getDigest());
+        String response;
+        if (base == null || base.mSince != cursor.getSince()) {
+            response = fullResponse();
+            mFullResponses++;
+        } else {
+            response = deltaResponse(base);
+            mDeltaResponses++;
+        }
+        mBytesServed += response.length();
+        return response;
+    }
+
+    private String fullResponse() {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "OK");
+        response.add("results", sGson.toJsonTree(new ArrayList<>(mCurrent.mNews.values())));
+        return response.toString();
+    }
+
+    private String deltaResponse(Generation base) {
+        JsonArray added = new JsonArray();
+        JsonArray changed = new JsonArray();
+        JsonArray removed = new JsonArray();
+        for (Map.Entry<String, NewsEntity> entry : mCurrent.mNews.entrySet()) {
+            NewsEntity old = base.mNews.get(entry.getKey());
+            if (old == null) {
+                added.add(sGson.toJsonTree(entry.getValue()));
+            } else if (DeltaSync.fingerprint(old) != DeltaSync.fingerprint(entry.getValue())) {
+                changed.add(sGson.toJsonTree(entry.getValue()));
+            }
+        }
+        for (String key : base.mNews.keySet()) {
+            if (!mCurrent.mNews.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "OK");
+        response.addProperty(DeltaSync.KEY_SYNC, DeltaSync.SYNC_DELTA);
+        response.addProperty(DeltaSync.KEY_DIGEST, DeltaSync.formatDigest(mCurrent.mDigest));
+        response.add(DeltaSync.KEY_ADDED, added);
+        response.add(DeltaSync.KEY_CHANGED, changed);
+        response.add(DeltaSync.KEY_REMOVED, removed);
+        return response.toString();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        try {
+            for (String param : query.split("&")) {
+                int equals = param.indexOf('=');
+                if (equals > 0) {
+                    params.put(URLDecoder.decode(param.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(param.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return params;
+    }
+
+    synchronized long getBytesServed() {
+        return mBytesServed;
+    }
+
+    synchronized int getDeltaResponses() {
+        return mDeltaResponses;
+    }
+
+    synchronized int getFullResponses() {
+        return mFullResponses;
+    }
+
+    @Override
+    public void close() {
+        mServer.stop(0);
+    }
+
+    /**
+     * A published state of the feed.
+     */
+    private static final class Generation {
+        final LinkedHashMap<String, NewsEntity> mNews;
+        final long mDigest;
+        final long mSince;
+
+        Generation(LinkedHashMap<String, NewsEntity> news) {
+            DeltaSync.Cursor cursor = DeltaSync.Cursor.of(news);
+            mNews = news;
+            mDigest = cursor.getDigest();
+            mSince = cursor.getSince();
+        }
+    }
+}
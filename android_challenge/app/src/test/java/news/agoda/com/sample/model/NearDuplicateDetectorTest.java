@@ -0,0 +1,172 @@
+package news.agoda.com.sample.model;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NearDuplicateDetectorTest {
+
+    private static final String SUMMARY = "Amazon is known for its ruthless pursuit of efficiency, but the "
+            + "company says a recent article about its workplace does not describe the Amazon it knows";
+
+    /**
+     * A story with a reworded title and one changed word is a near duplicate, another story is not.
+     */
+    @Test
+    public void similarStoriesAreNearDuplicates() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(4);
+
+        assertEquals(-1, detector.findOrAdd(NearDuplicateDetector.signature(
+                createNews("Inside Amazon: Wrestling Big Ideas in a Bruising Workplace", SUMMARY))));
+        assertEquals(0, detector.findOrAdd(NearDuplicateDetector.signature(
+                createNews("Inside Amazon: Wrestling Big Ideas in a Bruising Workplace",
+                        SUMMARY.replace("recent", "new")))));
+        assertEquals(-1, detector.findOrAdd(NearDuplicateDetector.signature(
+                createNews("Work Policies May Be Kinder, but Brutal Competition Isn't",
+                        "Top employers are trying to make life easier for their workers, but the pressure "
+                                + "to compete is as intense as ever"))));
+        assertEquals(2, detector.size());
+    }
+
+    /**
+     * Short texts have no signature, so they are never considered duplicates.
+     */
+    @Test
+    public void shortTextsAreNotCompared() {
+        assertNull(NearDuplicateDetector.signature(createNews("Markets", "")));
+        NearDuplicateDetector detector = new NearDuplicateDetector(4);
+        assertEquals(-1, detector.findOrAdd(null));
+        assertEquals(0, detector.size());
+    }
+
+    /**
+     * The signature of a news is computed once and kept with it, until its text changes.
+     */
+    @Test
+    public void signatureIsKeptWithTheNews() {
+        NewsEntity news = createNews("Inside Amazon: Wrestling Big Ideas in a Bruising Workplace", SUMMARY);
+        int[] signature = NearDuplicateDetector.signatureOf(news);
+        assertArrayEquals(NearDuplicateDetector.signature(news), signature);
+        assertSame(signature, NearDuplicateDetector.signatureOf(news));
+
+        news.setSummary(SUMMARY.replace("recent", "new"));
+        assertNotSame(signature, NearDuplicateDetector.signatureOf(news));
+
+        NewsEntity shortNews = createNews("Markets", "");
+        assertNull(NearDuplicateDetector.signatureOf(shortNews));
+        assertNotNull(shortNews.getNearDuplicateSignature());
+        assertNull(NearDuplicateDetector.signatureOf(shortNews));
+    }
+
+    /**
+     * Merged feeds keep the newest copy of a story sent twice with different urls.
+     */
+    @Test
+    public void mergeDropsNearDuplicates() {
+        NewsEntity newer = createNews("Inside Amazon: Wrestling Big Ideas in a Bruising Workplace", SUMMARY);
+        newer.setPublishedDate("2015-08-18T06:00:00-5:00");
+        NewsEntity older = createNews("Inside Amazon: Wrestling Big Ideas in a Bruising Workplace!", SUMMARY);
+        older.setPublishedDate("2015-08-18T04:00:00-5:00");
+        List<NewsEntity> feed1 = new ArrayList<>();
+        feed1.add(older);
+        List<NewsEntity> feed2 = new ArrayList<>();
+        feed2.add(newer);
+
+        List<NewsEntity> merged = NewsMerger.merge(Arrays.asList(feed1, feed2));
+
+        assertEquals(1, merged.size());
+        assertSame(newer, merged.get(0));
+    }
+
+    /**
+     * 100k news with 10% near duplicates: the duplicates are found in time linear in the number of news,
+     * without false positives. It takes seconds, so it is run by hand.
+     */
+    @Ignore("benchmark, run by hand")
+    @Test
+    public void benchmark100kNews() {
+        Random random = new Random(1);
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+        }
+        List<NewsEntity> newsList = new ArrayList<>();
+        List<Boolean> isDuplicate = new ArrayList<>();
+        List<NewsEntity> originals = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            if (!originals.isEmpty() && random.nextInt(10) == 0) {
+                NewsEntity original = originals.get(random.nextInt(originals.size()));
+                String[] words = original.getSummary().split(" ");
+                words[random.nextInt(words.length)] = vocabulary[random.nextInt(vocabulary.length)];
+                newsList.add(createNews(original.getTitle(), join(words)));
+                isDuplicate.add(true);
+            } else {
+                NewsEntity news = createNews(words(random, vocabulary, 8), words(random, vocabulary, 30));
+                originals.add(news);
+                newsList.add(news);
+                isDuplicate.add(false);
+            }
+        }
+
+        long start = System.nanoTime();
+        NearDuplicateDetector detector = new NearDuplicateDetector(newsList.size());
+        int found = 0;
+        int falsePositives = 0;
+        int duplicates = 0;
+        for (int i = 0; i < newsList.size(); i++) {
+            boolean isNearDuplicate = detector.findOrAdd(NearDuplicateDetector.signature(newsList.get(i))) >= 0;
+            if (isDuplicate.get(i)) {
+                duplicates++;
+                found += isNearDuplicate ? 1 : 0;
+            } else if (isNearDuplicate) {
+                falsePositives++;
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(0, falsePositives);
+        assertTrue("found " + found + " of " + duplicates, found >= duplicates * 0.95);
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 20000);
+    }
+
+    private static NewsEntity createNews(String title, String summary) {
+        NewsEntity news = new NewsEntity();
+        news.setTitle(title);
+        news.setSummary(summary);
+        news.setUrl("http://example.com/" + title.hashCode() + "/" + summary.hashCode());
+        return news;
+    }
+
+    private static String words(Random random, String[] vocabulary, int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = vocabulary[random.nextInt(vocabulary.length)];
+        }
+        return join(words);
+    }
+
+    private static String join(String[] words) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : words) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(word);
+        }
+        return builder.toString();
+    }
+}
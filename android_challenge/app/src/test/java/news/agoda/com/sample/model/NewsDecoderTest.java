@@ -0,0 +1,153 @@
+package news.agoda.com.sample.model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NewsDecoderTest {
+
+    /**
+     * The parallel decoder must produce the same list, in the same order, as the serial decoder.
+     * @throws JSONException
+     */
+    @Test
+    public void parallelDecodeKeepsOrder() throws JSONException {
+        ArrayList<NewsEntity> serial = NewsDecoder.decode(createResults(1000), Integer.MAX_VALUE);
+        ArrayList<NewsEntity> parallel = NewsDecoder.decode(createResults(1000), 0);
+
+        assertEquals(1000, parallel.size());
+        assertEquals(serial, parallel);
+        for (int i = 0; i < parallel.size(); i++) {
+            assertEquals("http://example.com/story/" + i, parallel.get(i).getUrl());
+        }
+    }
+
+    /**
+     * Articles with an empty-string multimedia value must be decoded with an empty media list in both
+     * the serial and the parallel decoder.
+     * @throws JSONException
+     */
+    @Test
+    public void emptyMultimediaIsFixed() throws JSONException {
+        JSONArray results = createResults(300);
+        results.getJSONObject(5).put("multimedia", "");
+        results.getJSONObject(299).put("multimedia", "");
+
+        ArrayList<NewsEntity> parallel = NewsDecoder.decode(results, 0);
+        assertTrue(parallel.get(5).getMediaEntityList().isEmpty());
+        assertTrue(parallel.get(299).getMediaEntityList().isEmpty());
+
+        ArrayList<NewsEntity> serial = NewsDecoder.decode(createResults(1), Integer.MAX_VALUE);
+        assertEquals(2, serial.get(0).getMediaEntityList().size());
+    }
+
+    /**
+     * An article that cannot be decoded fails the whole decode with a JSONException.
+     * @throws JSONException
+     */
+    @Test(expected = JSONException.class)
+    public void parallelDecodeErrorIsReported() throws JSONException {
+        JSONArray results = createResults(500);
+        results.getJSONObject(400).put("multimedia", 42);
+        NewsDecoder.decode(results, 0);
+    }
+
+    /**
+     * Measures the serial and the parallel decoder for increasing feed sizes and finds the crossover
+     * point, i.e. the smallest feed for which the parallel decoder is faster. This is the measurement
+     * behind NewsDecoder.SERIAL_THRESHOLD. The timings depend on the machine, so it is run by hand; the
+     * table of the measurements and the crossover point are printed to the test output.
+     * @throws JSONException
+     */
+    @Ignore("benchmark, run by hand")
+    @Test
+    public void benchmarkSerialVsParallel() throws JSONException {
+        int[] sizes = {16, 32, 64, 128, 256, 512, 1024, 4096, 16384};
+        int crossover = -1;
+
+        // warm up both code paths
+        for (int i = 0; i < 5; i++) {
+            NewsDecoder.decode(createResults(2048), Integer.MAX_VALUE);
+            NewsDecoder.decode(createResults(2048), 0);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        StringBuilder report = new StringBuilder("cores=" + cores + "\n");
+        report.append("articles\tserial(us)\tparallel(us)\n");
+        for (int size : sizes) {
+            long serial = measure(size, Integer.MAX_VALUE);
+            long parallel = measure(size, 0);
+            report.append(size).append('\t').append(serial / 1000).append('\t').append(parallel / 1000)
+                    .append('\n');
+            if (crossover < 0 && parallel < serial) {
+                crossover = size;
+            }
+        }
+        report.append("crossover=").append(crossover)
+                .append(" threshold=").append(NewsDecoder.SERIAL_THRESHOLD);
+        System.out.println(report);
+        // with several cores, a large feed decodes faster in parallel.
+        assertTrue(report.toString(), cores == 1 || crossover > 0);
+    }
+
+    /**
+     * Median time in nanoseconds to decode a feed of the given size.
+     */
+    private long measure(int size, int serialThreshold) throws JSONException {
+        int runs = 7;
+        long[] times = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            // decoding mutates the array, so every run gets a fresh one
+            JSONArray results = createResults(size);
+            long start = System.nanoTime();
+            NewsDecoder.decode(results, serialThreshold);
+            times[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    private JSONArray createResults(int size) throws JSONException {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            JSONObject article = new JSONObject();
+            article.put("section", "Technology");
+            article.put("subsection", "");
+            article.put("title", "Title of the story number " + i);
+            article.put("abstract", "A short summary of the story number " + i + " which is a bit longer.");
+            article.put("url", "http://example.com/story/" + i);
+            article.put("byline", "By A WRITER");
+            article.put("published_date", "2015-08-18T04:00:00-5:00");
+
+            JSONArray multimedia = new JSONArray();
+            multimedia.put(createMedia(i, "Standard Thumbnail", 75, 75));
+            multimedia.put(createMedia(i, "superJumbo", 1536, 2048));
+            article.put("multimedia", multimedia);
+            results.put(article);
+        }
+        return results;
+    }
+
+    private JSONObject createMedia(int i, String format, int height, int width) throws JSONException {
+        JSONObject media = new JSONObject();
+        media.put("url", "http://example.com/images/" + i + "-" + width + ".jpg");
+        media.put("format", format);
+        media.put("height", height);
+        media.put("width", width);
+        media.put("type", "image");
+        media.put("subtype", "photo");
+        media.put("caption", "A caption");
+        media.put("copyright", "A photographer");
+        return media;
+    }
+}
@@ -0,0 +1,91 @@
+package news.agoda.com.sample.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NewsFacetsTest {
+
+    private static final List<String> NONE = Collections.emptyList();
+
+    /**
+     * Values of a dimension are OR'ed, the dimensions are AND'ed.
+     */
+    @Test
+    public void filterCombinesDimensions() {
+        NewsFacets facets = NewsFacets.build(Arrays.asList(
+                createNews("Business Day", "Technology"),
+                createNews("World", "Europe"),
+                createNews("Business Day", ""),
+                createNews("Technology", "Technology"),
+                createNews(null, "Europe")));
+        long[] bits = facets.newBits();
+
+        assertEquals(5, facets.filter(NONE, NONE, bits));
+        assertEquals(2, facets.filter(Arrays.asList("Business Day"), NONE, bits));
+        assertArrayEquals(new int[] {0, 2}, NewsFacets.toOrdinals(bits));
+        assertEquals(3, facets.filter(Arrays.asList("Business Day", "World"), NONE, bits));
+        assertArrayEquals(new int[] {0, 1, 2}, NewsFacets.toOrdinals(bits));
+        facets.filter(Arrays.asList("Business Day", "World"), Arrays.asList("Technology"), bits);
+        assertArrayEquals(new int[] {0}, NewsFacets.toOrdinals(bits));
+        facets.filter(NONE, Arrays.asList("Europe", "Technology"), bits);
+        assertArrayEquals(new int[] {0, 1, 3, 4}, NewsFacets.toOrdinals(bits));
+        assertEquals(0, facets.filter(Arrays.asList("Unknown"), NONE, bits));
+    }
+
+    /**
+     * Counts are kept per value, and can be narrowed to a filter result.
+     */
+    @Test
+    public void countsPerValue() {
+        NewsFacets facets = NewsFacets.build(Arrays.asList(
+                createNews("Business Day", "Technology"),
+                createNews("World", "Europe"),
+                createNews("Business Day", "Europe")));
+
+        assertEquals(Arrays.asList("Business Day", "World"), facets.getValues(NewsFacets.Dimension.SECTION));
+        assertEquals(Arrays.asList("Europe", "Technology"), facets.getValues(NewsFacets.Dimension.SUBSECTION));
+        assertEquals(2, facets.getCount(NewsFacets.Dimension.SECTION, "Business Day"));
+        assertEquals(0, facets.getCount(NewsFacets.Dimension.SECTION, "Sports"));
+
+        long[] bits = facets.newBits();
+        facets.filter(NONE, Arrays.asList("Europe"), bits);
+        assertEquals(1, facets.getCount(NewsFacets.Dimension.SECTION, "Business Day", bits));
+        assertEquals(1, facets.getCount(NewsFacets.Dimension.SECTION, "World", bits));
+    }
+
+    /**
+     * Bitsets span several words, and no bit is set past the last news.
+     */
+    @Test
+    public void largeListsSpanWords() {
+        List<NewsEntity> newsList = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            newsList.add(createNews(i % 2 == 0 ? "Even" : "Odd", "All"));
+        }
+        NewsFacets facets = NewsFacets.build(newsList);
+        long[] bits = facets.newBits();
+
+        assertEquals(3, bits.length);
+        assertEquals(130, facets.filter(NONE, NONE, bits));
+        assertEquals(129, NewsFacets.toOrdinals(bits)[129]);
+        assertEquals(65, facets.filter(Arrays.asList("Odd"), Arrays.asList("All"), bits));
+        assertEquals(129, NewsFacets.toOrdinals(bits)[64]);
+    }
+
+    private static NewsEntity createNews(String section, String subsection) {
+        NewsEntity news = new NewsEntity();
+        news.setSection(section);
+        news.setSubsection(subsection);
+        news.setTitle("Title");
+        return news;
+    }
+}
@@ -0,0 +1,77 @@
+package news.agoda.com.sample.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NewsMergerTest {
+
+    /**
+     * News of all the feeds are merged and ordered by published date, newest first. The offsets sent by
+     * the server ("-5:00") are taken into account.
+     */
+    @Test
+    public void mergeOrdersByPublishedDate() {
+        List<NewsEntity> feed1 = Arrays.asList(
+                createNews("a", "2015-08-18T04:00:00-5:00"),
+                createNews("b", "2015-08-16T10:00:00-5:00"));
+        List<NewsEntity> feed2 = Arrays.asList(
+                // 08:00 UTC, one hour before "a" (09:00 UTC)
+                createNews("c", "2015-08-18T08:00:00+0:00"),
+                createNews("d", "2015-08-19T00:00:00-5:00"));
+
+        ArrayList<NewsEntity> merged = NewsMerger.merge(Arrays.asList(feed1, feed2));
+
+        assertEquals(4, merged.size());
+        assertEquals("http://example.com/d", merged.get(0).getUrl());
+        assertEquals("http://example.com/a", merged.get(1).getUrl());
+        assertEquals("http://example.com/c", merged.get(2).getUrl());
+        assertEquals("http://example.com/b", merged.get(3).getUrl());
+    }
+
+    /**
+     * A story present in more than one feed is kept once, and the newer copy wins.
+     */
+    @Test
+    public void mergeRemovesDuplicateUrls() {
+        NewsEntity older = createNews("a", "2015-08-18T04:00:00-5:00");
+        NewsEntity newer = createNews("a", "2015-08-18T06:00:00-5:00");
+        List<NewsEntity> feed1 = Arrays.asList(older, createNews("b", "2015-08-17T04:00:00-5:00"));
+        List<NewsEntity> feed2 = Arrays.asList(newer);
+
+        ArrayList<NewsEntity> merged = NewsMerger.merge(Arrays.asList(feed1, feed2));
+
+        assertEquals(2, merged.size());
+        assertSame(newer, merged.get(0));
+    }
+
+    /**
+     * News with a date that cannot be parsed are ordered last.
+     */
+    @Test
+    public void mergeOrdersUnknownDatesLast() {
+        List<NewsEntity> feed = Arrays.asList(
+                createNews("a", "yesterday"),
+                createNews("b", "2015-08-18T04:00:00-5:00"));
+
+        ArrayList<NewsEntity> merged = NewsMerger.merge(Arrays.asList(feed));
+
+        assertEquals("http://example.com/b", merged.get(0).getUrl());
+        assertEquals("http://example.com/a", merged.get(1).getUrl());
+    }
+
+    private NewsEntity createNews(String id, String publishedDate) {
+        NewsEntity news = new NewsEntity();
+        news.setUrl("http://example.com/" + id);
+        news.setTitle("Title " + id);
+        news.setPublishedDate(publishedDate);
+        return news;
+    }
+}
@@ -0,0 +1,115 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.MediaEntity;
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NewsPageStoreTest {
+
+    private File mFilesDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mFilesDir = File.createTempFile("pages", "");
+        assertTrue(mFilesDir.delete() && mFilesDir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(mFilesDir);
+    }
+
+    /**
+     * The news are read back page by page, in order, with all their fields.
+     */
+    @Test
+    public void pagesAreReadBack() throws IOException {
+        List<NewsEntity> newsList = createNews(55);
+        NewsPageStore store = NewsPageStore.write(mFilesDir.getPath(), newsList, 25);
+
+        assertEquals(55, store.size());
+        assertEquals(3, store.getPageCount());
+        assertEquals(newsList.subList(0, 25), store.readPage(0));
+        assertEquals(newsList.subList(25, 50), store.readPage(1));
+        assertEquals(newsList.subList(50, 55), store.readPage(2));
+    }
+
+    /**
+     * The pages of a deleted list cannot be read anymore, and other lists are not affected.
+     */
+    @Test
+    public void deletedPagesAreGone() throws IOException {
+        NewsPageStore store = NewsPageStore.write(mFilesDir.getPath(), createNews(30), 10);
+        NewsPageStore other = NewsPageStore.write(mFilesDir.getPath(), createNews(5), 10);
+        store.delete();
+        try {
+            store.readPage(0);
+            fail("page of a deleted list was read");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(5, other.readPage(0).size());
+    }
+
+    /**
+     * A large list is stored compactly, only a small page is in memory when reading.
+     */
+    @Test
+    public void largeListIsCompact() throws IOException {
+        NewsPageStore store = NewsPageStore.write(mFilesDir.getPath(), createNews(5000), 25);
+        assertEquals(200, store.getPageCount());
+        assertEquals(25, store.readPage(199).size());
+        assertFalse(store.readPage(100).isEmpty());
+    }
+
+    private static List<NewsEntity> createNews(int count) {
+        List<NewsEntity> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NewsEntity news = new NewsEntity();
+            news.setSection("Business Day");
+            news.setSubsection("Technology");
+            news.setTitle("Title " + i);
+            news.setSummary("Summary " + i);
+            news.setUrl("http://example.com/" + i);
+            news.setByline("By Someone");
+            news.setPublishedDate("2015-08-18T04:00:00-5:00");
+            MediaEntity media = new MediaEntity();
+            media.setUrl("http://example.com/" + i + ".jpg");
+            media.setFormat("Standard Thumbnail");
+            media.setWidth(75);
+            media.setHeight(75);
+            media.setType("image");
+            media.setSubType("photo");
+            media.setCaption("Caption");
+            media.setCopyright("Copyright");
+            List<MediaEntity> mediaList = new ArrayList<>();
+            mediaList.add(media);
+            news.setMediaEntityList(mediaList);
+            newsList.add(news);
+        }
+        return newsList;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,226 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NewsSearchIndexTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("search", ".idx");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * All the terms of the query must match, accents and case are ignored, and the last term is a prefix
+     * while it is being typed.
+     */
+    @Test
+    public void termsAndPrefixesMatch() {
+        NewsSearchIndex index = build(
+                createNews("Work Policies May Be Kinder, but Brutal Competition Isn't", "Business", "By Noam Scheiber"),
+                createNews("Caf\u00e9 owners protest new policy", "World", "By Jodi Kantor"),
+                createNews("Kinder policies for workers", "Business", "By Someone"));
+
+        assertArrayEquals(new int[] {0, 2}, index.search("kinder polic", 10));
+        assertArrayEquals(new int[] {0}, index.search("BRUTAL", 10));
+        assertArrayEquals(new int[] {1}, index.search("cafe", 10));
+        assertArrayEquals(new int[] {1}, index.search("kantor", 10));
+        // a finished term is not a prefix.
+        assertArrayEquals(new int[0], index.search("polic ", 10));
+        assertArrayEquals(new int[0], index.search("kinder cafe", 10));
+        assertArrayEquals(new int[0], index.search("  ", 10));
+    }
+
+    /**
+     * Terms too short to be indexed do not prevent a match, unless they are the prefix being typed.
+     */
+    @Test
+    public void shortTermsAreIgnored() {
+        NewsSearchIndex index = build(
+                createNews("U.S. election night", "Politics", "By A"),
+                createNews("Clinton's rally draws a crowd", "Politics", "By B"));
+
+        assertArrayEquals(new int[] {0}, index.search("u s election", 10));
+        assertArrayEquals(new int[] {0}, index.search("u.s. election ", 10));
+        assertArrayEquals(new int[] {1}, index.search("clinton's rally", 10));
+        assertArrayEquals(new int[] {1}, index.search("a crowd", 10));
+        // the prefix being typed still counts.
+        assertArrayEquals(new int[] {1}, index.search("rally d", 10));
+        assertArrayEquals(new int[0], index.search("s ", 10));
+    }
+
+    /**
+     * A term in the title ranks higher than in the summary, and the limit keeps the best results.
+     */
+    @Test
+    public void resultsAreRanked() {
+        NewsEntity inSummary = createNews("Markets rally", "Business", "By A");
+        inSummary.setSummary("The election moved the markets");
+        NewsEntity inTitle = createNews("Election results are in", "Politics", "By B");
+        NewsEntity inSection = createNews("A long night", "Election", "By C");
+        NewsSearchIndex index = build(inSummary, inTitle, inSection);
+
+        assertArrayEquals(new int[] {1, 2, 0}, index.search("election", 10));
+        assertArrayEquals(new int[] {1, 2}, index.search("election", 2));
+    }
+
+    /**
+     * The index read from disk answers the same as the index which was written.
+     */
+    @Test
+    public void indexIsReadBack() throws IOException {
+        List<NewsEntity> newsList = createRandomNews(2000, new Random(7));
+        NewsSearchIndex index = build(newsList.toArray(new NewsEntity[newsList.size()]));
+        index.write(mFile);
+        NewsSearchIndex read = NewsSearchIndex.read(mFile);
+
+        assertEquals(index.getDocCount(), read.getDocCount());
+        assertEquals(index.getTermCount(), read.getTermCount());
+        assertEquals(index.getSnapshotDigest(), read.getSnapshotDigest());
+        for (String query : new String[] {"alpha", "be", "gamma delta", "z", "omega kappa "}) {
+            assertArrayEquals(query, index.search(query, 50), read.search(query, 50));
+        }
+    }
+
+    /**
+     * The terms of news which did not change are reused for the next snapshot.
+     */
+    @Test
+    public void unchangedNewsAreNotTokenizedAgain() {
+        NewsEntity kept = createNews("Kept news", "World", "By A");
+        NewsEntity changed = createNews("Old title", "World", "By B");
+        Map<String, NewsSearchIndex.DocTerms> previous = new HashMap<>();
+        List<NewsSearchIndex.DocTerms> first = NewsSearchIndex.collectTerms(Arrays.asList(kept, changed),
+                new HashMap<String, NewsSearchIndex.DocTerms>(), previous);
+
+        NewsEntity keptAgain = createNews("Kept news", "World", "By A");
+        keptAgain.setUrl(kept.getUrl());
+        NewsEntity changedAgain = createNews("New title", "World", "By B");
+        changedAgain.setUrl(changed.getUrl());
+        Map<String, NewsSearchIndex.DocTerms> current = new HashMap<>();
+        List<NewsSearchIndex.DocTerms> second = NewsSearchIndex.collectTerms(
+                Arrays.asList(changedAgain, keptAgain), previous, current);
+
+        assertSame(first.get(0), second.get(1));
+        assertTrue(first.get(1) != second.get(0));
+        assertArrayEquals(new int[] {0}, NewsSearchIndex.build(second, 0).search("new title", 10));
+    }
+
+    /**
+     * The digest tells apart snapshots of the same size, and it does not depend on the news instances.
+     */
+    @Test
+    public void digestTellsSnapshotsApart() {
+        NewsEntity first = createNews("First news", "World", "By A");
+        NewsEntity second = createNews("Second news", "World", "By B");
+        NewsEntity secondAgain = createNews("Second news", "World", "By B");
+        secondAgain.setUrl(second.getUrl());
+
+        long digest = NewsSearchIndex.digestOf(Arrays.asList(first, second));
+        assertEquals(digest, NewsSearchIndex.digestOf(Arrays.asList(first, secondAgain)));
+        assertTrue(digest != NewsSearchIndex.digestOf(Arrays.asList(second, first)));
+        NewsEntity third = createNews("Third news", "World", "By C");
+        assertTrue(digest != NewsSearchIndex.digestOf(Arrays.asList(first, third)));
+        secondAgain.setTitle("Second news, updated");
+        assertTrue(digest != NewsSearchIndex.digestOf(Arrays.asList(first, secondAgain)));
+    }
+
+    /**
+     * A short prefix ranks the news of all the terms it expands to, also past the first few hundred.
+     */
+    @Test
+    public void prefixRanksAllItsTerms() {
+        List<NewsEntity> newsList = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            NewsEntity news = createNews("Story " + i, "World", "By A");
+            news.setSummary(String.format("p%03d", i));
+            newsList.add(news);
+        }
+        // the last term of the prefix, in a title.
+        newsList.add(createNews("p399 in the title", "World", "By A"));
+        NewsSearchIndex index = build(newsList.toArray(new NewsEntity[newsList.size()]));
+
+        assertArrayEquals(new int[] {400}, index.search("p", 1));
+    }
+
+    /**
+     * Every query over 50k news finds results.
+     */
+    @Test
+    public void largeIndexIsQueried() {
+        List<NewsEntity> newsList = createRandomNews(50000, new Random(42));
+        NewsSearchIndex index = NewsSearchIndex.build(NewsSearchIndex.collectTerms(newsList,
+                new HashMap<String, NewsSearchIndex.DocTerms>(), new HashMap<String, NewsSearchIndex.DocTerms>()),
+                NewsSearchIndex.digestOf(newsList));
+        String[] queries = {"alpha", "be", "gamma delta", "z", "omega kappa ", "sigma t"};
+        for (String query : queries) {
+            assertTrue(query, index.search(query, 50).length > 0);
+        }
+    }
+
+    private static NewsSearchIndex build(NewsEntity... news) {
+        return NewsSearchIndex.build(NewsSearchIndex.collectTerms(Arrays.asList(news),
+                new HashMap<String, NewsSearchIndex.DocTerms>(), new HashMap<String, NewsSearchIndex.DocTerms>()),
+                NewsSearchIndex.digestOf(Arrays.asList(news)));
+    }
+
+    private static int sUrlCount;
+
+    private static NewsEntity createNews(String title, String section, String byline) {
+        NewsEntity news = new NewsEntity();
+        news.setTitle(title);
+        news.setSection(section);
+        news.setByline(byline);
+        news.setSummary("Summary");
+        news.setUrl("http://example.com/" + sUrlCount++);
+        return news;
+    }
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta",
+            "iota", "kappa", "lambda", "mu", "nu", "xi", "omicron", "pi", "rho", "sigma", "tau", "upsilon", "phi",
+            "chi", "psi", "omega"};
+
+    private static List<NewsEntity> createRandomNews(int count, Random random) {
+        List<NewsEntity> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NewsEntity news = createNews(words(random, 8), words(random, 1), "By " + words(random, 2));
+            // a large vocabulary, like real news.
+            news.setSummary(words(random, 30) + " term" + random.nextInt(20000));
+            newsList.add(news);
+        }
+        return newsList;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(i % 3 == 0 ? random.nextInt(100) : "")
+                    .append(' ');
+        }
+        return builder.toString();
+    }
+}
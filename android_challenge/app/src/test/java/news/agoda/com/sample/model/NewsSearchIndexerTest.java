@@ -0,0 +1,76 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NewsSearchIndexerTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("news_search", ".idx");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * The last snapshot written is indexed on the indexer thread, and its index is read back after a
+     * restart.
+     */
+    @Test
+    public void lastSnapshotIsIndexed() throws Exception {
+        NewsSearchIndexer indexer = new NewsSearchIndexer(mFile);
+        List<NewsEntity> first = createNewsList("First", 10);
+        List<NewsEntity> second = createNewsList("Second", 10);
+        indexer.onSnapshotWritten(first);
+        indexer.onSnapshotWritten(second);
+        indexer.flush();
+
+        NewsSearchIndex index = indexer.getIndex();
+        assertNotNull(index);
+        assertEquals(NewsSearchIndex.digestOf(second), index.getSnapshotDigest());
+        assertEquals(10, index.search("second", 20).length);
+        assertEquals(0, index.search("first", 20).length);
+
+        NewsSearchIndex readIndex = new NewsSearchIndexer(mFile).getIndex();
+        assertNotNull(readIndex);
+        assertEquals(index.getSnapshotDigest(), readIndex.getSnapshotDigest());
+    }
+
+    /**
+     * There is no index until a snapshot is written.
+     */
+    @Test
+    public void noIndexWithoutSnapshot() {
+        assertNull(new NewsSearchIndexer(mFile).getIndex());
+    }
+
+    private static List<NewsEntity> createNewsList(String title, int count) {
+        List<NewsEntity> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NewsEntity news = new NewsEntity();
+            news.setTitle(title + " " + i);
+            news.setUrl("http://example.com/" + title + "/" + i);
+            newsList.add(news);
+        }
+        return newsList;
+    }
+}
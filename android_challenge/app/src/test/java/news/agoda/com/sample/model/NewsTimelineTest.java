@@ -0,0 +1,89 @@
+package news.agoda.com.sample.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NewsTimelineTest {
+
+    /**
+     * The dates are parsed into the column, and the sort index orders the news newest first with unknown
+     * dates last. News with the same date keep their list order.
+     */
+    @Test
+    public void newsAreSortedNewestFirst() {
+        NewsTimeline timeline = NewsTimeline.build(Arrays.asList(
+                createNews("2015-08-18T04:00:00-5:00"),
+                createNews(null),
+                createNews("2015-08-19T04:00:00-5:00"),
+                createNews("2015-08-18T04:00:00-5:00"),
+                createNews("not a date")));
+
+        assertEquals(NewsDates.toEpochMillis("2015-08-19T04:00:00-5:00"), timeline.getPublishedAt(2));
+        assertEquals(NewsDates.UNKNOWN, timeline.getPublishedAt(1));
+        int[] newestFirst = new int[timeline.size()];
+        for (int rank = 0; rank < newestFirst.length; rank++) {
+            newestFirst[rank] = timeline.getNewest(rank);
+        }
+        assertArrayEquals(new int[] {2, 0, 3, 1, 4}, newestFirst);
+    }
+
+    /**
+     * Time windows and "newer than" are answered from the sort index.
+     */
+    @Test
+    public void timeWindows() {
+        NewsTimeline timeline = NewsTimeline.build(Arrays.asList(
+                createNews("2015-08-18T00:00:00Z"),
+                createNews("2015-08-20T00:00:00Z"),
+                createNews("2015-08-19T00:00:00Z"),
+                createNews(null)));
+        long day18 = NewsDates.toEpochMillis("2015-08-18T00:00:00Z");
+        long day19 = NewsDates.toEpochMillis("2015-08-19T00:00:00Z");
+        long day20 = NewsDates.toEpochMillis("2015-08-20T00:00:00Z");
+
+        assertEquals(2, timeline.countNewerThan(day18));
+        assertEquals(0, timeline.countNewerThan(day20));
+        assertEquals(3, timeline.countNewerThan(day18 - 1));
+        assertArrayEquals(new int[] {2, 0}, timeline.getPublishedBetween(day18, day20));
+        assertArrayEquals(new int[] {1, 2}, timeline.getPublishedBetween(day19, day20 + 1));
+        assertArrayEquals(new int[0], timeline.getPublishedBetween(day20, day19));
+    }
+
+    /**
+     * The sort index is ordered for a large shuffled list.
+     */
+    @Test
+    public void largeListIsSorted() {
+        Random random = new Random(3);
+        List<NewsEntity> newsList = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            newsList.add(createNews(String.format("2015-%02d-%02dT%02d:00:00Z",
+                    1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24))));
+        }
+        NewsTimeline timeline = NewsTimeline.build(newsList);
+        for (int rank = 1; rank < timeline.size(); rank++) {
+            int previous = timeline.getNewest(rank - 1);
+            int current = timeline.getNewest(rank);
+            long previousAt = timeline.getPublishedAt(previous);
+            long currentAt = timeline.getPublishedAt(current);
+            assertTrue(previousAt > currentAt || (previousAt == currentAt && previous < current));
+        }
+    }
+
+    private static NewsEntity createNews(String publishedDate) {
+        NewsEntity news = new NewsEntity();
+        news.setTitle("Title");
+        news.setPublishedDate(publishedDate);
+        return news;
+    }
+}
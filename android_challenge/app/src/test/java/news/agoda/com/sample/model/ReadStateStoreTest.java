@@ -0,0 +1,146 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadStateStoreTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("read_state", ".log");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * Marks are kept in memory right away and are found again by the next process.
+     */
+    @Test
+    public void marksArePersisted() throws Exception {
+        ReadStateStore store = new ReadStateStore(mFile);
+        store.load();
+        store.markSeen(1);
+        store.markRead(-42);
+        store.markRead(0);
+        assertTrue(store.isSeen(1));
+        assertFalse(store.isRead(1));
+        assertTrue(store.isSeen(-42) && store.isRead(-42));
+        store.flush();
+
+        ReadStateStore reloaded = new ReadStateStore(mFile);
+        // marks made before the log is loaded are merged with it.
+        reloaded.markRead(7);
+        reloaded.load();
+        reloaded.flush();
+        assertTrue(reloaded.isSeen(1));
+        assertFalse(reloaded.isRead(1));
+        assertTrue(reloaded.isRead(-42));
+        assertTrue(reloaded.isRead(0));
+        assertTrue(reloaded.isRead(7));
+        assertFalse(reloaded.isSeen(2));
+        // the same marks are not appended twice: seen and read of -42, 0 and 7, seen of 1.
+        assertEquals(7 * 9, mFile.length());
+    }
+
+    /**
+     * A news is new until the app restarts after it was seen, and no news is new before the log is loaded.
+     */
+    @Test
+    public void newsSeenSinceStartStayNew() throws Exception {
+        ReadStateStore store = new ReadStateStore(mFile);
+        store.load();
+        store.markSeen(1);
+        store.flush();
+
+        final boolean[] isLoaded = new boolean[1];
+        ReadStateStore reloaded = new ReadStateStore(mFile);
+        reloaded.addLoadListener(new ReadStateStore.LoadListener() {
+            @Override
+            public void onReadStateLoaded() {
+                isLoaded[0] = true;
+            }
+        });
+        reloaded.markSeen(1);
+        reloaded.markSeen(2);
+        assertFalse(reloaded.isNew(2));
+        reloaded.load();
+        reloaded.markSeen(3);
+        reloaded.flush();
+        assertTrue(isLoaded[0]);
+        assertFalse(reloaded.isNew(1));
+        assertTrue(reloaded.isNew(2));
+        assertTrue(reloaded.isNew(3));
+        assertTrue(reloaded.isNew(4));
+        // seen of 1, then seen of 2 and 3: 1 was in the log already.
+        assertEquals(3 * 9, mFile.length());
+
+        ReadStateStore again = new ReadStateStore(mFile);
+        again.load();
+        again.flush();
+        assertFalse(again.isNew(2));
+        assertFalse(again.isNew(3));
+        assertTrue(again.isNew(4));
+    }
+
+    /**
+     * A long log keeps only its most recent marks, and a mark cut short is dropped.
+     */
+    @Test
+    public void logIsCompacted() throws Exception {
+        ReadStateStore store = new ReadStateStore(mFile);
+        store.load();
+        for (long id = 1; id <= ReadStateStore.MAX_RECORDS + 1; id++) {
+            store.markSeen(id);
+        }
+        store.flush();
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[] {1, 2, 3});
+        out.close();
+
+        ReadStateStore reloaded = new ReadStateStore(mFile);
+        reloaded.load();
+        reloaded.flush();
+        assertEquals(ReadStateStore.MAX_RECORDS / 2 * 9, mFile.length());
+        assertFalse(reloaded.isSeen(1));
+        assertTrue(reloaded.isSeen(ReadStateStore.MAX_RECORDS + 1));
+
+        reloaded.markSeen(-1);
+        reloaded.flush();
+        ReadStateStore again = new ReadStateStore(mFile);
+        again.load();
+        again.flush();
+        assertTrue(again.isSeen(-1));
+    }
+
+    /**
+     * The set holds many ids, including 0 and negative ones.
+     */
+    @Test
+    public void longHashSetGrows() {
+        LongHashSet set = new LongHashSet(4);
+        for (long id = -5000; id <= 5000; id++) {
+            assertTrue(set.add(id * 0x100000001b3L));
+        }
+        assertFalse(set.add(0));
+        assertEquals(10001, set.size());
+        for (long id = -5000; id <= 5000; id++) {
+            assertTrue(set.contains(id * 0x100000001b3L));
+        }
+        assertFalse(set.contains(5001 * 0x100000001b3L));
+    }
+}
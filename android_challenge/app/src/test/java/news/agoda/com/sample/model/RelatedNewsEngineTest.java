@@ -0,0 +1,215 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RelatedNewsEngineTest {
+
+    private static final String[][] TOPICS = {
+            {"mars", "rover", "nasa", "crater", "martian", "planet"},
+            {"election", "senate", "campaign", "voters", "ballot", "candidate"},
+            {"bitcoin", "blockchain", "miners", "wallet", "exchange", "currency"},
+            {"smartphone", "battery", "screen", "android", "camera", "chip"},
+    };
+
+    private static final String[] COMMON = {"week", "report", "new", "people", "year", "company"};
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("news_related", ".idx");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * The related news of a news are news on the same topic, and a news on a topic of its own has none.
+     */
+    @Test
+    public void relatedNewsShareTheTopic() throws Exception {
+        RelatedNewsEngine engine = new RelatedNewsEngine(mFile);
+        List<NewsEntity> newsList = createNewsList(40);
+        newsList.add(createNews("lonely", "Gardening tips for tomatoes", "Soil and water for tomatoes."));
+        engine.onSnapshotWritten(newsList);
+        engine.flush();
+
+        RelatedNewsIndex index = engine.getIndex();
+        assertNotNull(index);
+        assertEquals(41, index.getDocCount());
+        for (int i = 0; i < 40; i++) {
+            int[] related = index.getRelated(url(i));
+            assertEquals(RelatedNewsEngine.RELATED_COUNT, related.length);
+            for (int ordinal : related) {
+                assertEquals(topicOf(i), topicOf(index.getUrl(ordinal)));
+            }
+        }
+        assertEquals(0, index.getRelated(url("lonely")).length);
+        assertEquals(0, index.getRelated("http://example.com/unknown").length);
+    }
+
+    /**
+     * A small change of the snapshot updates the related news incrementally: removed news are not
+     * related anymore, and new news become related to the news of their topic.
+     */
+    @Test
+    public void snapshotChangesAreApplied() throws Exception {
+        RelatedNewsEngine engine = new RelatedNewsEngine(mFile);
+        List<NewsEntity> newsList = createNewsList(40);
+        engine.onSnapshotWritten(newsList);
+        engine.flush();
+
+        // 8 is a news on the first topic.
+        newsList.remove(8);
+        NewsEntity changed = newsList.get(5);
+        changed.setTitle("Mars rover nasa crater martian planet rover");
+        newsList.add(0, createNews("fresh", "Mars rover nasa crater", "Martian crater on the planet mars."));
+        // few enough changes to keep the document frequencies.
+        assertTrue(4 < RelatedNewsEngine.MAX_CHANGED_FRACTION * newsList.size());
+        engine.onSnapshotWritten(newsList);
+        engine.flush();
+
+        RelatedNewsIndex index = engine.getIndex();
+        assertNotNull(index);
+        assertEquals(40, index.getDocCount());
+        assertEquals(0, index.getRelated(url(8)).length);
+        Set<String> relatedOfFresh = relatedUrls(index, url("fresh"));
+        assertEquals(RelatedNewsEngine.RELATED_COUNT, relatedOfFresh.size());
+        assertTrue(relatedOfFresh.contains(url(5)));
+        assertFalse(relatedOfFresh.contains(url(8)));
+        int relatedToFresh = 0;
+        for (int i = 0; i < index.getDocCount(); i++) {
+            Set<String> related = relatedUrls(index, index.getUrl(i));
+            assertFalse(related.contains(url(8)));
+            if (related.contains(url("fresh"))) {
+                relatedToFresh++;
+            }
+        }
+        assertTrue(relatedToFresh > 0);
+    }
+
+    /**
+     * The index of the last snapshot is read back after a restart.
+     */
+    @Test
+    public void indexIsPersisted() throws Exception {
+        RelatedNewsEngine engine = new RelatedNewsEngine(mFile);
+        engine.onSnapshotWritten(createNewsList(20));
+        engine.flush();
+        RelatedNewsIndex index = engine.getIndex();
+        assertNotNull(index);
+
+        RelatedNewsEngine restarted = new RelatedNewsEngine(mFile);
+        assertNull(restarted.getIndex());
+        restarted.load();
+        restarted.flush();
+        RelatedNewsIndex readIndex = restarted.getIndex();
+        assertNotNull(readIndex);
+        assertEquals(index.getDocCount(), readIndex.getDocCount());
+        for (int i = 0; i < index.getDocCount(); i++) {
+            assertEquals(index.getTitle(i), readIndex.getTitle(i));
+            assertEquals(relatedUrls(index, index.getUrl(i)), relatedUrls(readIndex, index.getUrl(i)));
+        }
+    }
+
+    /**
+     * The listeners are told of every new index, read from disk or built from a snapshot.
+     */
+    @Test
+    public void listenersAreToldOfNewIndex() throws Exception {
+        RelatedNewsEngine engine = new RelatedNewsEngine(mFile);
+        engine.onSnapshotWritten(createNewsList(20));
+        engine.flush();
+
+        RelatedNewsEngine restarted = new RelatedNewsEngine(mFile);
+        final int[] indexedCount = new int[1];
+        RelatedNewsEngine.IndexListener listener = new RelatedNewsEngine.IndexListener() {
+            @Override
+            public void onRelatedNewsIndexed() {
+                indexedCount[0]++;
+            }
+        };
+        restarted.addIndexListener(listener);
+        restarted.load();
+        restarted.flush();
+        assertEquals(1, indexedCount[0]);
+
+        restarted.onSnapshotWritten(createNewsList(24));
+        restarted.flush();
+        assertEquals(2, indexedCount[0]);
+
+        restarted.removeIndexListener(listener);
+        restarted.onSnapshotWritten(createNewsList(28));
+        restarted.flush();
+        assertEquals(2, indexedCount[0]);
+    }
+
+    private static List<NewsEntity> createNewsList(int count) {
+        List<NewsEntity> newsList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] topic = TOPICS[i % TOPICS.length];
+            StringBuilder title = new StringBuilder();
+            StringBuilder summary = new StringBuilder();
+            for (int j = 0; j < 3; j++) {
+                title.append(topic[(i + j) % topic.length]).append(' ');
+                summary.append(topic[(i + 2 * j + 1) % topic.length]).append(' ')
+                        .append(COMMON[(i + j) % COMMON.length]).append(' ');
+            }
+            newsList.add(createNews(String.valueOf(i), title.toString(), summary.toString()));
+        }
+        return newsList;
+    }
+
+    private static NewsEntity createNews(String id, String title, String summary) {
+        NewsEntity news = new NewsEntity();
+        news.setUrl(url(id));
+        news.setTitle(title);
+        news.setSummary(summary);
+        news.setSection("Technology");
+        return news;
+    }
+
+    private static int topicOf(int i) {
+        return i % TOPICS.length;
+    }
+
+    private static int topicOf(String url) {
+        return topicOf(Integer.parseInt(url.substring(url.lastIndexOf('/') + 1)));
+    }
+
+    private static String url(int i) {
+        return url(String.valueOf(i));
+    }
+
+    private static String url(String id) {
+        return "http://example.com/story/" + id;
+    }
+
+    private static Set<String> relatedUrls(RelatedNewsIndex index, String url) {
+        Set<String> urls = new HashSet<>();
+        for (int ordinal : index.getRelated(url)) {
+            urls.add(index.getUrl(ordinal));
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,126 @@
+package news.agoda.com.sample.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the retry behaviour of the NetworkRequestProcessor against a local http server.
+ */
+public class RetryPolicyTest {
+
+    /**
+     * A policy with short delays so that the tests run quickly.
+     */
+    private final RetryPolicy mPolicy = new RetryPolicy(2000, 4, 10, 40, 500, 500);
+
+    private HttpServer mServer;
+
+    /**
+     * Number of requests the server received.
+     */
+    private final AtomicInteger mHits = new AtomicInteger();
+
+    /**
+     * The status codes the server returns, one per request. The last one is repeated.
+     */
+    private int[] mStatusCodes;
+
+    private String mUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int hit = mHits.getAndIncrement();
+                int statusCode = mStatusCodes[Math.min(hit, mStatusCodes.length - 1)];
+                byte[] body = "{\"status\":\"OK\"}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(statusCode, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/feed";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.stop(0);
+    }
+
+    /**
+     * Server errors are retried, so a transient failure is resolved within the same refresh.
+     */
+    @Test
+    public void serverErrorIsRetried() {
+        mStatusCodes = new int[] {503, 500, 200};
+        String response = new NetworkRequestProcessor(mPolicy.newBudget()).fetchFromURL(mUrl);
+        assertEquals("{\"status\":\"OK\"}", response);
+        assertEquals(3, mHits.get());
+    }
+
+    /**
+     * Client errors are never retried.
+     */
+    @Test
+    public void clientErrorIsNotRetried() {
+        mStatusCodes = new int[] {404, 200};
+        assertNull(new NetworkRequestProcessor(mPolicy.newBudget()).fetchFromURL(mUrl));
+        assertEquals(1, mHits.get());
+    }
+
+    /**
+     * Retries stop after the maximum number of attempts.
+     */
+    @Test
+    public void retriesAreLimited() {
+        mStatusCodes = new int[] {500};
+        assertNull(new NetworkRequestProcessor(mPolicy.newBudget()).fetchFromURL(mUrl));
+        assertEquals(4, mHits.get());
+    }
+
+    /**
+     * A dead server fails within the deadline of the refresh.
+     */
+    @Test
+    public void deadServerFailsWithinDeadline() throws IOException {
+        mServer.stop(0);
+        RetryPolicy policy = new RetryPolicy(300, 100, 10, 40, 500, 500);
+        long start = System.nanoTime();
+        assertNull(new NetworkRequestProcessor(policy.newBudget()).fetchFromURL(mUrl));
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 1000);
+    }
+
+    /**
+     * The backoff never exceeds the cap, and grows with the retry count until the cap.
+     */
+    @Test
+    public void backoffIsCapped() {
+        RetryPolicy policy = new RetryPolicy(10000, 10, 100, 1000, 500, 500);
+        for (int retry = 0; retry < 30; retry++) {
+            long cap = Math.min(100L << Math.min(retry, 20), 1000);
+            for (int i = 0; i < 50; i++) {
+                long backoff = policy.backoffMillis(retry);
+                assertTrue(backoff >= 0 && backoff <= cap);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeedDataSourceTest {
+
+    private static final String SEED_PATH = "src/main/assets/" + SeedDataSource.SEED_ASSET;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("seed", ".apk");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * The seed packaged with the app is a snapshot in the format of the cache, and it is decoded from
+     * where it lies in the APK.
+     */
+    @Test
+    public void seedIsMappedFromItsOffset() throws Exception {
+        byte[] seed = readAll(new File(SEED_PATH));
+        // an asset starts somewhere in the APK, after other entries.
+        byte[] before = new byte[4093];
+        Arrays.fill(before, (byte) '[');
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(before);
+        out.write(seed);
+        out.write("garbage".getBytes("UTF-8"));
+        out.close();
+
+        ArrayList<NewsEntity> newsList;
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            newsList = SeedDataSource.readSnapshot(in.getChannel(), before.length, seed.length);
+        } finally {
+            in.close();
+        }
+
+        assertFalse(newsList.isEmpty());
+        for (NewsEntity news : newsList) {
+            assertTrue(news.getUrl().startsWith("http"));
+            assertFalse(news.getTitle().isEmpty());
+        }
+        assertEquals("Work Policies May Be Kinder, but Brutal Competition Isn\u2019t", newsList.get(0).getTitle());
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
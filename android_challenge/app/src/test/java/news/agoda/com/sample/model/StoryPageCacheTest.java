@@ -0,0 +1,129 @@
+package news.agoda.com.sample.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StoryPageCacheTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("stories", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * A page is read back with its content type, also after the cache is opened again.
+     */
+    @Test
+    public void pagesArePersisted() throws IOException {
+        StoryPageCache cache = new StoryPageCache(mDirectory, 1000);
+        byte[] body = "<html>story</html>".getBytes("UTF-8");
+        cache.put("http://example.com/a", "text/html; charset=\"utf-8\"", body);
+        assertTrue(cache.contains("http://example.com/a"));
+        assertFalse(cache.contains("http://example.com/b"));
+        assertNull(cache.open("http://example.com/b"));
+
+        StoryPageCache reopened = new StoryPageCache(mDirectory, 1000);
+        assertEquals(1, reopened.size());
+        StoryPageCache.Page page = reopened.open("http://example.com/a");
+        assertNotNull(page);
+        assertEquals("text/html", page.getMimeType());
+        assertEquals("utf-8", page.getEncoding());
+        assertArrayEquals(body, readAll(page.getBody()));
+    }
+
+    /**
+     * Creating the cache does not touch the disk, the pages are known once it is loaded.
+     */
+    @Test
+    public void cacheIsLoadedLazily() throws IOException {
+        new StoryPageCache(mDirectory, 1000).put("http://example.com/a", "text/html", new byte[10]);
+
+        StoryPageCache reopened = new StoryPageCache(mDirectory, 1000);
+        assertFalse(reopened.contains("http://example.com/a"));
+        reopened.load();
+        assertTrue(reopened.contains("http://example.com/a"));
+
+        File missing = new File(mDirectory, "missing");
+        new StoryPageCache(missing, 1000);
+        assertFalse(missing.exists());
+    }
+
+    /**
+     * Beyond its size, the cache evicts the least recently used pages.
+     */
+    @Test
+    public void leastRecentlyUsedPagesAreEvicted() throws IOException {
+        StoryPageCache cache = new StoryPageCache(mDirectory, 3500);
+        byte[] body = new byte[1000];
+        cache.put("http://example.com/1", "text/html", body);
+        cache.put("http://example.com/2", "text/html", body);
+        cache.put("http://example.com/3", "text/html", body);
+        assertTrue(cache.touch("http://example.com/1"));
+
+        cache.put("http://example.com/4", "text/html", body);
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.getTotalBytes() <= 3500);
+        assertTrue(cache.contains("http://example.com/1"));
+        assertFalse(cache.contains("http://example.com/2"));
+        assertTrue(cache.contains("http://example.com/3"));
+        assertTrue(cache.contains("http://example.com/4"));
+        assertEquals(3, mDirectory.listFiles().length);
+    }
+
+    /**
+     * Replacing a page counts its new size only, and a page without charset has no encoding.
+     */
+    @Test
+    public void replacedPageIsCountedOnce() throws IOException {
+        StoryPageCache cache = new StoryPageCache(mDirectory, 10000);
+        cache.put("http://example.com/a", "text/html", new byte[1000]);
+        long size = cache.getTotalBytes();
+        cache.put("http://example.com/a", "text/html", new byte[2000]);
+
+        assertEquals(1, cache.size());
+        assertEquals(size + 1000, cache.getTotalBytes());
+        StoryPageCache.Page page = cache.open("http://example.com/a");
+        assertNotNull(page);
+        assertNull(page.getEncoding());
+        assertEquals(2000, readAll(page.getBody()).length);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
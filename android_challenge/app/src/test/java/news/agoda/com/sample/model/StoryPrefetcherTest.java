@@ -0,0 +1,112 @@
+package news.agoda.com.sample.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import news.agoda.com.sample.viewmodel.NewsEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StoryPrefetcherTest {
+
+    private HttpServer mServer;
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests.incrementAndGet();
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = ("<html>" + path + "</html>").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type",
+                        path.endsWith(".pdf") ? "application/pdf" : "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+        mDirectory = File.createTempFile("stories", "");
+        assertTrue(mDirectory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * The pages of the newest stories are prefetched once prefetching is allowed, and only once.
+     */
+    @Test
+    public void topStoriesArePrefetchedWhenAllowed() throws Exception {
+        StoryPageCache cache = new StoryPageCache(mDirectory, 1024 * 1024);
+        StoryPrefetcher prefetcher = new StoryPrefetcher(cache);
+        List<NewsEntity> newsList = new ArrayList<>();
+        for (int i = 0; i < StoryPrefetcher.TOP_STORIES + 5; i++) {
+            newsList.add(createNews(i == 3 ? "/story/3.pdf" : "/story/" + i));
+        }
+
+        // e.g. on a metered network.
+        prefetcher.onSnapshotWritten(newsList);
+        prefetcher.flush();
+        assertEquals(0, mRequests.get());
+
+        prefetcher.setAllowed(true);
+        prefetcher.flush();
+        assertEquals(StoryPrefetcher.TOP_STORIES, mRequests.get());
+        // not a page.
+        assertEquals(StoryPrefetcher.TOP_STORIES - 1, cache.size());
+        assertTrue(cache.contains(url("/story/0")));
+        assertFalse(cache.contains(url("/story/3.pdf")));
+        assertFalse(cache.contains(url("/story/" + StoryPrefetcher.TOP_STORIES)));
+
+        // the next snapshot only fetches the new stories.
+        newsList.add(0, createNews("/story/new"));
+        prefetcher.onSnapshotWritten(newsList);
+        prefetcher.flush();
+        assertEquals(StoryPrefetcher.TOP_STORIES + 2, mRequests.get());
+        assertTrue(cache.contains(url("/story/new")));
+    }
+
+    private NewsEntity createNews(String path) {
+        NewsEntity news = new NewsEntity();
+        news.setTitle("Title " + path);
+        news.setUrl(url(path));
+        return news;
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,75 @@
+package news.agoda.com.sample.viewmodel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MediaVariantSelectorTest {
+
+    /**
+     * The renditions of a typical news of the feed.
+     */
+    private final List<MediaEntity> mRenditions = Arrays.asList(
+            createMedia("thumbStandard", 75, 75),
+            createMedia("thumbLarge", 150, 150),
+            createMedia("articleInline", 190, 127),
+            createMedia("mediumThreeByTwo210", 210, 140));
+
+    /**
+     * The smallest rendition covering the view is chosen.
+     */
+    @Test
+    public void smallestCoveringRenditionIsChosen() {
+        // 75dp on mdpi, hdpi and xhdpi
+        assertEquals("thumbStandard", MediaVariantSelector.select(mRenditions, 75, 75).getFormat());
+        assertEquals("thumbLarge", MediaVariantSelector.select(mRenditions, 113, 113).getFormat());
+        assertEquals("thumbLarge", MediaVariantSelector.select(mRenditions, 150, 150).getFormat());
+        // 210x140dp on mdpi. The inline rendition is not high enough.
+        assertEquals("mediumThreeByTwo210", MediaVariantSelector.select(mRenditions, 190, 130).getFormat());
+    }
+
+    /**
+     * If no rendition covers the view, the biggest one is the best available.
+     */
+    @Test
+    public void biggestRenditionWhenNoneCovers() {
+        // 210x140dp on xhdpi
+        assertEquals("mediumThreeByTwo210", MediaVariantSelector.select(mRenditions, 420, 280).getFormat());
+    }
+
+    /**
+     * Renditions without a size or which are not images are skipped. Without any size, the last rendition
+     * is used.
+     */
+    @Test
+    public void unsizedRenditions() {
+        MediaEntity video = createMedia("video", 1000, 1000);
+        video.setType("video");
+        List<MediaEntity> mixed = Arrays.asList(createMedia("unknown", 0, 0), video, createMedia("small", 100, 100));
+        assertEquals("small", MediaVariantSelector.select(mixed, 50, 50).getFormat());
+
+        List<MediaEntity> unsized = Arrays.asList(createMedia("first", 0, 0), createMedia("last", 0, 0));
+        assertEquals("last", MediaVariantSelector.select(unsized, 50, 50).getFormat());
+    }
+
+    @Test
+    public void noImage() {
+        assertNull(MediaVariantSelector.select(null, 75, 75));
+        assertNull(MediaVariantSelector.select(new ArrayList<MediaEntity>(), 75, 75));
+    }
+
+    private static MediaEntity createMedia(String format, int width, int height) {
+        MediaEntity media = new MediaEntity();
+        media.setUrl("http://example.com/" + format + ".jpg");
+        media.setFormat(format);
+        media.setWidth(width);
+        media.setHeight(height);
+        media.setType("image");
+        return media;
+    }
+}